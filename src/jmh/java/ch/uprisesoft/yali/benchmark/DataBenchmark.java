@@ -0,0 +1,106 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.benchmark;
+
+import ch.uprisesoft.yali.ast.node.Node;
+import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * List primitives on a list of numbers.
+ *
+ * @author rma
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataBenchmark {
+
+    @Param({"10", "10000"})
+    int size;
+
+    Interpreter it;
+
+    @Setup
+    public void setUp() {
+        it = Fixtures.interpreter();
+        it.env().make("numbers", Fixtures.numbers(size));
+    }
+
+    @Benchmark
+    public Node first() {
+        return it.eval("first :numbers");
+    }
+
+    @Benchmark
+    public Node last() {
+        return it.eval("last :numbers");
+    }
+
+    @Benchmark
+    public Node butfirst() {
+        return it.eval("butfirst :numbers");
+    }
+
+    @Benchmark
+    public Node butlast() {
+        return it.eval("butlast :numbers");
+    }
+
+    @Benchmark
+    public Node fput() {
+        return it.eval("fput 0 :numbers");
+    }
+
+    @Benchmark
+    public Node lput() {
+        return it.eval("lput 0 :numbers");
+    }
+
+    @Benchmark
+    public Node item() {
+        return it.eval("item " + (size / 2) + " :numbers");
+    }
+
+    @Benchmark
+    public Node count() {
+        return it.eval("count :numbers");
+    }
+
+    @Benchmark
+    public Node reverse() {
+        return it.eval("reverse :numbers");
+    }
+
+    @Benchmark
+    public Node memberp() {
+        return it.eval("member? " + size + " :numbers");
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.uprisesoft.yali.ast.node.Node;
+import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
+import ch.uprisesoft.yali.runtime.interpreter.InterpreterBuilder;
+import ch.uprisesoft.yali.runtime.io.InputGenerator;
+import ch.uprisesoft.yali.runtime.io.OutputObserver;
+import ch.uprisesoft.yali.runtime.procedures.builtin.MockTurtleManager;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Interpreters and sources shared by the benchmarks.
+ *
+ * @author rma
+ */
+class Fixtures {
+
+    // Examples that run with the procedures of the standard library and the
+    // mock turtle
+    static final String[] EXAMPLES = {
+        "example1", "example4", "make", "procedure1", "procedure2", "repeat",
+        "spiral", "tree"
+    };
+
+    static {
+        Logger root = (Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+        root.setLevel(Level.OFF);
+    }
+
+    private Fixtures() {
+    }
+
+    static Interpreter interpreter() {
+        OutputObserver oo = new OutputObserver() {
+            @Override
+            public void inform(String output) {
+            }
+        };
+
+        InputGenerator ig = new InputGenerator() {
+            @Override
+            public String request() {
+                return "requestedinput";
+            }
+
+            @Override
+            public String requestLine() {
+                return "requestedinputline";
+            }
+        };
+
+        Interpreter it = new InterpreterBuilder().build();
+        it.loadStdLib(oo, ig);
+        new MockTurtleManager().registerProcedures(it);
+        return it;
+    }
+
+    static String example(String name) {
+        String path = "/logo/examples/" + name + ".txt";
+        try (InputStream in = Fixtures.class.getResourceAsStream(path)) {
+            if (in == null) {
+                throw new IllegalArgumentException("No example " + path);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    /**
+     * All examples, repeated until the source has at least the given size.
+     */
+    static String source(int size) {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < size) {
+            for (String name : EXAMPLES) {
+                sb.append(example(name)).append("\n");
+            }
+        }
+        return sb.toString();
+    }
+
+    static Node numbers(int size) {
+        java.util.List<Node> numbers = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            numbers.add(Node.integer(i));
+        }
+        return Node.list(numbers);
+    }
+}
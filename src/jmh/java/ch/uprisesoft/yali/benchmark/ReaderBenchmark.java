@@ -0,0 +1,73 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.benchmark;
+
+import ch.uprisesoft.yali.ast.node.Node;
+import ch.uprisesoft.yali.lexer.Lexer;
+import ch.uprisesoft.yali.lexer.Token;
+import ch.uprisesoft.yali.parser.Reader;
+import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading defines the procedures of the source, so every invocation gets an
+ * interpreter of its own.
+ *
+ * @author rma
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReaderBenchmark {
+
+    @Param({"10000", "1000000"})
+    int size;
+
+    List<Token> tokens;
+    Reader reader;
+
+    @Setup
+    public void setUp() {
+        tokens = new Lexer().scan(Fixtures.source(size));
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpReader() {
+        Interpreter it = Fixtures.interpreter();
+        reader = new Reader(it);
+    }
+
+    @Benchmark
+    public Node read() {
+        return reader.read(tokens);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.benchmark;
+
+import ch.uprisesoft.yali.ast.node.Node;
+import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * @author rma
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecursionBenchmark {
+
+    Interpreter it;
+
+    @Setup
+    public void setUp() {
+        it = Fixtures.interpreter();
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("to fib :n").append("\n");
+        sb.append("ifelse :n < 2 [output :n] [output (fib :n - 1) + (fib :n - 2)]").append("\n");
+        sb.append("end").append("\n");
+        sb.append("to fact :n").append("\n");
+        sb.append("if :n < 2 [output 1]").append("\n");
+        sb.append("output :n * (fact :n - 1)").append("\n");
+        sb.append("end").append("\n");
+        sb.append("to countdown :n").append("\n");
+        sb.append("if :n = 0 [output 0]").append("\n");
+        sb.append("output countdown :n - 1").append("\n");
+        sb.append("end").append("\n");
+        it.eval(sb.toString());
+    }
+
+    @Benchmark
+    public Node fib() {
+        return it.eval("fib 20");
+    }
+
+    @Benchmark
+    public Node fact() {
+        return it.eval("fact 12");
+    }
+
+    @Benchmark
+    public Node tailRecursion() {
+        return it.eval("countdown 100000");
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.ast.node;
+
+import ch.uprisesoft.yali.ast.node.word.IntegerWord;
+import ch.uprisesoft.yali.exception.RangeException;
+import ch.uprisesoft.yali.scope.Environment;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+
+/**
+ * Logo array with a fixed size, indexed from its origin. Arrays of integers
+ * or of floats only are kept in a long[] or double[], anything else in a
+ * Node[]. The storage is widened when a member of another type is set.
+ * Members that were never set are empty lists.
+ *
+ * @author rma
+ */
+public class Array extends Node {
+
+    private final int size;
+    private final int origin;
+
+    // Only one of them is in use
+    private long[] longs;
+    private double[] doubles;
+    private Node[] nodes;
+
+    // Members never set, null when there are none
+    private BitSet blank;
+
+    public Array(int size, int origin) {
+        super(NodeType.ARRAY, Collections.emptyList());
+        this.size = size;
+        this.origin = origin;
+        this.longs = new long[size];
+        if (size > 0) {
+            this.blank = new BitSet(size);
+            this.blank.set(0, size);
+        }
+    }
+
+    public Array(java.util.List<Node> members, int origin) {
+        super(NodeType.ARRAY, Collections.emptyList());
+        this.size = members.size();
+        this.origin = origin;
+
+        java.util.List<Node> values = new ArrayList<>(size);
+        boolean integers = true;
+        boolean floats = true;
+        for (Node member : members) {
+            Node value = Node.literal(member);
+            integers &= isLong(value);
+            floats &= value.type() == NodeType.FLOAT;
+            values.add(value);
+        }
+
+        if (integers) {
+            longs = new long[size];
+            for (int i = 0; i < size; i++) {
+                longs[i] = values.get(i).toIntegerWord().longValue();
+            }
+        } else if (floats) {
+            doubles = new double[size];
+            for (int i = 0; i < size; i++) {
+                doubles[i] = values.get(i).toFloatWord().doubleValue();
+            }
+        } else {
+            nodes = values.toArray(new Node[size]);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int origin() {
+        return origin;
+    }
+
+    /**
+     * Type of the storage, long, double or Node.
+     */
+    public Class<?> componentType() {
+        if (longs != null) {
+            return long.class;
+        } else if (doubles != null) {
+            return double.class;
+        }
+        return Node.class;
+    }
+
+    public Node get(int index) {
+        int i = offset(index);
+        if (blank != null && blank.get(i)) {
+            return new List();
+        } else if (longs != null) {
+            return Node.integer(longs[i]);
+        } else if (doubles != null) {
+            return Node.flt(doubles[i]);
+        }
+        return nodes[i];
+    }
+
+    public void set(int index, Node value) {
+        int i = offset(index);
+        value = Node.literal(value);
+
+        if (longs != null && isLong(value)) {
+            longs[i] = value.toIntegerWord().longValue();
+        } else if (doubles != null && value.type() == NodeType.FLOAT) {
+            doubles[i] = value.toFloatWord().doubleValue();
+        } else if (longs != null && value.type() == NodeType.FLOAT && onlyMember(i)) {
+            longs = null;
+            doubles = new double[size];
+            doubles[i] = value.toFloatWord().doubleValue();
+        } else {
+            widen();
+            nodes[i] = value;
+        }
+
+        if (blank != null) {
+            blank.clear(i);
+            if (blank.isEmpty()) {
+                blank = null;
+            }
+        }
+    }
+
+    public java.util.List<Node> members() {
+        java.util.List<Node> members = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            members.add(get(i + origin));
+        }
+        return members;
+    }
+
+    private int offset(int index) {
+        int i = index - origin;
+        if (i < 0 || i >= size) {
+            throw new RangeException(Node.integer(index), origin, origin + size - 1);
+        }
+        return i;
+    }
+
+    private static boolean isLong(Node value) {
+        return value.type() == NodeType.INTEGER && !((IntegerWord) value).isBig();
+    }
+
+    // Checks if all other members are still blank
+    private boolean onlyMember(int i) {
+        if (blank == null) {
+            return size == 1;
+        }
+        int set = size - blank.cardinality();
+        return set == 0 || (set == 1 && !blank.get(i));
+    }
+
+    private void widen() {
+        if (nodes != null) {
+            return;
+        }
+
+        Node[] widened = new Node[size];
+        for (int i = 0; i < size; i++) {
+            widened[i] = get(i + origin);
+        }
+        nodes = widened;
+        longs = null;
+        doubles = null;
+        blank = null;
+    }
+
+    @Override
+    public Node evaluate(Environment env) {
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(" ");
+            }
+            sb.append(get(i + origin));
+        }
+        sb.append("}");
+        if (origin != 1) {
+            sb.append("@").append(origin);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.ast.node;
+
+/**
+ * Values a node caches for a few procedure epochs at once (compiled bodies,
+ * call bindings), the latest first. A session that defines procedures of
+ * its own runs in an epoch of its own, so the library nodes it shares with
+ * other sessions keep a value for each of them instead of having one
+ * evicted by the other on every call. The oldest value is dropped when
+ * there are more than {@link #SIZE}.
+ *
+ * The entries never change, a node replaces them as a whole, so they can
+ * be read while another thread adds one.
+ *
+ * @author rma
+ */
+final class ByEpoch<T> {
+
+    static final int SIZE = 4;
+
+    private final int epoch;
+    private final T value;
+    private final ByEpoch<T> next;
+
+    private ByEpoch(int epoch, T value, ByEpoch<T> next) {
+        this.epoch = epoch;
+        this.value = value;
+        this.next = next;
+    }
+
+    /**
+     * Value kept for the epoch, null if there is none.
+     */
+    static <T> T get(ByEpoch<T> entries, int epoch) {
+        for (ByEpoch<T> e = entries; e != null; e = e.next) {
+            if (e.epoch == epoch) {
+                return e.value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The latest value, of whatever epoch, null if there is none.
+     */
+    static <T> T latest(ByEpoch<T> entries) {
+        return entries == null ? null : entries.value;
+    }
+
+    /**
+     * Entries with the value for the epoch first, replacing the one kept
+     * for it, followed by the ones for the other epochs that still fit.
+     */
+    static <T> ByEpoch<T> put(ByEpoch<T> entries, int epoch, T value) {
+        return new ByEpoch<>(epoch, value, others(entries, epoch, SIZE - 1));
+    }
+
+    private static <T> ByEpoch<T> others(ByEpoch<T> entries, int epoch, int room) {
+        ByEpoch<T> e = entries;
+        while (e != null && e.epoch == epoch) {
+            e = e.next;
+        }
+        if (e == null || room == 0) {
+            return null;
+        }
+        return new ByEpoch<>(e.epoch, e.value, others(e.next, epoch, room - 1));
+    }
+}
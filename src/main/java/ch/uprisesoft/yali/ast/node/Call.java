@@ -19,6 +19,7 @@ import ch.uprisesoft.yali.runtime.procedures.FunctionNotFoundException;
 import ch.uprisesoft.yali.scope.Environment;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 /**
@@ -30,7 +31,10 @@ public class Call extends Node {
     private final String name;
     private final int arity;
     
-    private Node code;
+    // Procedure this call is bound to in each of the last procedure epochs it
+    // was made in. Sessions and forks bind calls on other threads, so the
+    // bindings are replaced together.
+    private volatile ByEpoch<Node> binding;
         
     private java.util.List<Node> args = new ArrayList<>();
     
@@ -38,7 +42,7 @@ public class Call extends Node {
         super(NodeType.PROCCALL);
         this.name = name;
         this.arity = arity;
-        this.code = code;
+        this.binding = ByEpoch.put(null, -1, code);
         this.args.addAll(args);
     }
     
@@ -46,21 +50,19 @@ public class Call extends Node {
         super(NodeType.PROCCALL);
         this.name = name;
         this.arity = arity;
-        this.code = code;
+        this.binding = ByEpoch.put(null, -1, code);
     }
 
     public Call(String name, int arity) {
         super(NodeType.PROCCALL);
         this.name = name;
         this.arity = arity;
-        this.code = Node.none();
     }
 
     public Call(String name) {
         super(NodeType.PROCCALL);
         this.name = name;
         this.arity = -1;
-        this.code = Node.none();
     }
 
     public String name() {
@@ -72,11 +74,36 @@ public class Call extends Node {
     }
 
     public Node code() {
-        return code;
+        ByEpoch<Node> bound = binding;
+        return bound == null ? Node.none() : ByEpoch.latest(bound);
     }
 
     public void code(Node code) {
-        this.code = code;
+        this.binding = ByEpoch.put(null, -1, code);
+    }
+
+    public void code(Node code, int epoch) {
+        this.binding = ByEpoch.put(binding, epoch, code);
+    }
+
+    /**
+     * Returns the procedure to call. The binding is kept as long as the
+     * procedure table of the environment does not change, so a call does not
+     * look up its procedure again in steady state. Sessions with procedures
+     * of their own keep their bindings next to the ones of other sessions.
+     */
+    public Procedure target(Environment env) {
+        ByEpoch<Node> bound = binding;
+        Node code = ByEpoch.get(bound, env.epoch());
+        if (code == null) {
+            Procedure procedure = env.getProcedures().get(name);
+            if (procedure == null) {
+                throw new FunctionNotFoundException(name);
+            }
+            binding = ByEpoch.put(bound, env.epoch(), procedure);
+            return procedure;
+        }
+        return (Procedure) code;
     }
 
     public List<Node> args() {
@@ -93,40 +120,21 @@ public class Call extends Node {
     
     @Override
     public Node evaluate(Environment env){
-        
-        if (!env.defined(this.name())) {
-            throw new FunctionNotFoundException(this.name());
-        }
 
-        Procedure funDef = env.getProcedures().get(this.name());
+        // Unknown procedures fail before their arguments are evaluated
+        target(env);
 
         java.util.List<Node> args = new ArrayList<>();
 
         // TODO differentiate between procedures and macros (called with parent scope)
-        int i = 0;
         for (Node c : this.getChildren()) {
-            Node res = c.evaluate(env);
-            if (i < funDef.getArity()) {
-                env.make(
-                        funDef.getArgs().get(i),
-                        res
-                );
-                i++;
-            }
-            args.add(res);
+            args.add(c.evaluate(env));
         }
 
-        this.args(args);
-
-        return env.apply(this);
-        
-//        result = it.schedule(call);
-//        it.schedule(call);
-//        while(it.tick()) {}
-//        result = it.result();
-        
-        
-//        return this;
+        // Arguments are handed over per evaluation. Calls are cached and
+        // evaluated many times (procedure bodies, blocks), so they must not
+        // keep the values of a previous evaluation around.
+        return env.apply(this, args);
     }
 
     @Override
@@ -170,11 +178,9 @@ public class Call extends Node {
 
         final Call other = (Call) obj;
 
-        if (this.hashCode() == other.hashCode()) {
-            return true;
-        }
-
-        return true;
+        return Objects.equals(this.name, other.name)
+                && this.arity == other.arity
+                && this.children.equals(other.children);
     }
 
 }
@@ -15,24 +15,48 @@
  */
 package ch.uprisesoft.yali.ast.node;
 
+import ch.uprisesoft.yali.runtime.vm.Chunk;
 import ch.uprisesoft.yali.scope.Environment;
-import java.util.Collections;
+import ch.uprisesoft.yali.ast.node.word.Word;
+import io.vavr.collection.Vector;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.stream.Collectors;
 
 /**
+ * A list of words and lists. The children are kept in a persistent vector, so
+ * fput, butfirst, lput and butlast make new lists sharing the structure of
+ * this one instead of copying it.
  *
  * @author uprisesoft@gmail.com
  */
 public class List extends Node {
 
+    // Compiled form of this list when it is run as a block, together with the
+    // children it was compiled from, for each of the last procedure epochs it
+    // was compiled in
+    private volatile ByEpoch<Compiled> compiled;
+
+    // Procedures made from this list when it is used as a template (map,
+    // filter...), by procedure epoch and then by the number of inputs
+    private volatile ByEpoch<Templated> templates;
+
+    // Cached hash and member index with the vector they were made from
+    private volatile Hashed hashed;
+    private volatile MemberIndex index;
+
     public List() {
-        super(NodeType.LIST);
+        super(NodeType.LIST, new PersistentChildren());
     }
     
     public List(java.util.List<Node> nodes) {
-        super(NodeType.LIST);
+        this();
         super.addChildren(nodes);
     }
+
+    private List(Vector<Node> nodes) {
+        super(NodeType.LIST, new PersistentChildren(nodes));
+    }
     
     @Override
     public Node evaluate(Environment env){
@@ -40,7 +64,107 @@ public class List extends Node {
     }
 
     public void reverse() {
-        Collections.reverse(children);
+        elements().vector(vector().reverse());
+    }
+
+    public List fput(Node node) {
+        return new List(vector().prepend(node));
+    }
+
+    public List lput(Node node) {
+        return new List(vector().append(node));
+    }
+
+    public List butfirst() {
+        return new List(vector().tail());
+    }
+
+    public List butlast() {
+        return new List(vector().init());
+    }
+
+    public List reversed() {
+        return new List(vector().reverse());
+    }
+
+    private Vector<Node> vector() {
+        return elements().vector();
+    }
+
+    private PersistentChildren elements() {
+        return (PersistentChildren) children;
+    }
+
+    public void code(Chunk code, int epoch) {
+        java.util.List<Node> source = new ArrayList<>();
+        snapshot(this, source);
+
+        this.compiled = ByEpoch.put(compiled, epoch, new Compiled(code, source.toArray(new Node[source.size()])));
+    }
+
+    /**
+     * Code compiled in the given procedure epoch, null if there is none or if
+     * it does not match the list anymore. Lists can be changed in place
+     * (setitem), so the children are compared by identity against the ones
+     * the code was parsed from, nested lists included.
+     */
+    public Chunk code(int epoch) {
+        Compiled block = ByEpoch.get(compiled, epoch);
+        if (block == null) {
+            return null;
+        }
+        return matches(this, block.source, 0) == block.source.length ? block.code : null;
+    }
+
+    public void template(Procedure template, int epoch, int arity) {
+        java.util.List<Node> source = new ArrayList<>();
+        snapshot(this, source);
+
+        Templated others = ByEpoch.get(templates, epoch);
+        this.templates = ByEpoch.put(templates, epoch,
+                new Templated(arity, template, source.toArray(new Node[source.size()]), others));
+    }
+
+    /**
+     * Procedure made from this list as a template with the given number of
+     * inputs in the given procedure epoch, null if there is none or if it
+     * does not match the list anymore, like for {@link #code(int)}.
+     */
+    public Procedure template(int epoch, int arity) {
+        for (Templated t = ByEpoch.get(templates, epoch); t != null; t = t.next) {
+            if (t.arity == arity) {
+                return matches(this, t.source, 0) == t.source.length ? t.procedure : null;
+            }
+        }
+        return null;
+    }
+
+    private static void snapshot(Node list, java.util.List<Node> source) {
+        for (Node n : list.getChildren()) {
+            source.add(n);
+            if (n.type() == NodeType.LIST) {
+                snapshot(n, source);
+                source.add(null);
+            }
+        }
+    }
+
+    private static int matches(Node list, Node[] source, int pos) {
+        for (Node n : list.getChildren()) {
+            if (pos >= source.length || source[pos] != n) {
+                return -1;
+            }
+            pos++;
+
+            if (n.type() == NodeType.LIST) {
+                pos = matches(n, source, pos);
+                if (pos < 0 || pos >= source.length || source[pos] != null) {
+                    return -1;
+                }
+                pos++;
+            }
+        }
+        return pos;
     }
 
     @Override
@@ -57,11 +181,49 @@ public class List extends Node {
         return sb.toString();
     }
 
+    /**
+     * Position of the first member equal to the given node, -1 if there is
+     * none. Large lists get an index of their members, kept until the list
+     * is changed.
+     */
+    public int position(Node member) {
+        Vector<Node> nodes = vector();
+        if (nodes.size() < MemberIndex.MIN_SIZE) {
+            for (int i = 0; i < nodes.size(); i++) {
+                if (member.equals(nodes.get(i))) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        MemberIndex index = this.index;
+        if (index == null || !index.indexes(nodes)) {
+            index = new MemberIndex(nodes);
+            this.index = index;
+        }
+        return index.position(member);
+    }
+
+    // The hash of a list of words only changes with the vector of the list,
+    // nested lists can change without it
     @Override
     public int hashCode() {
+        Vector<Node> nodes = vector();
+        Hashed cached = hashed;
+        if (cached != null && cached.nodes == nodes) {
+            return cached.hash;
+        }
+
         int hash = 7;
-        for (Node n : children) {
+        boolean words = true;
+        for (Node n : nodes) {
             hash = 31 * hash + (n == null ? 0 : n.hashCode());
+            words &= n instanceof Word;
+        }
+
+        if (words) {
+            this.hashed = new Hashed(nodes, hash);
         }
         return hash;
     }
@@ -82,10 +244,62 @@ public class List extends Node {
             return false;
         }
 
-        if (this.hashCode() == other.hashCode()) {
-            return true;
+        if (this.hashCode() != other.hashCode()) {
+            return false;
+        }
+
+        Iterator<Node> others = other.children.iterator();
+        for (Node n : children) {
+            if (!n.equals(others.next())) {
+                return false;
+            }
         }
+        return true;
+    }
+
+    private static final class Compiled {
+
+        private final Chunk code;
+        private final Node[] source;
+
+        private Compiled(Chunk code, Node[] source) {
+            this.code = code;
+            this.source = source;
+        }
+    }
+
+    private static final class Templated {
+
+        private final int arity;
+        private final Procedure procedure;
+        private final Node[] source;
+        private final Templated next;
 
-        return false;
+        private Templated(int arity, Procedure procedure, Node[] source, Templated others) {
+            this.arity = arity;
+            this.procedure = procedure;
+            this.source = source;
+            this.next = without(others, arity);
+        }
+
+        private static Templated without(Templated t, int arity) {
+            if (t == null) {
+                return null;
+            } else if (t.arity == arity) {
+                return t.next;
+            }
+            return new Templated(t.arity, t.procedure, t.source, without(t.next, arity));
+        }
+    }
+
+    private static final class Hashed {
+
+        private final Vector<Node> nodes;
+        private final int hash;
+
+        private Hashed(Vector<Node> nodes, int hash) {
+            this.nodes = nodes;
+            this.hash = hash;
+        }
     }
 }
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.ast.node;
+
+import ch.uprisesoft.yali.ast.node.word.Word;
+import io.vavr.collection.Vector;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Index of the members of a list. Words never change, so they are hashed by
+ * value. Lists can be changed in place and are compared one by one, arrays
+ * only equal themselves.
+ *
+ * @author rma
+ */
+class MemberIndex {
+
+    // Smaller lists are searched without an index
+    static final int MIN_SIZE = 16;
+
+    private final Vector<Node> nodes;
+    private final Map<Node, Integer> words = new HashMap<>();
+    private final int[] others;
+
+    MemberIndex(Vector<Node> nodes) {
+        this.nodes = nodes;
+
+        java.util.List<Integer> others = new ArrayList<>();
+        int i = 0;
+        for (Node n : nodes) {
+            if (n instanceof Word) {
+                words.putIfAbsent(n, i);
+            } else {
+                others.add(i);
+            }
+            i++;
+        }
+
+        this.others = new int[others.size()];
+        for (int j = 0; j < this.others.length; j++) {
+            this.others[j] = others.get(j);
+        }
+    }
+
+    boolean indexes(Vector<Node> nodes) {
+        return this.nodes == nodes;
+    }
+
+    int position(Node member) {
+        if (member instanceof Word) {
+            Integer position = words.get(member);
+            return position == null ? -1 : position;
+        }
+
+        for (int i : others) {
+            if (member.equals(nodes.get(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
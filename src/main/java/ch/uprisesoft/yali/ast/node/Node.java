@@ -24,8 +24,10 @@ import ch.uprisesoft.yali.ast.node.word.NoWord;
 import ch.uprisesoft.yali.ast.node.word.QuotedWord;
 import ch.uprisesoft.yali.ast.node.word.ReferenceWord;
 import ch.uprisesoft.yali.ast.node.word.SymbolWord;
+import ch.uprisesoft.yali.ast.node.word.Word;
 import ch.uprisesoft.yali.lexer.Token;
 import ch.uprisesoft.yali.scope.Environment;
+import java.math.BigInteger;
 import java.util.ArrayList;
 //import org.ainslec.picocog.PicoWriter;
 
@@ -34,11 +36,16 @@ public abstract class Node {
     protected int line = 0;
     protected int col = 0;
     protected NodeType type;
-    protected java.util.List<Node> children = new ArrayList<>();
+    protected java.util.List<Node> children;
     protected Token token;
 
     public Node(NodeType type) {
+        this(type, new ArrayList<>());
+    }
+
+    protected Node(NodeType type, java.util.List<Node> children) {
         this.type = type;
+        this.children = children;
     }
 
     public void setPosInSource(int line, int col) {
@@ -155,6 +162,20 @@ public abstract class Node {
         return (List) this;
     }
 
+    public Array toArray(  Node this) throws NodeTypeException {
+        if (this.type() != NodeType.ARRAY) {
+            throw new NodeTypeException(this, this.type(), NodeType.ARRAY);
+        }
+        return (Array) this;
+    }
+
+    public Table toTable(  Node this) throws NodeTypeException {
+        if (this.type() != NodeType.TABLE) {
+            throw new NodeTypeException(this, this.type(), NodeType.TABLE);
+        }
+        return (Table) this;
+    }
+
     public NoWord toNoWord(  Node this) throws NodeTypeException {
         if (this.type() != NodeType.NONE) {
             throw new NodeTypeException(this, this.type(), NodeType.NONE);
@@ -162,8 +183,12 @@ public abstract class Node {
         return (NoWord) this;
     }
 
-    public static BooleanWord bool(Boolean bool) {
-        return new BooleanWord(bool);
+    /*
+     * Booleans, nil, none and small integers are shared instances. They must
+     * not get a token or children, the reader makes its own nodes for that.
+     */
+    public static BooleanWord bool(boolean bool) {
+        return BooleanWord.valueOf(bool);
     }
 
     public static SymbolWord string(String str) {
@@ -174,20 +199,24 @@ public abstract class Node {
         return new SymbolWord(str);
     }
 
-    public static FloatWord flt(Double f) {
+    public static FloatWord flt(double f) {
         return new FloatWord(f);
     }
 
-    public static IntegerWord integer(Integer i) {
-        return new IntegerWord(i);
+    public static IntegerWord integer(long i) {
+        return IntegerWord.valueOf(i);
+    }
+
+    public static IntegerWord integer(BigInteger i) {
+        return IntegerWord.valueOf(i);
     }
 
     public static NilWord nil() {
-        return new NilWord();
+        return NilWord.NIL;
     }
 
     public static NoWord none() {
-        return new NoWord();
+        return NoWord.NONE;
     }
 
     public static QuotedWord quote(String quote) {
@@ -203,4 +232,28 @@ public abstract class Node {
         l.addChildren(list);
         return l;
     }
+
+    /**
+     * Members of a list are kept as symbols. This gives the word a symbol is
+     * read as in code: a number, a boolean or a quoted word. Anything else is
+     * given back as it is.
+     */
+    public static Node literal(Node node) {
+        if (node.type() != NodeType.SYMBOL) {
+            return node;
+        }
+
+        String symbol = node.toSymbolWord().getSymbol();
+        Word number = node.toSymbolWord().number();
+        if (number != null) {
+            return number;
+        } else if (symbol.equalsIgnoreCase("true")) {
+            return bool(true);
+        } else if (symbol.equalsIgnoreCase("false")) {
+            return bool(false);
+        } else if (symbol.startsWith("\"")) {
+            return quote(symbol.substring(1));
+        }
+        return node;
+    }
 }
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.ast.node;
+
+import io.vavr.collection.Vector;
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.RandomAccess;
+
+/**
+ * Children of a list, kept in a persistent vector. Changes through the
+ * java.util.List interface swap the vector for a changed one, so lists made
+ * from it by fput, butfirst... share their structure with it and are not
+ * affected.
+ *
+ * @author rma
+ */
+class PersistentChildren extends AbstractList<Node> implements RandomAccess {
+
+    private Vector<Node> nodes;
+
+    PersistentChildren() {
+        this(Vector.empty());
+    }
+
+    PersistentChildren(Vector<Node> nodes) {
+        this.nodes = nodes;
+    }
+
+    Vector<Node> vector() {
+        return nodes;
+    }
+
+    void vector(Vector<Node> nodes) {
+        this.nodes = nodes;
+        modCount++;
+    }
+
+    @Override
+    public Node get(int index) {
+        return nodes.get(index);
+    }
+
+    @Override
+    public int size() {
+        return nodes.size();
+    }
+
+    @Override
+    public Node set(int index, Node element) {
+        Node previous = nodes.get(index);
+        nodes = nodes.update(index, element);
+        return previous;
+    }
+
+    @Override
+    public void add(int index, Node element) {
+        if (index == nodes.size()) {
+            nodes = nodes.append(element);
+        } else if (index == 0) {
+            nodes = nodes.prepend(element);
+        } else {
+            nodes = nodes.insert(index, element);
+        }
+        modCount++;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Node> elements) {
+        nodes = nodes.appendAll(elements);
+        modCount++;
+        return !elements.isEmpty();
+    }
+
+    @Override
+    public Node remove(int index) {
+        Node previous = nodes.get(index);
+        nodes = nodes.removeAt(index);
+        modCount++;
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        nodes = Vector.empty();
+        modCount++;
+    }
+
+    @Override
+    public Iterator<Node> iterator() {
+        return nodes.iterator();
+    }
+}
@@ -16,10 +16,13 @@
 package ch.uprisesoft.yali.ast.node;
 
 import ch.uprisesoft.yali.runtime.procedures.FunctionType;
+import ch.uprisesoft.yali.runtime.procedures.NativeCall;
+import ch.uprisesoft.yali.runtime.vm.Chunk;
 import ch.uprisesoft.yali.scope.Environment;
 import ch.uprisesoft.yali.scope.Scope;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.function.BiFunction;
 
 /**
@@ -30,9 +33,14 @@ public class Procedure extends Node {
 
     private String name;
     private java.util.List<String> args = new ArrayList<>();
-    private BiFunction<Scope, java.util.List<Node>, Node> nativeCall;
+    private NativeCall nativeCall;
     private String source;
 
+    // Compiled body for each of the last procedure epochs it was compiled in.
+    // Sessions and forks compile on other threads, so the bodies are
+    // replaced together.
+    private volatile ByEpoch<Chunk> compiled;
+
     FunctionType funType = FunctionType.YALI;
 
     public Procedure() {
@@ -44,7 +52,7 @@ public class Procedure extends Node {
         this.name = name;
     }
     
-    public Procedure(String name, BiFunction<Scope, java.util.List<Node>, Node> nativeCall, String... args) {
+    public Procedure(String name, NativeCall nativeCall, String... args) {
         this();
         this.funType = FunctionType.NATIVE;
         this.name = name;
@@ -54,18 +62,29 @@ public class Procedure extends Node {
         }
     }
 
-    public Procedure setNativeCall(BiFunction<Scope, java.util.List<Node>, Node> nativeCall) {
+    /**
+     * Native that does not need the interpreter making the call.
+     */
+    public Procedure(String name, BiFunction<Scope, java.util.List<Node>, Node> nativeCall, String... args) {
+        this(name, (NativeCall) (it, scope, val) -> nativeCall.apply(scope, val), args);
+    }
+
+    public Procedure setNativeCall(NativeCall nativeCall) {
         this.funType = FunctionType.NATIVE;
         this.nativeCall = nativeCall;
         return this;
     }
+
+    public Procedure setNativeCall(BiFunction<Scope, java.util.List<Node>, Node> nativeCall) {
+        return setNativeCall((it, scope, val) -> nativeCall.apply(scope, val));
+    }
     
     public Procedure macro() {
         this.funType = FunctionType.MACRO;
         return this;
     }
 
-    public BiFunction<Scope, java.util.List<Node>, Node> getNativeCall() {
+    public NativeCall getNativeCall() {
         return nativeCall;
     }
 
@@ -101,6 +120,17 @@ public class Procedure extends Node {
         this.source = source;
     }
     
+    /**
+     * Body compiled in the given procedure epoch, null if there is none.
+     */
+    public Chunk chunk(int epoch) {
+        return ByEpoch.get(compiled, epoch);
+    }
+
+    public void chunk(Chunk chunk, int epoch) {
+        this.compiled = ByEpoch.put(compiled, epoch, chunk);
+    }
+
     @Override
     public Node evaluate(Environment env){
         return this;
@@ -153,11 +183,10 @@ public class Procedure extends Node {
 
         final Procedure other = (Procedure) obj;
 
-        if (this.hashCode() == other.hashCode()) {
-            return true;
-        }
-
-        return true;
+        return Objects.equals(this.name, other.name)
+                && this.args.equals(other.args)
+                && this.children.equals(other.children)
+                && Objects.equals(this.nativeCall, other.nativeCall);
     }
     
     public String header() {
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.ast.node;
+
+import ch.uprisesoft.yali.scope.Environment;
+import java.util.Collections;
+
+/**
+ * Hash table from words to any values. Like an array it is changed in place
+ * and only equals itself.
+ *
+ * @author rma
+ */
+public class Table extends Node {
+
+    private final WordTable<Node> entries;
+
+    public Table() {
+        this(new WordTable<>());
+    }
+
+    public Table(WordTable<Node> entries) {
+        super(NodeType.TABLE, Collections.emptyList());
+        this.entries = entries;
+    }
+
+    public WordTable<Node> entries() {
+        return entries;
+    }
+
+    @Override
+    public Node evaluate(Environment env) {
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "<table " + entries.size() + ">";
+    }
+}
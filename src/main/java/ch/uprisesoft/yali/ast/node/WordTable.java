@@ -0,0 +1,249 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.ast.node;
+
+import ch.uprisesoft.yali.ast.node.word.Word;
+import ch.uprisesoft.yali.exception.NodeTypeException;
+import java.util.ArrayList;
+
+/**
+ * Map from words to values with open addressing and linear probing. Words
+ * are case insensitive like names of variables, and words that read as the
+ * same number are the same key. A word makes the text it is a key under
+ * once, and the hash of it is kept next to it, so a lookup compares hashes
+ * before it compares any text.
+ *
+ * @author rma
+ */
+public class WordTable<V> {
+
+    private static final int MIN_CAPACITY = 8;
+
+    // Most slots made up front, tables expected to be larger grow as keys
+    // are added
+    private static final int MAX_INITIAL_CAPACITY = 1 << 20;
+
+    private int size = 0;
+    private int[] hashes;
+    private String[] keys;
+    private Node[] words;
+    private Object[] values;
+
+    public WordTable() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    /**
+     * @param expected number of keys that fit without growing the table, up
+     * to half a million
+     */
+    public WordTable(int expected) {
+        if (expected < 0) {
+            throw new IllegalArgumentException("Negative table size: " + expected);
+        }
+        long wanted = Math.min(2L * expected, MAX_INITIAL_CAPACITY);
+        int capacity = MIN_CAPACITY;
+        while (capacity < wanted) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    public WordTable(WordTable<V> other) {
+        size = other.size;
+        hashes = other.hashes.clone();
+        keys = other.keys.clone();
+        words = other.words.clone();
+        values = other.values.clone();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(Node word) {
+        int slot = find(key(word));
+        return slot < 0 ? null : (V) values[slot];
+    }
+
+    public boolean containsKey(Node word) {
+        return find(key(word)) >= 0;
+    }
+
+    /**
+     * @return the value the word had before, null if it had none
+     */
+    @SuppressWarnings("unchecked")
+    public V put(Node word, V value) {
+        String key = key(word);
+        int hash = spread(key.hashCode());
+        int mask = keys.length - 1;
+
+        int slot = hash & mask;
+        while (keys[slot] != null) {
+            if (hashes[slot] == hash && keys[slot].equals(key)) {
+                V old = (V) values[slot];
+                values[slot] = value;
+                return old;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        hashes[slot] = hash;
+        keys[slot] = key;
+        words[slot] = word;
+        values[slot] = value;
+
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+        return null;
+    }
+
+    /**
+     * @return the value the word had, null if it had none
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(Node word) {
+        int slot = find(key(word));
+        if (slot < 0) {
+            return null;
+        }
+
+        V old = (V) values[slot];
+        int mask = keys.length - 1;
+
+        // Moves the following keys of the run back, so no lookup stops
+        // early at the freed slot
+        int free = slot;
+        int next = (free + 1) & mask;
+        while (keys[next] != null) {
+            int home = hashes[next] & mask;
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                move(next, free);
+                free = next;
+            }
+            next = (next + 1) & mask;
+        }
+        clear(free);
+
+        size--;
+        return old;
+    }
+
+    /**
+     * The words in the order of the table, each as it was first put.
+     */
+    public java.util.List<Node> words() {
+        java.util.List<Node> result = new ArrayList<>(size);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                result.add(words[i]);
+            }
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    public java.util.List<V> values() {
+        java.util.List<V> result = new ArrayList<>(size);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                result.add((V) values[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Text a word is stored under.
+     */
+    public static String key(Node word) {
+        if (!(word instanceof Word) || word.type() == NodeType.NIL || word.type() == NodeType.NONE) {
+            throw new NodeTypeException(word, word.type(), NodeType.SYMBOL, NodeType.QUOTE);
+        }
+        return ((Word) word).key();
+    }
+
+    private int find(String key) {
+        int hash = spread(key.hashCode());
+        int mask = keys.length - 1;
+
+        int slot = hash & mask;
+        while (keys[slot] != null) {
+            if (hashes[slot] == hash && keys[slot].equals(key)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void grow() {
+        int[] oldHashes = hashes;
+        String[] oldKeys = keys;
+        Node[] oldWords = words;
+        Object[] oldValues = values;
+
+        allocate(oldKeys.length * 2);
+        int mask = keys.length - 1;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = oldHashes[i] & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                hashes[slot] = oldHashes[i];
+                keys[slot] = oldKeys[i];
+                words[slot] = oldWords[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        hashes = new int[capacity];
+        keys = new String[capacity];
+        words = new Node[capacity];
+        values = new Object[capacity];
+    }
+
+    private void move(int from, int to) {
+        hashes[to] = hashes[from];
+        keys[to] = keys[from];
+        words[to] = words[from];
+        values[to] = values[from];
+    }
+
+    private void clear(int slot) {
+        hashes[slot] = 0;
+        keys[slot] = null;
+        words[slot] = null;
+        values[slot] = null;
+    }
+
+    // Linear probing needs the high bits of the hash in the low ones
+    private static int spread(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.ast.node.word;
+
+import java.math.BigInteger;
+
+/**
+ * Integer that does not fit into a long. Arithmetic promotes to it on
+ * overflow, use IntegerWord.valueOf(BigInteger) to get back to long when
+ * possible.
+ *
+ * @author rma
+ */
+public class BigIntegerWord extends IntegerWord {
+
+    private final BigInteger value;
+
+    BigIntegerWord(BigInteger value) {
+        super(0);
+        this.value = value;
+    }
+
+    @Override
+    public boolean isBig() {
+        return true;
+    }
+
+    @Override
+    public BigInteger bigValue() {
+        return value;
+    }
+
+    @Override
+    public long longValue() {
+        return value.longValueExact();
+    }
+
+    @Override
+    public double doubleValue() {
+        return value.doubleValue();
+    }
+
+    @Override
+    public Integer getInteger() {
+        return value.intValueExact();
+    }
+
+    @Override
+    public int hashCode() {
+        return value.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return value.toString();
+    }
+}
@@ -22,18 +22,18 @@ import ch.uprisesoft.yali.scope.Environment;
 
 public class BooleanWord extends Word {
 
-    public BooleanWord(Boolean bool) {
+    public static final BooleanWord TRUE = new BooleanWord(Boolean.TRUE);
+    public static final BooleanWord FALSE = new BooleanWord(Boolean.FALSE);
+
+    private final boolean value;
+
+    public BooleanWord(boolean value) {
         super(NodeType.BOOLEAN);
-        this.booleanWord = bool;
-        this.stringWord = bool.toString();
-        if (bool) {
-            this.floatWord = 0d;
-            this.integerWord = 0;
-        } else {
-            this.floatWord = -1d;
-            this.integerWord = -1;
-        }
+        this.value = value;
+    }
 
+    public static BooleanWord valueOf(boolean bool) {
+        return bool ? TRUE : FALSE;
     }
     
     @Override
@@ -41,9 +41,29 @@ public class BooleanWord extends Word {
         return this;
     }
 
+    @Override
+    public Boolean getBoolean() {
+        return value;
+    }
+
+    @Override
+    public Integer getInteger() {
+        return value ? 0 : -1;
+    }
+
+    @Override
+    public Double getFloat() {
+        return value ? 0d : -1d;
+    }
+
+    @Override
+    public String getString() {
+        return toString();
+    }
+
     @Override
     public String toString() {
-        return this.booleanWord.toString();
+        return Boolean.toString(value);
     }
 
 }
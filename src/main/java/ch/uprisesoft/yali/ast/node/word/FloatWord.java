@@ -18,6 +18,8 @@ package ch.uprisesoft.yali.ast.node.word;
 import ch.uprisesoft.yali.ast.node.Node;
 import ch.uprisesoft.yali.ast.node.NodeType;
 import ch.uprisesoft.yali.scope.Environment;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 
 /**
  *
@@ -25,11 +27,11 @@ import ch.uprisesoft.yali.scope.Environment;
  */
 public class FloatWord extends Word {
 
-    public FloatWord(Double floatVal) {
+    private final double value;
+
+    public FloatWord(double value) {
         super(NodeType.FLOAT);
-        this.floatWord = floatVal;
-        this.stringWord = floatVal.toString();
-        this.integerWord = floatVal.intValue();
+        this.value = value;
     }
     
     @Override
@@ -37,8 +39,53 @@ public class FloatWord extends Word {
         return this;
     }
 
+    @Override
+    public long longValue() {
+        return (long) value;
+    }
+
+    @Override
+    public double doubleValue() {
+        return value;
+    }
+
+    @Override
+    public Integer getInteger() {
+        return (int) value;
+    }
+
+    @Override
+    public Double getFloat() {
+        return value;
+    }
+
+    @Override
+    public String getString() {
+        return toString();
+    }
+
+    /**
+     * The integer a float stands for exactly, null if it has a fraction.
+     */
+    static BigInteger exact(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value) || value != Math.rint(value)) {
+            return null;
+        }
+        return new BigDecimal(value).toBigInteger();
+    }
+
+    // Floats without a fraction hash like the integer they are equal to
+    @Override
+    public int hashCode() {
+        if ((long) value == value) {
+            return Long.hashCode((long) value);
+        }
+        BigInteger exact = exact(value);
+        return exact == null ? Double.hashCode(value) : exact.hashCode();
+    }
+
     @Override
     public String toString() {
-        return floatWord.toString();
+        return Double.toString(value);
     }
 }
@@ -18,6 +18,7 @@ package ch.uprisesoft.yali.ast.node.word;
 import ch.uprisesoft.yali.ast.node.Node;
 import ch.uprisesoft.yali.ast.node.NodeType;
 import ch.uprisesoft.yali.scope.Environment;
+import java.math.BigInteger;
 
 /**
  *
@@ -25,11 +26,91 @@ import ch.uprisesoft.yali.scope.Environment;
  */
 public class IntegerWord extends Word {
 
-    public IntegerWord(Integer intVal) {
+    /**
+     * Integers from -128 up to the value of the system property
+     * yali.integer.cache.high (1024 by default) are shared.
+     */
+    private static final class Cache {
+
+        static final int LOW = -128;
+        static final int HIGH;
+        static final IntegerWord[] CACHE;
+
+        static {
+            HIGH = Math.max(127, Integer.getInteger("yali.integer.cache.high", 1024));
+            CACHE = new IntegerWord[HIGH - LOW + 1];
+            for (int i = 0; i < CACHE.length; i++) {
+                CACHE[i] = new IntegerWord(i + LOW);
+            }
+        }
+    }
+
+    private final long value;
+
+    public IntegerWord(long value) {
         super(NodeType.INTEGER);
-        this.integerWord = intVal;
-        this.stringWord = intVal.toString();
-        this.floatWord = Double.valueOf(intVal.floatValue());
+        this.value = value;
+    }
+
+    public static IntegerWord valueOf(long i) {
+        if (i >= Cache.LOW && i <= Cache.HIGH) {
+            return Cache.CACHE[(int) i - Cache.LOW];
+        }
+        return new IntegerWord(i);
+    }
+
+    /**
+     * Integers that fit into a long are always kept as long.
+     */
+    public static IntegerWord valueOf(BigInteger i) {
+        if (i.bitLength() < 64) {
+            return valueOf(i.longValue());
+        }
+        return new BigIntegerWord(i);
+    }
+
+    /**
+     * Reads an integer literal of any size.
+     */
+    public static IntegerWord parse(String literal) {
+        // 18 digits and a sign always fit into a long
+        if (literal.length() < 19) {
+            return new IntegerWord(Long.parseLong(literal));
+        }
+        BigInteger i = new BigInteger(literal);
+        if (i.bitLength() < 64) {
+            return new IntegerWord(i.longValue());
+        }
+        return new BigIntegerWord(i);
+    }
+
+    /**
+     * True if the value does not fit into a long.
+     */
+    public boolean isBig() {
+        return false;
+    }
+
+    public BigInteger bigValue() {
+        return BigInteger.valueOf(value);
+    }
+
+    /**
+     * The value as a number of times to do something. Integers beyond a long
+     * count as 0 or as Long.MAX_VALUE, which no loop ever gets to.
+     */
+    public long count() {
+        if (!isBig()) {
+            return longValue();
+        }
+        return bigValue().signum() < 0 ? 0 : Long.MAX_VALUE;
+    }
+
+    public int compareTo(IntegerWord other) {
+        if (isBig() || other.isBig()) {
+            return bigValue().compareTo(other.bigValue());
+        }
+        return Long.compare(value, other.value);
     }
     
     @Override
@@ -37,8 +118,38 @@ public class IntegerWord extends Word {
         return this;
     }
 
+    @Override
+    public long longValue() {
+        return value;
+    }
+
+    @Override
+    public double doubleValue() {
+        return value;
+    }
+
+    @Override
+    public Integer getInteger() {
+        return Math.toIntExact(value);
+    }
+
+    @Override
+    public Double getFloat() {
+        return doubleValue();
+    }
+
+    @Override
+    public String getString() {
+        return toString();
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(value);
+    }
+
     @Override
     public String toString() {
-        return integerWord.toString();
+        return Long.toString(value);
     }
 }
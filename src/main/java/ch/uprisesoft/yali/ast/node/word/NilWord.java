@@ -25,12 +25,10 @@ import ch.uprisesoft.yali.scope.Environment;
  */
 public class NilWord extends Word {
 
+    public static final NilWord NIL = new NilWord();
+
     public NilWord() {
         super(NodeType.NIL);
-        this.stringWord = "nil";
-        this.booleanWord = null;
-        this.floatWord = null;
-        this.integerWord = null;
     }
     
     @Override
@@ -38,6 +36,11 @@ public class NilWord extends Word {
         return this;
     }
 
+    @Override
+    public String getString() {
+        return "nil";
+    }
+
     @Override
     public String toString() {
         return "nil";
@@ -25,12 +25,10 @@ import ch.uprisesoft.yali.scope.Environment;
  */
 public class NoWord extends Word {
 
+    public static final NoWord NONE = new NoWord();
+
     public NoWord() {
         super(NodeType.NONE);
-        this.stringWord = "";
-        this.booleanWord = null;
-        this.floatWord = null;
-        this.integerWord = null;
     }
     
     @Override
@@ -38,6 +36,11 @@ public class NoWord extends Word {
         return this;
     }
 
+    @Override
+    public String getString() {
+        return "";
+    }
+
     @Override
     public String toString() {
         return "";
@@ -25,10 +25,18 @@ import ch.uprisesoft.yali.scope.Environment;
  */
 public class QuotedWord extends Word {
 
+    private final String quote;
+
     public QuotedWord(String quote) {
-        super(NodeType.QUOTE);
-        
-        this.quoteWord = quote.replace("\\ ", " ");
+        // Escaped blanks never read as a number either way
+        super(NodeType.QUOTE, quote);
+
+        this.quote = quote.replace("\\ ", " ");
+    }
+
+    @Override
+    public String getQuote() {
+        return quote;
     }
     
     @Override
@@ -38,7 +46,7 @@ public class QuotedWord extends Word {
 
     @Override
     public String toString() {
-        return quoteWord.toString();
+        return quote;
     }
 
 }
@@ -25,9 +25,16 @@ import ch.uprisesoft.yali.scope.Environment;
  */
 public class ReferenceWord extends Word {
 
+    private final String reference;
+
     public ReferenceWord(String reference) {
         super(NodeType.REFERENCE);
-        this.referenceWord = reference;
+        this.reference = reference;
+    }
+
+    @Override
+    public String getReference() {
+        return reference;
     }
     
     @Override
@@ -37,7 +44,7 @@ public class ReferenceWord extends Word {
 
     @Override
     public String toString() {
-        return referenceWord.toString();
+        return reference;
     }
 
 }
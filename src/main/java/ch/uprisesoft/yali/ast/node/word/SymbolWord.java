@@ -25,10 +25,16 @@ import ch.uprisesoft.yali.scope.Environment;
  */
 public class SymbolWord extends Word {
 
+    private final String symbol;
+
     public SymbolWord(String string) {
-        super(NodeType.SYMBOL);
-        this.symbolWord = string;
-        
+        super(NodeType.SYMBOL, string);
+        this.symbol = string;
+    }
+
+    @Override
+    public String getSymbol() {
+        return symbol;
     }
     
     @Override
@@ -38,6 +44,6 @@ public class SymbolWord extends Word {
     
     @Override
     public String toString() {
-        return symbolWord.toString();
+        return symbol;
     }
 }
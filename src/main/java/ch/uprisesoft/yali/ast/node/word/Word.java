@@ -17,20 +17,39 @@ package ch.uprisesoft.yali.ast.node.word;
 
 import ch.uprisesoft.yali.ast.node.Node;
 import ch.uprisesoft.yali.ast.node.NodeType;
-
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collections;
+
+/**
+ * A word holds only its own value, in a primitive field for numbers and
+ * booleans. The getters of the other kinds of words return null, the string
+ * forms are made when asked for. Words have no children.
+ */
 public abstract class Word extends Node {
 
-    protected Double floatWord;
-    protected Integer integerWord;
-    protected String stringWord;
-    protected String symbolWord;
-    protected String quoteWord;
-    protected String referenceWord;
-    protected Boolean booleanWord;
-    protected String nilWord = "nil";
+    // What the text of a word reads as
+    private static final byte TEXT = 0;
+    private static final byte INTEGER_LITERAL = 1;
+    private static final byte FLOAT_LITERAL = 2;
+
+    private final byte literal;
+    private Word number;
+    private int hash;
+    private String key;
 
     public Word(NodeType type) {
-        super(type);
+        super(type, Collections.emptyList());
+        this.literal = TEXT;
+    }
+
+    /**
+     * Word with a text that may read as a number. The text is looked at
+     * once, here, and read as a number the first time it is used as one.
+     */
+    protected Word(NodeType type, String text) {
+        super(type, Collections.emptyList());
+        this.literal = literal(text);
     }
 
     public NodeType getType() {
@@ -38,48 +57,63 @@ public abstract class Word extends Node {
     }
 
     public String getString() {
-        return stringWord;
+        return null;
     }
     
     public String getQuote() {
-        return quoteWord;
+        return null;
     }
 
     public Boolean getBoolean() {
-        return booleanWord;
+        return null;
     }
 
     public Double getFloat() {
-        return floatWord;
+        return null;
     }
 
     public Integer getInteger() {
-        return integerWord;
+        return null;
     }
 
     public String getNil() {
-        return nilWord;
+        return "nil";
     }
     
     public String getSymbol() {
-        return symbolWord;
+        return null;
     }
     
     public String getReference() {
-        return referenceWord;
-    }    
+        return null;
+    }
+
+    /**
+     * Value of a number without boxing it.
+     */
+    public long longValue() {
+        return getInteger();
+    }
 
+    public double doubleValue() {
+        return getFloat();
+    }
+
+    /**
+     * Words equal each other as in equal?. Words reading as numbers are
+     * compared as numbers, so 1, 1.0 and "1 are equal. Other words are
+     * compared by their text. Nil and none only equal themselves. The hash
+     * follows the same rules and is computed once, words never change.
+     */
     @Override
     public int hashCode() {
-        int hash = 7;
-        hash = 31 * hash + (floatWord == null ? 0 : floatWord.hashCode());
-        hash = 31 * hash + (integerWord == null ? 0 : integerWord.hashCode());
-        hash = 31 * hash + (quoteWord == null ? 0 : quoteWord.hashCode());
-        hash = 31 * hash + (stringWord == null ? 0 : stringWord.hashCode());
-        hash = 31 * hash + (booleanWord == null ? 0 : booleanWord.hashCode());
-        hash = 31 * hash + (referenceWord == null ? 0 : referenceWord.hashCode());
-        hash = 31 * hash + (symbolWord == null ? 0 : symbolWord.hashCode());
-        return hash;
+        int h = hash;
+        if (h == 0) {
+            Word number = number();
+            h = number != null ? number.hashCode() : toString().hashCode();
+            hash = h;
+        }
+        return h;
     }
 
     @Override
@@ -87,61 +121,129 @@ public abstract class Word extends Node {
         if (this == obj) {
             return true;
         }
-        if (obj == null) {
+        if (!(obj instanceof Word)) {
             return false;
         }
 
         final Word other = (Word) obj;
-        
-        if(this.type.equals(NodeType.NIL) || this.type.equals(NodeType.NONE) || other.type.equals(NodeType.NIL) || other.type.equals(NodeType.NONE)) {
+
+        if (this.type.equals(NodeType.NIL) || this.type.equals(NodeType.NONE) || other.type.equals(NodeType.NIL) || other.type.equals(NodeType.NONE)) {
             return false;
         }
-        
-        if (this.type.equals(NodeType.INTEGER) && other.type.equals(NodeType.INTEGER)) {
-            return this.integerWord.equals(other.integerWord);
+
+        Word left = this.number();
+        Word right = other.number();
+
+        if (left == null && right == null) {
+            return this.toString().equals(other.toString());
         }
-        
-        if (this.type.equals(NodeType.NAME) && other.type.equals(NodeType.NAME)) {
-            return this.stringWord.equals(other.stringWord);
+
+        if (left == null || right == null) {
+            return false;
         }
-        
-        if (this.type.equals(NodeType.FLOAT) && other.type.equals(NodeType.FLOAT)) {
-            return this.floatWord.equals(other.floatWord);
+
+        if (left.type.equals(NodeType.INTEGER) && right.type.equals(NodeType.INTEGER)) {
+            return ((IntegerWord) left).compareTo((IntegerWord) right) == 0;
         }
-        
-        if (this.type.equals(NodeType.FLOAT) && other.type.equals(NodeType.INTEGER)) {
-            return this.floatWord.equals(Double.valueOf(other.integerWord));
+
+        if (left.type.equals(NodeType.FLOAT) && right.type.equals(NodeType.FLOAT)) {
+            return left.doubleValue() == right.doubleValue();
         }
 
-        if (this.type.equals(NodeType.INTEGER) && other.type.equals(NodeType.FLOAT)) {
-            return Double.valueOf(this.integerWord).equals(other.floatWord);
+        // An integer and a float, equal if the float is exactly the integer
+        IntegerWord integer = (IntegerWord) (left.type.equals(NodeType.INTEGER) ? left : right);
+        double flt = (left.type.equals(NodeType.FLOAT) ? left : right).doubleValue();
+        BigInteger exact = FloatWord.exact(flt);
+        return exact != null && exact.equals(integer.bigValue());
+    }
+
+    /**
+     * Text the word is a key of a WordTable under: lower case, or the plain
+     * form of the number it reads as. Made once, its hash is kept by the
+     * string.
+     */
+    public String key() {
+        String k = key;
+        if (k == null) {
+            Word n = number();
+            if (n != null && n.type.equals(NodeType.INTEGER)) {
+                k = n.toString();
+            } else if (n != null && !Double.isInfinite(n.doubleValue()) && !Double.isNaN(n.doubleValue())) {
+                // The exact value, so a float is the key of the integer it equals
+                k = new BigDecimal(n.doubleValue()).stripTrailingZeros().toPlainString();
+            } else {
+                k = toString().toLowerCase();
+            }
+            key = k;
         }
-        
-        if (this.type.equals(NodeType.SYMBOL) && other.type.equals(NodeType.QUOTE)) {
-            return this.getString().equals(other.getQuote());
+        return k;
+    }
+
+    /**
+     * Reads a number literal, null if the text is not one.
+     */
+    public static Word number(String text) {
+        return number(text, literal(text));
+    }
+
+    /**
+     * The number this word reads as, null if it does not read as one.
+     */
+    public Word number() {
+        switch (type) {
+            case INTEGER:
+            case FLOAT:
+                return this;
+            case SYMBOL:
+            case QUOTE:
+                Word n = number;
+                if (n == null && literal != TEXT) {
+                    n = number(toString(), literal);
+                    number = n;
+                }
+                return n;
+            default:
+                return null;
         }
-        
-        if (this.type.equals(NodeType.QUOTE) && other.type.equals(NodeType.SYMBOL)) {
-            return this.getQuote().equals(other.getString());
+    }
+
+    private static Word number(String text, byte literal) {
+        switch (literal) {
+            case INTEGER_LITERAL:
+                return IntegerWord.parse(text);
+            case FLOAT_LITERAL:
+                return new FloatWord(Double.parseDouble(text));
+            default:
+                return null;
         }
-        
-        if (this.type.equals(NodeType.QUOTE) && other.type.equals(NodeType.QUOTE)) {
-            return this.getQuote().equals(other.getQuote());
+    }
+
+    // Integers are -?[0-9]+, floats -?[0-9]*\.[0-9]+
+    private static byte literal(String text) {
+        int length = text.length();
+        int i = 0;
+        if (i < length && text.charAt(i) == '-') {
+            i++;
         }
-        
-        if (this.type.equals(NodeType.SYMBOL) && other.type.equals(NodeType.SYMBOL)) {
-            return this.getString().equals(other.getString());
+
+        int digits = i;
+        while (i < length && digit(text.charAt(i))) {
+            i++;
         }
-        
-        if (((this.type.equals(NodeType.QUOTE) || this.type.equals(NodeType.SYMBOL)) && (other.type.equals(NodeType.INTEGER) || other.type.equals(NodeType.FLOAT)))
-                || ((this.type.equals(NodeType.INTEGER) || this.type.equals(NodeType.FLOAT)) && (other.type.equals(NodeType.QUOTE) || other.type.equals(NodeType.SYMBOL)))) {
-            return this.toString().equals(other.toString());
+        if (i == length) {
+            return i > digits ? INTEGER_LITERAL : TEXT;
+        } else if (text.charAt(i) != '.') {
+            return TEXT;
         }
 
-        if (getClass() != obj.getClass()) {
-            return false;
+        int fraction = ++i;
+        while (i < length && digit(text.charAt(i))) {
+            i++;
         }
+        return i == length && i > fraction ? FLOAT_LITERAL : TEXT;
+    }
 
-        return true;
+    private static boolean digit(char c) {
+        return c >= '0' && c <= '9';
     }
 }
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.exception;
+
+import ch.uprisesoft.yali.ast.node.Node;
+
+/**
+ * A number outside of the range an input takes, like an index past the end
+ * of a list or a negative size.
+ *
+ * @author rma
+ */
+public class RangeException extends RuntimeException {
+
+    private final Node node;
+    private final long min;
+    private final long max;
+
+    public RangeException(Node node, long min, long max) {
+        super("Expected a number from " + min + " to " + max + ", but received " + node);
+        this.node = node;
+        this.min = min;
+        this.max = max;
+    }
+
+    public Node getNode() {
+        return node;
+    }
+
+    public long getMin() {
+        return min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+}
@@ -25,7 +25,6 @@ import static ch.uprisesoft.yali.lexer.TokenType.RIGHT_BRACKET;
 import static ch.uprisesoft.yali.lexer.TokenType.RIGHT_PAREN;
 import static ch.uprisesoft.yali.lexer.TokenType.SLASH;
 import static ch.uprisesoft.yali.lexer.TokenType.STAR;
-import java.util.List;
 
 /**
  *
@@ -33,16 +32,11 @@ import java.util.List;
  */
 public class BaseScanner extends Scanner {
 
-    public BaseScanner(Lexer context, String source) {
+    BaseScanner(Lexer context, Source source) {
         super(context, source);
         logger.debug("(Scanner) Instantiated BaseScanner");
     }
 
-    protected BaseScanner(Lexer context, String source, List<Token> tokens, int start, int current, int line, int linePos, Token funStart, Token funEnd) {
-        super(context, source, tokens, start, current, line, linePos, funStart, funEnd);
-        logger.debug("(Scanner) Switched to BaseScanner");
-    }
-
     @Override
     public void scanToken() {
         char c = advance();
@@ -61,7 +55,7 @@ public class BaseScanner extends Scanner {
                 break;
             case '[':
                 addToken(LEFT_BRACKET);
-                context.setScanner(new ListScanner(context, source, tokens, start, current, line, linePos, funStart, funEnd));
+                context.enterList();
                 break;
             case ']':
                 addToken(RIGHT_BRACKET);
@@ -124,7 +118,7 @@ public class BaseScanner extends Scanner {
                 } else if (isAlpha(c)) {
                     symbol();
                 } else {
-                    System.out.println("Unexpected character: " + linePos + "/" + line);
+                    System.out.println("Unexpected character: " + source.linePos + "/" + source.line);
                 }
                 break;
         }
@@ -153,7 +147,7 @@ public class BaseScanner extends Scanner {
             advance();
         }
 
-        String text = source.substring(start, current);
+        String text = text();
 
         // Symbol is the default type
         TokenType type = TokenType.SYMBOL;
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.lexer;
+
+import java.nio.CharBuffer;
+
+/**
+ * Reads a char sequence (a string, a char buffer...) without copying it as a
+ * whole.
+ *
+ * @author rma
+ */
+class CharSequenceReader extends java.io.Reader {
+
+    private final CharSequence source;
+    private int pos = 0;
+
+    CharSequenceReader(CharSequence source) {
+        this.source = source instanceof CharBuffer ? ((CharBuffer) source).duplicate() : source;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) {
+        if (source instanceof CharBuffer) {
+            CharBuffer buffer = (CharBuffer) source;
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(cbuf, off, n);
+            return n;
+        }
+
+        if (pos >= source.length()) {
+            return -1;
+        }
+        int n = Math.min(len, source.length() - pos);
+        if (source instanceof String) {
+            ((String) source).getChars(pos, pos + n, cbuf, off);
+        } else {
+            for (int i = 0; i < n; i++) {
+                cbuf[off + i] = source.charAt(pos + i);
+            }
+        }
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -15,30 +15,98 @@
  */
 package ch.uprisesoft.yali.lexer;
 
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
+ * Turns source text into tokens. The tokens are produced on demand while
+ * iterating, so a source is never held as a whole, neither as text nor as
+ * token list. A lexer scans one source at a time.
  *
  * @author rmaire
  */
 public class Lexer {
 
-    protected String source;
-
     private Scanner scanner;
+    private BaseScanner baseScanner;
+    private ListScanner listScanner;
+
+    private final ArrayDeque<Token> scanned = new ArrayDeque<>();
+    private boolean finished;
 
     public List<Token> scan(String source) {
-        scanner = new BaseScanner(this, source);
-        this.source = source;
+        List<Token> tokens = new ArrayList<>();
+        Iterator<Token> it = tokens(source);
+        while (it.hasNext()) {
+            tokens.add(it.next());
+        }
+        return tokens;
+    }
 
-        while (!scanner.isAtEnd()) {
-            scanner.scanToken();
+    /**
+     * Tokens of a char sequence, e.g. a string or a char buffer. The last
+     * token is EOF.
+     */
+    public Iterator<Token> tokens(CharSequence source) {
+        if (source instanceof String) {
+            return tokens(new StringReader((String) source));
         }
+        return tokens(new CharSequenceReader(source));
+    }
+
+    /**
+     * Tokens read from a character stream, which is closed at its end. The
+     * last token is EOF.
+     */
+    public Iterator<Token> tokens(java.io.Reader in) {
+        Source source = new Source(in);
+        baseScanner = new BaseScanner(this, source);
+        listScanner = new ListScanner(this, source);
+        scanner = baseScanner;
+        scanned.clear();
+        finished = false;
+
+        return new Iterator<Token>() {
+            @Override
+            public boolean hasNext() {
+                while (scanned.isEmpty() && !finished) {
+                    if (scanner.isAtEnd()) {
+                        finished = true;
+                    } else {
+                        scanner.scanToken();
+                    }
+                }
+                return !scanned.isEmpty();
+            }
 
-        return  scanner.getTokens();
+            @Override
+            public Token next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return scanned.poll();
+            }
+        };
     }
-    
+
     public void setScanner(Scanner scanner) {
         this.scanner = scanner;
     }
+
+    void emit(Token token) {
+        scanned.add(token);
+    }
+
+    void enterList() {
+        listScanner.listDepth = 1;
+        scanner = listScanner;
+    }
+
+    void leaveList() {
+        scanner = baseScanner;
+    }
 }
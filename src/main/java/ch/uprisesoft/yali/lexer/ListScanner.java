@@ -25,7 +25,6 @@ import static ch.uprisesoft.yali.lexer.TokenType.RIGHT_BRACKET;
 import static ch.uprisesoft.yali.lexer.TokenType.RIGHT_PAREN;
 import static ch.uprisesoft.yali.lexer.TokenType.SLASH;
 import static ch.uprisesoft.yali.lexer.TokenType.STAR;
-import java.util.List;
 
 /**
  *
@@ -35,16 +34,11 @@ public class ListScanner extends Scanner {
 
     int listDepth = 1;
 
-    public ListScanner(Lexer context, String source) {
+    ListScanner(Lexer context, Source source) {
         super(context, source);
         logger.debug("(Scanner) Instantiated ListScanner");
     }
 
-    protected ListScanner(Lexer context, String source, List<Token> tokens, int start, int current, int line, int linePos, Token funStart, Token funEnd) {
-        super(context, source, tokens, start, current, line, linePos, funStart, funEnd);
-        logger.debug("(Scanner) Switched to ListScanner");
-    }
-
     @Override
     public void scanToken() {
         char c = advance();
@@ -57,7 +51,7 @@ public class ListScanner extends Scanner {
                 addToken(RIGHT_BRACKET);
                 listDepth--;
                 if (listDepth < 1) {
-                    context.setScanner(new BaseScanner(context, source, tokens, start, current, line, linePos, funStart, funEnd));
+                    context.leaveList();
                 }
                 break;
             case ' ':
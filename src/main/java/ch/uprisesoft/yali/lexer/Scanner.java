@@ -7,8 +7,6 @@ package ch.uprisesoft.yali.lexer;
 
 import static ch.uprisesoft.yali.lexer.TokenType.EOF;
 import static ch.uprisesoft.yali.lexer.TokenType.NUMBER;
-import java.util.ArrayList;
-import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -22,43 +20,19 @@ public abstract class Scanner {
 
     protected Lexer context;
 
-    protected String source;
-    protected List<Token> tokens = new ArrayList<>();
+    // Shared by the scanners of a lexer, switching scanners copies nothing
+    protected Source source;
 
-    protected int start = 0;
-    protected int current = 0;
-    protected int line = 1;
-    protected int linePos = 0;
-
-    protected Token funStart;
-    protected Token funEnd;
-
-    public Scanner(Lexer context, String source) {
-        this.context = context;
-        this.source = source;
-    }
-
-    protected Scanner(Lexer context, String source, List<Token> tokens, int start, int current, int line, int linePos, Token funStart, Token funEnd) {
+    Scanner(Lexer context, Source source) {
         this.context = context;
         this.source = source;
-        this.tokens = tokens;
-        this.start = start;
-        this.current = current;
-        this.line = line;
-        this.linePos = linePos;
-        this.funStart = funStart;
-        this.funEnd = funEnd;
-    }
-
-    public List<Token> getTokens() {
-        return tokens;
     }
 
     public boolean isAtEnd() {
-        start = current;
+        source.start = source.current;
         boolean end = testEnd();
         if (end == true) {
-            tokens.add(new Token(EOF, "", line, linePos, current));
+            context.emit(new Token(EOF, "", source.line, source.linePos, source.current));
         }
         return end;
     }
@@ -66,13 +40,13 @@ public abstract class Scanner {
     public abstract void scanToken();
 
     protected boolean testEnd() {
-        return current >= source.length();
+        return !source.has(source.current);
     }
 
     protected void string(TokenType type) {
         while (!isNextSpecialChar() && !testEnd()) {
             if (peek() == '\n') {
-                line++;
+                source.line++;
             }
             advance();
         }
@@ -88,11 +62,12 @@ public abstract class Scanner {
     protected abstract void symbol();
 
     protected boolean isAlpha(char c) {
-        return Character.isAlphabetic(c) || String.valueOf(c).equals("_") || String.valueOf(c).equals("-") || String.valueOf(c).equals("!") || String.valueOf(c).equals("?");
+        return Character.isAlphabetic(c) || c == '_' || c == '-' || c == '!' || c == '?';
     }
 
+    // Dots may only follow the first character, as in map.se
     protected boolean isAlphaNumeric(char c) {
-        return isAlpha(c) || isDigit(c);
+        return isAlpha(c) || isDigit(c) || c == '.';
     }
 
     protected void number() {
@@ -114,20 +89,20 @@ public abstract class Scanner {
     }
 
     protected char advance() {
-        current++;
-        linePos++;
-        return source.charAt(current - 1);
+        source.current++;
+        source.linePos++;
+        return source.charAt(source.current - 1);
     }
 
     protected boolean match(char expected) {
         if (testEnd()) {
             return false;
         }
-        if (source.charAt(current) != expected) {
+        if (source.charAt(source.current) != expected) {
             return false;
         }
 
-        current++;
+        source.current++;
         return true;
     }
 
@@ -135,43 +110,45 @@ public abstract class Scanner {
         if (testEnd()) {
             return '\0';
         }
-        return source.charAt(current);
+        return source.charAt(source.current);
     }
 
     protected char peekNext() {
-        if (current + 1 >= source.length()) {
+        if (!source.has(source.current + 1)) {
             return '\0';
         }
-        return source.charAt(current + 1);
+        return source.charAt(source.current + 1);
+    }
+
+    protected String text() {
+        return source.text(source.start, source.current);
     }
 
     protected void newLine() {
         addToken(TokenType.NEWLINE);
-        line++;
-        linePos = 0;
+        source.line++;
+        source.linePos = 0;
     }
 
     protected void addToken(TokenType type) {
-        String text = source.substring(start, current);
-        tokens.add(new Token(type, text, line, linePos - text.length(), current - text.length()));
+        String text = text();
+        context.emit(new Token(type, text, source.line, source.linePos - text.length(), source.current - text.length()));
     }
 
     protected void addTo(TokenType type) {
-        String text = source.substring(start, current);
-        funStart = new Token(type, text, line, linePos - text.length(), current - text.length());
+        String text = text();
+        source.funStart = new Token(type, text, source.line, source.linePos - text.length(), source.current - text.length());
 
-        tokens.add(funStart);
+        context.emit(source.funStart);
     }
 
     protected void addEnd(TokenType type) {
-        String text = source.substring(funStart.getAbsolute(), current);
-        int absolutePos = current - source.substring(start, current).length();
-
-        funEnd = new Token(type, text, line, linePos - text.length(), absolutePos);
+        // Without TO before, the END token only carries itself
+        int from = source.funStart != null ? source.funStart.getAbsolute() : source.start;
+        String text = source.text(from, source.current);
 
-        tokens.add(funEnd);
+        context.emit(new Token(type, text, source.line, source.linePos - text.length(), source.start));
 
-        funStart = null;
-        funEnd = null;
+        source.funStart = null;
     }
 }
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.lexer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * Characters of the source and the position of the scanners in it. The
+ * characters are read in chunks, only the ones from the start of the current
+ * token on are kept (from the start of the procedure while in a procedure
+ * definition, the END token carries its source).
+ *
+ * @author rma
+ */
+class Source {
+
+    private static final int CHUNK = 8192;
+
+    private final java.io.Reader in;
+    private char[] buffer = new char[CHUNK];
+    // Absolute position of the first character in the buffer
+    private int offset = 0;
+    private int length = 0;
+    private boolean exhausted = false;
+
+    int start = 0;
+    int current = 0;
+    int line = 1;
+    int linePos = 0;
+
+    Token funStart;
+
+    Source(java.io.Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Tells if there is a character at the given absolute position.
+     */
+    boolean has(int pos) {
+        while (pos >= offset + length) {
+            if (exhausted || !fill()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    char charAt(int pos) {
+        if (!has(pos)) {
+            throw new IndexOutOfBoundsException("Position " + pos + " is after the end of the source");
+        }
+        return buffer[pos - offset];
+    }
+
+    String text(int from, int to) {
+        return new String(buffer, from - offset, to - from);
+    }
+
+    private boolean fill() {
+        int keep = funStart != null ? Math.min(start, funStart.getAbsolute()) : start;
+        int shift = keep - offset;
+        if (shift > 0) {
+            System.arraycopy(buffer, shift, buffer, 0, length - shift);
+            offset = keep;
+            length -= shift;
+        }
+        if (buffer.length - length < CHUNK / 2) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+
+        try {
+            int read = in.read(buffer, length, buffer.length - length);
+            if (read < 0) {
+                exhausted = true;
+                in.close();
+                return false;
+            }
+            length += read;
+            return true;
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2020 Uprise Software.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.main;
+
+import ch.uprisesoft.yali.lexer.Lexer;
+import ch.uprisesoft.yali.lexer.Token;
+import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * Runs source files one after the other in one interpreter, as in
+ * <code>yali run file.logo...</code>. Each file is mapped into memory and
+ * evaluated. The lexer is timed on the tokens the evaluation reads, as they
+ * are made, so each file is lexed once. The throughput of both is reported
+ * per file and in total.
+ *
+ * @author rma
+ */
+public class Batch {
+
+    private final Interpreter it;
+    private final PrintStream report;
+
+    private long bytes = 0;
+    private long lexNanos = 0;
+    private long calls = 0;
+    private long evalNanos = 0;
+    private int failed = 0;
+
+    public Batch(Interpreter it, PrintStream report) {
+        this.it = it;
+        this.report = report;
+    }
+
+    /**
+     * Runs all files, also when some of them fail.
+     *
+     * @return the number of files that failed
+     */
+    public int run(java.util.List<Path> files) {
+        for (Path file : files) {
+            try {
+                run(file);
+            } catch (IOException | RuntimeException e) {
+                failed++;
+                report.println(String.format("%s: %s", file, e));
+            }
+        }
+
+        report.println(String.format(
+                "total: %d files, %d failed, %s, %s",
+                files.size(), failed,
+                lexed(bytes, lexNanos),
+                evaluated(calls, evalNanos)));
+        return failed;
+    }
+
+    private void run(Path file) throws IOException {
+        MappedByteBuffer source = MappedFileReader.map(file);
+        int size = source.remaining();
+        Timed tokens = new Timed(new Lexer().tokens(new MappedFileReader(source)));
+
+        long before = it.calls();
+        long start = System.nanoTime();
+        it.eval(tokens);
+        // The tokens are made while the source is read, not before
+        long evaluated = System.nanoTime() - start - tokens.nanos;
+        long called = it.calls() - before;
+        bytes += size;
+        lexNanos += tokens.nanos;
+        calls += called;
+        evalNanos += evaluated;
+
+        report.println(String.format(
+                "%s: %d bytes, %d tokens, %s, %s",
+                file, size, tokens.count,
+                lexed(size, tokens.nanos),
+                evaluated(called, evaluated)));
+    }
+
+    private static String lexed(long bytes, long nanos) {
+        return String.format("lexed %.1f MB/s", perSecond(bytes, nanos) / (1024 * 1024));
+    }
+
+    private static String evaluated(long calls, long nanos) {
+        return String.format("%d calls in %.1f ms, %.0f calls/s", calls, nanos / 1e6, perSecond(calls, nanos));
+    }
+
+    private static double perSecond(long count, long nanos) {
+        return nanos == 0 ? 0 : count * 1e9 / nanos;
+    }
+
+    /**
+     * Counts the tokens of a lexer and the time spent making them.
+     */
+    private static class Timed implements Iterator<Token> {
+
+        private final Iterator<Token> tokens;
+        private int count = 0;
+        private long nanos = 0;
+
+        Timed(Iterator<Token> tokens) {
+            this.tokens = tokens;
+        }
+
+        @Override
+        public boolean hasNext() {
+            long start = System.nanoTime();
+            try {
+                return tokens.hasNext();
+            } finally {
+                nanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public Token next() {
+            long start = System.nanoTime();
+            try {
+                Token token = tokens.next();
+                count++;
+                return token;
+            } finally {
+                nanos += System.nanoTime() - start;
+            }
+        }
+    }
+}
@@ -21,8 +21,11 @@ import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
 import ch.uprisesoft.yali.runtime.interpreter.InterpreterBuilder;
 import ch.uprisesoft.yali.runtime.io.InputGenerator;
 import ch.uprisesoft.yali.runtime.io.OutputObserver;
+import ch.uprisesoft.yali.runtime.procedures.builtin.MockTurtleManager;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 
 import org.slf4j.Logger;
@@ -63,6 +66,18 @@ public class Main {
 
         Interpreter it = new InterpreterBuilder().withStdLib(oo, ig).build();
 
+        // yali run file.logo...
+        if (args.length > 0 && args[0].equals("run")) {
+            new MockTurtleManager().registerProcedures(it);
+
+            java.util.List<Path> files = new ArrayList<>();
+            for (int i = 1; i < args.length; i++) {
+                files.add(Paths.get(args[i]));
+            }
+            int failed = new Batch(it, System.err).run(files);
+            System.exit(failed == 0 ? 0 : 1);
+        }
+
         String input = "to recurse :i\n"
                 + "print :i\n"
                 + "recurse :i + 1\n"
@@ -0,0 +1,279 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.parser;
+
+import ch.uprisesoft.yali.ast.node.Node;
+import ch.uprisesoft.yali.ast.node.Procedure;
+import ch.uprisesoft.yali.lexer.Lexer;
+import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
+import ch.uprisesoft.yali.scope.Environment;
+import ch.uprisesoft.yali.scope.WorkspaceFile;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Results of reading sources, kept by a hash of the text so the same source
+ * is lexed and parsed once. A hit defines the procedures and aliases of the
+ * source again and gives a fresh copy of its instructions, built from a
+ * WorkspaceFile image.
+ *
+ * How a source is read depends on the arities of the procedures known when
+ * it is read, so these are part of the key. The images are kept in memory,
+ * the least recently used ones dropped first, and also written to a
+ * directory if there is one, which any number of processes may share. A
+ * cache can be used by any number of interpreters at once.
+ *
+ * @author rma
+ */
+public class ParseCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParseCache.class);
+
+    // Shorter sources are read faster than they are hashed and copied
+    public static final int MIN_LENGTH = 256;
+
+    private static final String SUFFIX = ".yalp";
+
+    private final Path dir;
+    private final Map<String, byte[]> images;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // Digest of the procedure table of the last procedure epoch seen
+    private volatile Procedures procedures;
+
+    /**
+     * Cache in memory only, for up to 256 sources.
+     */
+    public ParseCache() {
+        this(null, 256);
+    }
+
+    /**
+     * @param dir where images are kept across runs, null for none
+     * @param capacity number of sources kept in memory
+     */
+    public ParseCache(Path dir, int capacity) {
+        this.dir = dir;
+        this.images = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Reads a source for the interpreter, from the cache if it was read
+     * before with the same procedures defined.
+     */
+    public Node read(Interpreter it, String source) {
+        if (source.length() < MIN_LENGTH) {
+            return parse(it, source).read;
+        }
+
+        Environment env = it.env();
+        String key = key(env, source);
+
+        byte[] image = lookup(key);
+        if (image != null) {
+            try {
+                Node program = WorkspaceFile.read(ByteBuffer.wrap(image), env);
+                hits.incrementAndGet();
+                return program;
+            } catch (IOException ex) {
+                logger.debug("Dropping unreadable parse cache entry {}: {}", key, ex.getMessage());
+                forget(key);
+            }
+        }
+
+        misses.incrementAndGet();
+        Parsed parsed = parse(it, source);
+
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(source.length());
+            WorkspaceFile.write(parsed.reader.defined().values(), parsed.reader.aliases(), parsed.read, out);
+            store(key, out.toByteArray());
+        } catch (IOException | RuntimeException ex) {
+            // Sources that cannot be stored are read every time
+            logger.debug("Not caching source {}: {}", key, ex.getMessage());
+        }
+
+        return parsed.read;
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    public synchronized int size() {
+        return images.size();
+    }
+
+    public synchronized void clear() {
+        images.clear();
+    }
+
+    private static Parsed parse(Interpreter it, String source) {
+        Reader reader = new Reader(it);
+        return new Parsed(reader, reader.read(new Lexer().tokens(source)));
+    }
+
+    private byte[] lookup(String key) {
+        synchronized (this) {
+            byte[] image = images.get(key);
+            if (image != null || dir == null) {
+                return image;
+            }
+        }
+
+        Path file = dir.resolve(key + SUFFIX);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            byte[] image = Files.readAllBytes(file);
+            synchronized (this) {
+                images.put(key, image);
+            }
+            return image;
+        } catch (IOException ex) {
+            logger.debug("Cannot read parse cache file {}: {}", file, ex.getMessage());
+            return null;
+        }
+    }
+
+    private void store(String key, byte[] image) {
+        synchronized (this) {
+            images.put(key, image);
+        }
+        if (dir == null) {
+            return;
+        }
+
+        // Written aside and moved, so no reader sees half a file
+        try {
+            Files.createDirectories(dir);
+            Path temp = Files.createTempFile(dir, key, ".tmp");
+            Files.write(temp, image);
+            Files.move(temp, dir.resolve(key + SUFFIX), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            logger.debug("Cannot write parse cache file for {}: {}", key, ex.getMessage());
+        }
+    }
+
+    private void forget(String key) {
+        synchronized (this) {
+            images.remove(key);
+        }
+        if (dir != null) {
+            try {
+                Files.deleteIfExists(dir.resolve(key + SUFFIX));
+            } catch (IOException ex) {
+                logger.debug("Cannot delete parse cache file for {}: {}", key, ex.getMessage());
+            }
+        }
+    }
+
+    private String key(Environment env, String source) {
+        MessageDigest digest = sha256();
+        digest.update(procedures(env));
+        digest.update(source.getBytes(StandardCharsets.UTF_8));
+        return hex(digest.digest());
+    }
+
+    // The procedure epoch changes with every change of a procedure table,
+    // so the digest is made once per epoch
+    private byte[] procedures(Environment env) {
+        Procedures known = procedures;
+        if (known != null && known.epoch == env.epoch()) {
+            return known.digest;
+        }
+
+        int epoch = env.epoch();
+        java.util.List<String> signatures = new ArrayList<>();
+        for (Map.Entry<String, Procedure> entry : env.getProcedures().entrySet()) {
+            signatures.add(entry.getKey() + " " + entry.getValue().getArity());
+        }
+        signatures.sort(null);
+
+        MessageDigest digest = sha256();
+        for (String signature : signatures) {
+            digest.update(signature.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+        known = new Procedures(epoch, digest.digest());
+        procedures = known;
+        return known.digest;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private static final class Parsed {
+
+        private final Reader reader;
+        private final Node read;
+
+        Parsed(Reader reader, Node read) {
+            this.reader = reader;
+            this.read = read;
+        }
+    }
+
+    private static final class Procedures {
+
+        private final int epoch;
+        private final byte[] digest;
+
+        Procedures(int epoch, byte[] digest) {
+            this.epoch = epoch;
+            this.digest = digest;
+        }
+    }
+}
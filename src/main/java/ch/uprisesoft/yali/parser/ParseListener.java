@@ -0,0 +1,38 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.parser;
+
+/**
+ * Receives the steps of the reader. Subjects are handed over as they are
+ * (nodes, tokens, procedures), formatting them is up to the listener, so a
+ * reader without listener does no trace work at all.
+ *
+ * @author rma
+ */
+public interface ParseListener {
+
+    ParseListener NONE = new ParseListener() {
+    };
+
+    default void enter(String rule, Object subject) {
+    }
+
+    default void exit(String rule, Object subject) {
+    }
+
+    default void read(String kind, Object subject) {
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.parser;
+
+import org.ainslec.picocog.PicoWriter;
+
+/**
+ * Indented parse trace, as text.
+ *
+ * @author rma
+ */
+public class ParseTrace implements ParseListener {
+
+    private PicoWriter pw = new PicoWriter();
+
+    @Override
+    public void enter(String rule, Object subject) {
+        if (subject == null) {
+            pw.writeln(rule + " start");
+        } else {
+            pw.writeln(rule + " start: " + subject);
+        }
+        pw.indentRight();
+    }
+
+    @Override
+    public void exit(String rule, Object subject) {
+        pw.indentLeft();
+        if (subject == null) {
+            pw.writeln(rule + " end");
+        } else {
+            pw.writeln(rule + " end: " + subject);
+        }
+    }
+
+    @Override
+    public void read(String kind, Object subject) {
+        pw.writeln(kind + ": " + subject);
+    }
+
+    public void clear() {
+        pw = new PicoWriter();
+    }
+
+    @Override
+    public String toString() {
+        return pw.toString();
+    }
+}
@@ -30,23 +30,41 @@ import ch.uprisesoft.yali.lexer.TokenType;
 import ch.uprisesoft.yali.ast.node.NodeType;
 import ch.uprisesoft.yali.ast.node.word.IntegerWord;
 import ch.uprisesoft.yali.exception.TokenTypeException;
+import ch.uprisesoft.yali.runtime.Diagnostics;
 import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
 import ch.uprisesoft.yali.runtime.procedures.FunctionNotFoundException;
-import org.ainslec.picocog.PicoWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class Reader {
 
     private static final Logger logger = LoggerFactory.getLogger(Reader.class);
-    private PicoWriter pw = new PicoWriter();
+    private ParseListener listener = ParseListener.NONE;
 
+    // Tokens read so far. Tokens of a stream are dropped once their top
+    // level expression is read.
     private java.util.List<Token> tokens;
+    private Iterator<Token> stream;
     private final Interpreter functions;
 
     private int current = 0;
     private boolean inParens = false;
 
+    // Procedures declared by a header scan, not read yet
+    private Map<String, Procedure> declared;
+    // Procedure bodies to read again, with the tokens of the body
+    private Map<Procedure, java.util.List<Token>> pending;
+    // Procedures defined and aliases made by the last read
+    private Map<String, Procedure> defined = new LinkedHashMap<>();
+    private Map<String, String> aliases = new LinkedHashMap<>();
+    // Set when a symbol is read that is no known procedure
+    private boolean unresolved = false;
+
 //    public Reader() {
 //        this(new ProcedureDispatcher());
 //    }
@@ -58,96 +76,184 @@ public class Reader {
         return functions;
     }
 
+    /**
+     * Procedures the last read defined, by name.
+     */
+    public Map<String, Procedure> defined() {
+        return defined;
+    }
+
+    /**
+     * Aliases the last read made, each with the name of its original.
+     */
+    public Map<String, String> aliases() {
+        return aliases;
+    }
+
+    public ParseListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Listener for the steps of parsing, e.g. a ParseTrace. None by default.
+     */
+    public void setListener(ParseListener listener) {
+        this.listener = listener == null ? ParseListener.NONE : listener;
+    }
+
+    /**
+     * Reads the tokens in one pass. Procedures are known from their
+     * definition on, so a call can come before the definition of its
+     * procedure only at the price of reading again: a procedure body is read
+     * again at the end, top level code from that call on after a scan for the
+     * procedure headers of the rest of the source.
+     */
     public Node read(java.util.List<Token> tokens) {
-        logger.debug("Parsing start");
         this.tokens = tokens;
+        this.stream = null;
+        return read();
+    }
 
-        parseFunctionHeaders();
-        parseFunctionAliases();
+    /**
+     * Reads tokens as they come from a lexer. Only the tokens of the
+     * expression being read are kept.
+     */
+    public Node read(Iterator<Token> tokens) {
+        this.tokens = new ArrayList<>();
+        this.stream = tokens;
+        return read();
+    }
+
+    private Node read() {
+        if (Diagnostics.TRACE) {
+            logger.debug("Parsing start");
+        }
+        this.current = 0;
+        this.declared = new HashMap<>();
+        this.pending = new LinkedHashMap<>();
+        this.defined = new LinkedHashMap<>();
+        this.aliases = new LinkedHashMap<>();
+
+        boolean scanned = false;
 
         Node program = new List();
         while (!isAtEnd()) {
-            Node expression = parseExpression();
-            logger.debug(pw.toString());
-            pw = new PicoWriter();
+            discard();
+            int start = current;
+            unresolved = false;
+
+            Node expression;
+            try {
+                expression = parseExpression();
+            } catch (RuntimeException ex) {
+                // A call whose procedure is not defined yet may take the
+                // following tokens for something else
+                if (!unresolved || scanned) {
+                    throw ex;
+                }
+                expression = null;
+            }
+
+            if (unresolved && !scanned) {
+                parseFunctionHeaders();
+                scanned = true;
+                current = start;
+                inParens = false;
+                continue;
+            }
+
             if (!expression.type().equals(NodeType.NONE) && !expression.type().equals(NodeType.PROCEDURE)) {
                 program.addChild(expression);
             }
 
         }
-        logger.debug("Parsing end");
+
+        for (Map.Entry<Procedure, java.util.List<Token>> body : pending.entrySet()) {
+            tokens = body.getValue();
+            stream = null;
+            current = 0;
+            inParens = false;
+            body.getKey().getChildren().clear();
+            body(body.getKey());
+        }
+
+        this.declared = null;
+        this.pending = null;
+        if (Diagnostics.TRACE) {
+            logger.debug("Parsing end");
+        }
         return program;
     }
 
+    // Scans the rest of the tokens for procedure headers and aliases
     private void parseFunctionHeaders() {
-        logger.debug("Header parsing start");
+        if (Diagnostics.TRACE) {
+            logger.debug("Header parsing start");
+        }
         while (!isAtEnd()) {
             if (match(TokenType.TO)) {
-                pw.writeln("\nFunction Header start");
-                pw.indentRight();
-
-                Token defStartToken = previous();
-                Procedure fun = new Procedure(consume(TokenType.SYMBOL).getLexeme());
-                java.util.List<String> args = new java.util.ArrayList<>();
-                while (!check(TokenType.NEWLINE)) {
-                    args.add(consume(TokenType.REFERENCE).getLexeme().substring(1));
+                Procedure fun = header();
+                declared.put(fun.getName(), fun);
+                define(fun);
+
+                listener.read("Function Header", fun);
+            } else if (match(TokenType.SYMBOL)) {
+                if (previous().getLexeme().toLowerCase().equals("alias")) {
+                    alias();
                 }
-                fun.setArgs(args);
+            } else {
                 advance();
-
-                fun.setPosInSource(defStartToken.getLine(), defStartToken.getPos());
-                functions.env().define(fun);
-
-                pw.indentRight();
-                pw.writeln(fun.header());
-                pw.indentLeft();
-
-                pw.indentLeft();
-                pw.writeln("\nFunction Header end");
             }
-            advance();
         }
-        current = 0;
-        logger.debug("Header parsing end");
+        if (Diagnostics.TRACE) {
+            logger.debug("Header parsing end");
+        }
     }
 
-    private void parseFunctionAliases() {
-        logger.debug("Alias parsing start");
-        while (!isAtEnd()) {
-            if (match(TokenType.SYMBOL) && previous().getLexeme().toLowerCase().equals("alias")) {
-                pw.writeln("\nAlias start");
-                pw.indentRight();
+    private Procedure header() {
+        Token defStartToken = previous();
+        Procedure fun = new Procedure(consume(TokenType.SYMBOL).getLexeme());
+        java.util.List<String> args = new ArrayList<>();
+        while (!check(TokenType.NEWLINE)) {
+            args.add(consume(TokenType.REFERENCE).getLexeme().substring(1));
+        }
+        fun.setArgs(args);
+        advance();
 
-                String original = consume(TokenType.QUOTE).getLexeme().substring(1);
-                String alias = consume(TokenType.QUOTE).getLexeme().substring(1);
+        fun.setPosInSource(defStartToken.getLine(), defStartToken.getPos());
+        return fun;
+    }
 
-                functions.env().alias(original, alias);
+    private void alias() {
+        if (!check(TokenType.QUOTE) || !checkNext(TokenType.QUOTE)) {
+            return;
+        }
+        String original = token(current).getLexeme().substring(1);
+        String alias = token(current + 1).getLexeme().substring(1);
 
-                advance();
+        functions.env().alias(original, alias);
+        aliases.put(alias, original);
 
-                pw.indentRight();
-                pw.writeln("Alias " + original + " -> " + alias);
-                pw.indentLeft();
+        listener.read("Alias", alias);
+    }
 
-                pw.indentLeft();
-                pw.writeln("Alias end");
-            }
-            advance();
-        }
-        current = 0;
-        logger.debug("Alias parsing end");
+    private void define(Procedure fun) {
+        functions.env().define(fun);
+        defined.put(fun.getName(), fun);
     }
 
     private Node parseExpression() {
-        logger.debug("Expression parsing start");
-        pw.writeln("\nExpression start");
-        pw.indentRight();
+        if (Diagnostics.TRACE) {
+            logger.debug("Expression parsing start");
+        }
+        listener.enter("Expression", null);
 
         Node node = expression();
 
-        pw.indentLeft();
-        pw.writeln("Expression end");
-        logger.debug("Expression parsing end");
+        listener.exit("Expression", null);
+        if (Diagnostics.TRACE) {
+            logger.debug("Expression parsing end");
+        }
 
         return node;
     }
@@ -164,37 +270,54 @@ public class Reader {
 
         if (match(TokenType.TO)) {
 
-            Procedure fun = functions.env().getProcedures().get(consume(TokenType.SYMBOL).getLexeme());
-            pw.indentRight();
-            logger.debug("Fundef Body parsing start");
-            pw.writeln("Fundef Body start: " + fun.getName());
+            Procedure fun = header();
+            if (declared.containsKey(fun.getName())) {
+                fun = declared.remove(fun.getName());
+            } else {
+                define(fun);
+            }
 
-            while (!check(TokenType.NEWLINE)) {
-                advance();
+            if (Diagnostics.TRACE) {
+                logger.debug("Fundef Body parsing start");
             }
-            advance();
+            listener.enter("Fundef Body", fun.getName());
 
-            while (!check(TokenType.END)) {
-                fun.addChild(expression());
+            boolean outer = unresolved;
+            unresolved = false;
+            int start = current;
 
-                // Check for unclosed function body
-                if (peek().type().equals(TokenType.EOF)) {
-                    throw new TokenTypeException(TokenType.END, TokenType.EOF);
+            try {
+                body(fun);
+            } catch (RuntimeException ex) {
+                if (!unresolved) {
+                    throw ex;
                 }
+                // Read again at the end, skip the body for now
+                inParens = false;
+                while (!check(TokenType.END)) {
+                    if (isAtEnd()) {
+                        throw new TokenTypeException(TokenType.END, TokenType.EOF);
+                    }
+                    advance();
+                }
+                consume(TokenType.END);
+            }
 
-                advance();
+            if (unresolved) {
+                java.util.List<Token> body = new ArrayList<>(tokens.subList(start, current));
+                body.add(new Token(TokenType.EOF, "", previous().getLine(), previous().getPos(), previous().getAbsolute()));
+                pending.put(fun, body);
             }
-            consume(TokenType.END);
+            unresolved = outer;
 
             fun.setSource(previous().getLexeme());
 
             match(TokenType.NEWLINE);
 
-            functions.env().define(fun);
-
-            pw.indentLeft();
-            pw.writeln("Fundef Body end: " + fun.getName());
-            logger.debug("Fundef Body parsing end");
+            listener.exit("Fundef Body", fun.getName());
+            if (Diagnostics.TRACE) {
+                logger.debug("Fundef Body parsing end");
+            }
 
             node = fun;
         } else {
@@ -204,6 +327,20 @@ public class Reader {
         return node;
     }
 
+    private void body(Procedure fun) {
+        while (!check(TokenType.END)) {
+            fun.addChild(expression());
+
+            // Check for unclosed function body
+            if (peek().type().equals(TokenType.EOF)) {
+                throw new TokenTypeException(TokenType.END, TokenType.EOF);
+            }
+
+            advance();
+        }
+        consume(TokenType.END);
+    }
+
     private Node funCall() {
         Node node = Node.none();
 
@@ -213,15 +350,18 @@ public class Reader {
                 throw new FunctionNotFoundException(current().getLexeme().toLowerCase());
             }
 
-            pw.writeln("Funcall start: " + current().getLexeme());
-            pw.indentRight();
-
             String name = current().getLexeme();
+            listener.enter("Funcall", name);
+
             int arity = functions.env().getProcedures().get(name).getArity();
             advance();
 
+            if (name.toLowerCase().equals("alias")) {
+                alias();
+            }
+
             Call call = new Call(name, arity);
-            call.code(functions.env().getProcedures().get(name));
+            call.code(functions.env().getProcedures().get(name), functions.env().epoch());
             call.setPosInSource(current().getLine(), current().getPos());
             node = call;
 
@@ -235,8 +375,7 @@ public class Reader {
                 }
             }
 
-            pw.indentLeft();
-            pw.writeln("Funcall end: " + name);
+            listener.exit("Funcall", name);
 
         } else {
             node = equality();
@@ -256,14 +395,14 @@ public class Reader {
 
             if (operator.equals(TokenType.EQUAL) || operator.equals(TokenType.EQUAL_EQUAL)) {
                 Call call = new Call("equal?", 2);
-                call.code(functions.env().getProcedures().get("equal?"));
+                call.code(functions.env().getProcedures().get("equal?"), functions.env().epoch());
                 call.setPosInSource(current().getLine(), current().getPos());
                 node = call;
             }
 
             if (operator.equals(TokenType.BANG_EQUAL)) {
                 Call call = new Call("notequal?", 2);
-                call.code(functions.env().getProcedures().get("notequal?"));
+                call.code(functions.env().getProcedures().get("notequal?"), functions.env().epoch());
                 call.setPosInSource(current().getLine(), current().getPos());
                 node = call;
             }
@@ -285,33 +424,32 @@ public class Reader {
             Node left = node;
             Node right = term();
 
-            pw.writeln("Logic Expression start: " + operator);
-            pw.indentRight();
+            listener.enter("Logic Expression", operator);
 
             if (operator.equals(TokenType.LESS)) {
                 Call call = new Call("less?", 2);
-                call.code(functions.env().getProcedures().get("less?"));
+                call.code(functions.env().getProcedures().get("less?"), functions.env().epoch());
                 call.setPosInSource(current().getLine(), current().getPos());
                 node = call;
             }
 
             if (operator.equals(TokenType.GREATER)) {
                 Call call = new Call("greater?", 2);
-                call.code(functions.env().getProcedures().get("greater?"));
+                call.code(functions.env().getProcedures().get("greater?"), functions.env().epoch());
                 call.setPosInSource(current().getLine(), current().getPos());
                 node = call;
             }
 
             if (operator.equals(TokenType.LESS_EQUAL)) {
                 Call call = new Call("lessequal?", 2);
-                call.code(functions.env().getProcedures().get("lessequal?"));
+                call.code(functions.env().getProcedures().get("lessequal?"), functions.env().epoch());
                 call.setPosInSource(current().getLine(), current().getPos());
                 node = call;
             }
 
             if (operator.equals(TokenType.GREATER_EQUAL)) {
                 Call call = new Call("greaterequal?", 2);
-                call.code(functions.env().getProcedures().get("greaterequal?"));
+                call.code(functions.env().getProcedures().get("greaterequal?"), functions.env().epoch());
                 call.setPosInSource(current().getLine(), current().getPos());
                 node = call;
             }
@@ -320,8 +458,7 @@ public class Reader {
             node.addChild(right);
             node.setPosInSource(previous().getLine(), previous().getPos());
 
-            pw.indentLeft();
-            pw.writeln("Logic Expression end: " + operator);
+            listener.exit("Logic Expression", operator);
         }
 
         return node;
@@ -338,14 +475,14 @@ public class Reader {
 
             if (operator.equals(TokenType.PLUS)) {
                 Call call = new Call("add", 2);
-                call.code(functions.env().getProcedures().get("add"));
+                call.code(functions.env().getProcedures().get("add"), functions.env().epoch());
                 call.setPosInSource(current().getLine(), current().getPos());
                 node = call;
             }
 
             if (operator.equals(TokenType.MINUS)) {
                 Call call = new Call("sub", 2);
-                call.code(functions.env().getProcedures().get("sub"));
+                call.code(functions.env().getProcedures().get("sub"), functions.env().epoch());
                 call.setPosInSource(current().getLine(), current().getPos());
                 node = call;
             }
@@ -369,14 +506,14 @@ public class Reader {
 
             if (operator.equals(TokenType.STAR)) {
                 Call call = new Call("mul", 2);
-                call.code(functions.env().getProcedures().get("mul"));
+                call.code(functions.env().getProcedures().get("mul"), functions.env().epoch());
                 call.setPosInSource(current().getLine(), current().getPos());
                 node = call;
             }
 
             if (operator.equals(TokenType.SLASH)) {
                 Call call = new Call("div", 2);
-                call.code(functions.env().getProcedures().get("div"));
+                call.code(functions.env().getProcedures().get("div"), functions.env().epoch());
                 call.setPosInSource(current().getLine(), current().getPos());
                 node = call;
             }
@@ -392,65 +529,57 @@ public class Reader {
     private Node word() {
         Node node = Node.none();
 
-        pw.writeln("Word start");
-        pw.indentRight();
+        listener.enter("Word", null);
 
         if (match(TokenType.FALSE)) {
-            pw.indentRight();
-            pw.writeln("False");
-            pw.indentLeft();
             node = new BooleanWord(Boolean.FALSE);
             node.setToken(previous());
+            listener.read("Boolean", node);
         } else if (match(TokenType.TRUE)) {
-            pw.indentRight();
-            pw.writeln("True");
-            pw.indentLeft();
             node = new BooleanWord(Boolean.TRUE);
             node.setToken(previous());
+            listener.read("Boolean", node);
         } else if (match(TokenType.NIL)) {
-            pw.indentRight();
-            pw.writeln("Nil");
-            pw.indentLeft();
             node = new NilWord();
             node.setToken(previous());
+            listener.read("Nil", node);
         } else if (match(TokenType.NUMBER)) {
             Token token = previous();
 
             if (token.getLexeme().contains(".")) {
                 node = new FloatWord(Double.parseDouble(token.getLexeme()));
             } else {
-                node = new IntegerWord(Integer.parseInt(token.getLexeme()));
+                node = IntegerWord.parse(token.getLexeme());
             }
 
-            pw.indentRight();
-            pw.writeln("Number: " + node.toString() + " " + token.getLexeme());
-            pw.indentLeft();
+            listener.read("Number", node);
 
             node.setToken(previous());
         } else if (match(TokenType.SYMBOL)) {
+            // No procedure known by that name (yet)
+            unresolved = true;
             node = new SymbolWord(previous().getLexeme());
-            pw.indentRight();
-            pw.writeln("Symbol: " + node.toString() + " " + previous().toString());
-            pw.indentLeft();
+            listener.read("Symbol", node);
             node.setToken(previous());
         } else if (match(TokenType.QUOTE)) {
             node = new QuotedWord(previous().getLexeme().substring(1));
             node.setToken(previous());
-            pw.indentRight();
-            pw.writeln("Quote: " + node.toString() + " " + previous().toString());
-            pw.indentLeft();
+            listener.read("Quote", node);
         } else if (match(TokenType.REFERENCE)) {
             node = new ReferenceWord(previous().getLexeme().substring(1));
 
-            pw.indentRight();
-            pw.writeln("Reference: " + node.toString() + " " + previous().toString());
-            pw.indentLeft();
+            listener.read("Reference", node);
+
+            node.setToken(previous());
+        } else if (match(TokenType.QUESTION)) {
+            // Template slots ?, ?1, ?2... are read as variables
+            node = new ReferenceWord(previous().getLexeme());
+
+            listener.read("Reference", node);
 
             node.setToken(previous());
         } else if (match(TokenType.LEFT_BRACKET)) {
-            logger.debug("Start parsing top level List");
             node = parseList();
-            logger.debug("End parsing top level List");
         } else if (match(TokenType.LEFT_PAREN)) {
             inParens = true;
             node = expression();
@@ -459,37 +588,29 @@ public class Reader {
             inParens = false;
         }
 
-        pw.indentLeft();
-        pw.writeln("Word end: " + node.toString());
+        listener.exit("Word", node);
 
         return node;
     }
 
     private List parseList() {
-        pw.writeln("List start");
-        pw.indentRight();
+        listener.enter("List", null);
         ch.uprisesoft.yali.ast.node.List list = new ch.uprisesoft.yali.ast.node.List();
         list.setPosInSource(previous().getLine(), previous().getPos());
 
         while (!check(TokenType.RIGHT_BRACKET) && !isAtEnd()) {
             if (match(TokenType.LEFT_BRACKET)) {
-                logger.debug("Start parsing nested List");
-                List nestedList = parseList();
-                logger.debug("List: " + nestedList.toString());
-                list.addChild(nestedList);
-                logger.debug("End parsing nested List");
-                break;
+                list.addChild(parseList());
+                continue;
             }
 
-            pw.writeln("Symbol: " + current().getLexeme());
+            listener.read("Symbol", current().getLexeme());
             list.addChild(new SymbolWord(current().getLexeme()));
             advance();
         }
         consume(TokenType.RIGHT_BRACKET);
 
-        pw.writeln("List: " + list.toString());
-        pw.indentLeft();
-        pw.writeln("List end");
+        listener.exit("List", list);
 
         return list;
     }
@@ -511,6 +632,13 @@ public class Reader {
         return peek().type() == type;
     }
 
+    private boolean checkNext(TokenType type) {
+        if (isAtEnd()) {
+            return false;
+        }
+        return token(current + 1).type() == type;
+    }
+
     private Token advance() {
         if (!isAtEnd()) {
             current++;
@@ -523,15 +651,30 @@ public class Reader {
     }
 
     private Token peek() {
-        return tokens.get(current);
+        return token(current);
     }
 
     private Token previous() {
-        return tokens.get(current - 1);
+        return token(current - 1);
     }
 
     private Token current() {
-        return tokens.get(current);
+        return token(current);
+    }
+
+    private Token token(int index) {
+        while (index >= tokens.size() && stream != null && stream.hasNext()) {
+            tokens.add(stream.next());
+        }
+        return tokens.get(index);
+    }
+
+    // Drops the tokens of a stream that are read, but the last one
+    private void discard() {
+        if (stream != null && current > 1024) {
+            tokens.subList(0, current - 1).clear();
+            current = 1;
+        }
     }
 
     private Token consume(TokenType type) throws TokenTypeException {
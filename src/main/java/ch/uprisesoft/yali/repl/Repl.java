@@ -18,6 +18,7 @@ package ch.uprisesoft.yali.repl;
 import ch.uprisesoft.yali.ast.node.Procedure;
 import ch.uprisesoft.yali.ast.node.Node;
 import ch.uprisesoft.yali.exception.NodeTypeException;
+import ch.uprisesoft.yali.exception.RangeException;
 import ch.uprisesoft.yali.ast.node.NodeType;
 import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
 import ch.uprisesoft.yali.runtime.interpreter.InterpreterBuilder;
@@ -144,6 +145,15 @@ public class Repl implements InputGenerator, OutputObserver {
                         )
                 );
             }
+        } catch (RangeException re) {
+            output.println(
+                    String.format(
+                            "; " + messages.getString("out_of_range"),
+                            re.getNode().toString(),
+                            re.getMin(),
+                            re.getMax()
+                    )
+            );
         } catch (VariableNotFoundException vnfe) {
             output.println(
                     String.format(
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.runtime;
+
+/**
+ * Compile time switches for diagnostics. Logging on the paths run for every
+ * call or variable access is wrapped in a check of TRACE, so the compiler
+ * drops it altogether as long as the switch is off. Set it to true and
+ * rebuild to get the trace, at debug level.
+ *
+ * @author rma
+ */
+public final class Diagnostics {
+
+    public static final boolean TRACE = false;
+
+    private Diagnostics() {
+    }
+}
@@ -16,12 +16,14 @@
 package ch.uprisesoft.yali.runtime.interpreter;
 
 import ch.uprisesoft.yali.ast.node.Call;
+import ch.uprisesoft.yali.ast.node.List;
 import ch.uprisesoft.yali.lexer.Lexer;
+import ch.uprisesoft.yali.lexer.Token;
 import ch.uprisesoft.yali.ast.node.Node;
 import ch.uprisesoft.yali.exception.NodeTypeException;
 import ch.uprisesoft.yali.ast.node.NodeType;
 import ch.uprisesoft.yali.ast.node.Procedure;
-import ch.uprisesoft.yali.lexer.Token;
+import ch.uprisesoft.yali.parser.ParseCache;
 import ch.uprisesoft.yali.parser.Reader;
 import ch.uprisesoft.yali.runtime.io.InputGenerator;
 import ch.uprisesoft.yali.runtime.io.OutputObserver;
@@ -29,15 +31,35 @@ import ch.uprisesoft.yali.runtime.procedures.FunctionNotFoundException;
 import ch.uprisesoft.yali.runtime.procedures.builtin.Arithmetic;
 import ch.uprisesoft.yali.runtime.procedures.builtin.Control;
 import ch.uprisesoft.yali.runtime.procedures.builtin.Data;
+import ch.uprisesoft.yali.runtime.procedures.builtin.Dictionary;
 import ch.uprisesoft.yali.runtime.procedures.builtin.IO;
 import ch.uprisesoft.yali.runtime.procedures.builtin.Logic;
 import ch.uprisesoft.yali.runtime.procedures.builtin.Template;
+import ch.uprisesoft.yali.runtime.procedures.builtin.Workspace;
+import ch.uprisesoft.yali.runtime.vm.BlockCache;
+import ch.uprisesoft.yali.runtime.vm.Chunk;
+import ch.uprisesoft.yali.runtime.vm.Compiler;
+import ch.uprisesoft.yali.runtime.vm.VirtualMachine;
 import ch.uprisesoft.yali.scope.Environment;
 import ch.uprisesoft.yali.scope.Scope;
+import ch.uprisesoft.yali.scope.WorkspaceFile;
+import ch.uprisesoft.yali.runtime.Diagnostics;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -49,50 +71,296 @@ public class Interpreter implements OutputObserver {
 
     private static final Logger logger = LoggerFactory.getLogger(Interpreter.class);
     
-    private Environment env = new Environment();
+    // Smallest number of elements worth a task of its own
+    private static final int MIN_CHUNK = 64;
+
+    private final Environment env;
+    private final VirtualMachine vm;
+
+    // Forks run parallel work started by their work in place
+    private final boolean forked;
+
+    // Where a session prints to and reads from, null if the natives do
+    private OutputObserver output;
+    private InputGenerator input;
+
+    // The parse cache is shared by the sessions and forks made from this
+    // interpreter, the block cache only by its forks
+    private ParseCache parseCache;
+    private BlockCache blockCache;
+
+    public Interpreter() {
+        this(new Environment(), false);
+        this.blockCache = new BlockCache();
+    }
+
+    // Natives are given the interpreter making the call, the one bound to
+    // the environment, so sessions and forks run the natives registered
+    // with the interpreter they were made from as their own
+    private Interpreter(Environment env, boolean forked) {
+        this.env = env;
+        this.forked = forked;
+        this.vm = new VirtualMachine(this, env);
+        env.interpreter(this);
+    }
+
+    /**
+     * New session on the procedures and variables of this interpreter, see
+     * SharedRuntime.
+     */
+    Interpreter session(OutputObserver output, InputGenerator input) {
+        Interpreter session = new Interpreter(env.session(), false);
+        session.output = output;
+        session.input = input;
+        session.parseCache = parseCache;
+        session.blockCache = new BlockCache(blockCache.capacity());
+        session.recursionLimit(vm.getMaxDepth());
+        return session;
+    }
+
+    /**
+     * Compiles the user defined procedures, so the sessions of a runtime find
+     * them compiled.
+     */
+    void compileProcedures() {
+        for (Procedure procedure : env.getProcedures().values()) {
+            if (!procedure.isNative() && !procedure.isMacro()) {
+                vm.compiled(procedure);
+            }
+        }
+    }
 
     /**
      * Interpreting functionality
      */
     public Node eval(String source) {
-        java.util.List<Token> tokens = new Lexer().scan(source);
+        Node node = read(source);
+        return vm.execute(new Compiler(this).compile("toplevel", node.getChildren()));
+    }
+
+    /**
+     * Evaluates a source read from a character stream. The stream is read as
+     * it is lexed and closed at its end.
+     */
+    public Node eval(java.io.Reader source) {
+        return eval(new Lexer().tokens(source));
+    }
+
+    /**
+     * Evaluates the tokens of a lexer, read as they come.
+     */
+    public Node eval(Iterator<Token> tokens) {
         Node node = new Reader(this).read(tokens);
-        Node result = Node.none();
-        for (Node pc : node.getChildren()) {
-            result = eval(pc.toCall());
-        }
-        return result;
+        return vm.execute(new Compiler(this).compile("toplevel", node.getChildren()));
     }
 
     public Node eval(Node node) {
+        return node.evaluate(env);
+    }
 
-//        TreeWalkEvaluator eval = new TreeWalkEvaluator(env);
-        Node res = Node.none();
-        try {
-            res = node.evaluate(env);
-        } catch (StackOverflowError soe) {
-            res = node.evaluate(env);
+    /**
+     * Runs a list as a block of instructions (repeat, if, run...). The block
+     * is compiled only once and the code is cached on the list node. The
+     * cache is dropped when the list is changed or when procedures are
+     * (re)defined, since both change how the block has to be read. Lists
+     * built while running are new nodes every time, their code is found in
+     * the block cache by their text.
+     */
+    public Node run(Node block) {
+        if (!block.type().equals(NodeType.LIST)) {
+            return eval(String.join(" ", stringify(block)));
+        }
+
+        List list = block.toList();
+        int epoch = env.epoch();
+        Chunk code = list.code(epoch);
+        if (code == null) {
+            String source = source(list);
+            code = blockCache.get(source, epoch);
+            if (code == null) {
+                code = new Compiler(this).compile("block", read(source).getChildren());
+                // Blocks defining procedures have to be read every time
+                if (env.epoch() == epoch) {
+                    blockCache.put(source, epoch, code);
+                }
+            }
+            list.code(code, env.epoch());
         }
 
-        return res;
+        return vm.execute(code);
+    }
+
+    /**
+     * Calls a user defined procedure with the given inputs. Its body is
+     * compiled on the first call and reused, like for any other call.
+     */
+    public Node apply(Procedure procedure, Node... args) {
+        return vm.call(procedure, args);
+    }
+
+    /**
+     * Reads the instructions in a list. Nested lists keep their brackets.
+     */
+    public java.util.List<Node> parse(List list) {
+        return read(source(list)).getChildren();
+    }
+
+    private static String source(List list) {
+        return list.getChildren()
+                .stream()
+                .map(n -> n.toString())
+                .collect(Collectors.joining(" "));
     }
 
     public Node read(String source) {
-        java.util.List<Token> tokens = new Lexer().scan(source);
-        Node node = new Reader(this).read(tokens);
-        return node;
+        if (parseCache != null) {
+            return parseCache.read(this, source);
+        }
+        return new Reader(this).read(new Lexer().tokens(source));
+    }
+
+    public Node read(java.io.Reader source) {
+        return new Reader(this).read(new Lexer().tokens(source));
     }
 
     public Environment env() {
         return env;
     }
 
+    /**
+     * Output of this session, null outside of sessions.
+     */
+    public OutputObserver output() {
+        return output;
+    }
+
+    /**
+     * Input of this session, null outside of sessions.
+     */
+    public InputGenerator input() {
+        return input;
+    }
+
+    /**
+     * Runs work for the indexes from 0 to size - 1 on the common fork join
+     * pool. The indexes are split into ranges and every range runs on a fork
+     * of this interpreter: the procedures and variables are shared and must
+     * not change, variables made by the work stay in the fork. Parallel work
+     * started by a worker runs on that worker.
+     */
+    public void parallel(int size, ObjIntConsumer<Interpreter> work) {
+        if (forked) {
+            for (int i = 0; i < size; i++) {
+                work.accept(this, i);
+            }
+            return;
+        }
+
+        int chunks = Math.max(1, Math.min(
+                ForkJoinPool.getCommonPoolParallelism() * 4,
+                size / MIN_CHUNK));
+
+        Interpreter[] forks = new Interpreter[chunks];
+        java.util.List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int c = 0; c < chunks; c++) {
+            Interpreter fork = new Interpreter(env.fork(), true);
+            fork.output = output;
+            fork.input = input;
+            fork.parseCache = parseCache;
+            fork.blockCache = blockCache;
+            fork.recursionLimit(vm.getMaxDepth());
+            forks[c] = fork;
+
+            int from = (int) ((long) size * c / chunks);
+            int to = (int) ((long) size * (c + 1) / chunks);
+            tasks.add(ForkJoinTask.adapt(() -> {
+                for (int i = from; i < to; i++) {
+                    work.accept(fork, i);
+                }
+            }));
+        }
+
+        try {
+            for (int c = 1; c < chunks; c++) {
+                tasks.get(c).fork();
+            }
+
+            Throwable failure = null;
+            try {
+                tasks.get(0).invoke();
+            } catch (RuntimeException | Error e) {
+                failure = e;
+            }
+
+            // All tasks have to be done before the forks are dropped
+            for (int c = 1; c < chunks; c++) {
+                tasks.get(c).quietlyJoin();
+                if (failure == null) {
+                    failure = tasks.get(c).getException();
+                }
+            }
+
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            } else if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+        } finally {
+            for (Interpreter fork : forks) {
+                vm.addCalls(fork.calls());
+            }
+        }
+    }
+
+    /**
+     * Maximum depth of nested procedure calls. Tail calls do not count.
+     */
+    public Interpreter recursionLimit(int limit) {
+        vm.setMaxDepth(limit);
+        return this;
+    }
+
+    /**
+     * Cache for reading sources, none by default. A cache may be shared by
+     * any number of interpreters.
+     */
+    public Interpreter parseCache(ParseCache cache) {
+        this.parseCache = cache;
+        return this;
+    }
+
+    public ParseCache parseCache() {
+        return parseCache;
+    }
+
+    /**
+     * Cache of the code of lists built while running, see run(Node). Shared
+     * with the forks of parallel work, sessions have their own.
+     */
+    public Interpreter blockCache(BlockCache cache) {
+        this.blockCache = cache;
+        return this;
+    }
+
+    public BlockCache blockCache() {
+        return blockCache;
+    }
+
+    /**
+     * Number of procedure calls run by the virtual machine so far.
+     */
+    public long calls() {
+        return vm.getCalls();
+    }
+
     public java.util.List<String> stringify(Node arg) {
         java.util.List<String> stringifiedArgs = new ArrayList<>();
         if (arg.type().equals(NodeType.LIST)) {
             stringifiedArgs.addAll(stringify(arg.getChildren()));
         } else {
-            logger.debug("stringify " + arg.toString());
+            if (Diagnostics.TRACE) {
+                logger.debug("stringify {}", arg);
+            }
             stringifiedArgs.add(arg.toString());
         }
         return stringifiedArgs;
@@ -104,14 +372,39 @@ public class Interpreter implements OutputObserver {
             if (arg.type().equals(NodeType.LIST)) {
                 stringifiedArgs.addAll(stringify(arg.getChildren()));
             } else {
-                logger.debug("stringify " + arg.toString());
+                if (Diagnostics.TRACE) {
+                    logger.debug("stringify {}", arg);
+                }
                 stringifiedArgs.add(arg.toString());
             }
         }
         return stringifiedArgs;
     }
 
+    /**
+     * Registers the standard library with this interpreter. To share one
+     * library between many interpreters, use the sessions of
+     * SharedRuntime.standard() instead.
+     */
     public Interpreter loadStdLib() {
+        return registerStdLib();
+    }
+
+    /**
+     * Like loadStdLib(), with print and read going to the given output and
+     * input.
+     */
+    public Interpreter loadStdLib(OutputObserver oo, InputGenerator ig) {
+        logger.debug("Loading StdLib with IO");
+        IO com = new IO();
+        com.register(oo);
+        com.register(ig);
+        com.registerProcedures(this);
+
+        return registerStdLib();
+    }
+
+    Interpreter registerStdLib() {
 
         logger.debug("Loading StdLib");
 
@@ -130,17 +423,62 @@ public class Interpreter implements OutputObserver {
         Data data = new Data();
         data.registerProcedures(this);
 
+        Dictionary dictionary = new Dictionary();
+        dictionary.registerProcedures(this);
+
+        Workspace workspace = new Workspace();
+        workspace.registerProcedures(this);
+
         return this;
     }
 
-    public Interpreter loadStdLib(OutputObserver oo, InputGenerator ig) {
-        logger.debug("Loading StdLib with IO");
-        IO com = new IO();
-        com.register(oo);
-        com.register(ig);
-        com.registerProcedures(this);
+    /**
+     * Runtime with a copy of the procedures, global variables and property
+     * lists of this interpreter as they are now, library procedures
+     * included. Making a session of it is cheap, and this interpreter goes
+     * on independently. Values are not copied, so arrays and tables in
+     * variables are shared with the sessions.
+     */
+    public SharedRuntime snapshot() {
+        Interpreter prototype = new Interpreter(env.snapshot(), false);
+        prototype.output = output;
+        prototype.input = input;
+        prototype.parseCache = parseCache;
+        prototype.blockCache = new BlockCache(blockCache.capacity());
+        prototype.recursionLimit(vm.getMaxDepth());
+        return new SharedRuntime(prototype);
+    }
+
+    /**
+     * Writes the procedures written in Logo, global variables and property
+     * lists of this interpreter to a workspace image.
+     */
+    public void save(OutputStream out) throws IOException {
+        WorkspaceFile.write(env(), out);
+    }
+
+    public void save(Path file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            save(out);
+        }
+    }
 
-        return loadStdLib();
+    /**
+     * Defines what a workspace image holds in this interpreter, without
+     * reading any Logo source. Procedures and variables of the same name
+     * are replaced.
+     */
+    public void load(ByteBuffer image) throws IOException {
+        WorkspaceFile.read(image, env());
+    }
+
+    /**
+     * Like load(ByteBuffer), the file is mapped and read in place.
+     */
+    public void load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            load(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
     }
 
     /**
@@ -148,7 +486,9 @@ public class Interpreter implements OutputObserver {
      */
     @Override
     public void inform(String output) {
-        logger.debug("(Interpreter) " + output);
+        if (Diagnostics.TRACE) {
+            logger.debug("(Interpreter) {}", output);
+        }
     }
 
 //    public String pretty(String source) {
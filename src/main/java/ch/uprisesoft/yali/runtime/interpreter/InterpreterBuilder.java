@@ -6,6 +6,7 @@
 package ch.uprisesoft.yali.runtime.interpreter;
 
 import ch.uprisesoft.yali.runtime.io.InputGenerator;
+import ch.uprisesoft.yali.runtime.vm.VirtualMachine;
 import ch.uprisesoft.yali.runtime.io.OutputObserver;
 import ch.uprisesoft.yali.scope.Scope;
 
@@ -13,6 +14,7 @@ public class InterpreterBuilder {
 
     private OutputObserver oo;
     private InputGenerator ig;
+    private int recursionLimit = VirtualMachine.DEFAULT_MAX_DEPTH;
 
     public InterpreterBuilder() {
     }
@@ -23,8 +25,14 @@ public class InterpreterBuilder {
         return this;
     }
 
+    public InterpreterBuilder withRecursionLimit(int recursionLimit) {
+        this.recursionLimit = recursionLimit;
+        return this;
+    }
+
     public Interpreter build() {
         Interpreter it = new Interpreter();
+        it.recursionLimit(recursionLimit);
 
         if (oo != null && ig != null) {
             it.loadStdLib(oo, ig);
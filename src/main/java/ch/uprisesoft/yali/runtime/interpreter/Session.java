@@ -0,0 +1,76 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.runtime.interpreter;
+
+import ch.uprisesoft.yali.ast.node.Node;
+import ch.uprisesoft.yali.parser.ParseCache;
+import ch.uprisesoft.yali.scope.Environment;
+
+/**
+ * State of one user of a runtime: the stacks, the variables and the
+ * procedures defined in the session. Procedures defined or redefined in a
+ * session are only seen by it.
+ *
+ * @author rma
+ */
+public class Session {
+
+    private final Interpreter it;
+
+    Session(Interpreter it) {
+        this.it = it;
+    }
+
+    public Node eval(String source) {
+        return it.eval(source);
+    }
+
+    /**
+     * Evaluates a source read from a character stream, see
+     * Interpreter.eval(java.io.Reader).
+     */
+    public Node eval(java.io.Reader source) {
+        return it.eval(source);
+    }
+
+    public Environment env() {
+        return it.env();
+    }
+
+    /**
+     * Maximum depth of nested procedure calls, by default the one of the
+     * runtime.
+     */
+    public Session recursionLimit(int limit) {
+        it.recursionLimit(limit);
+        return this;
+    }
+
+    /**
+     * Cache for reading sources, see Interpreter.parseCache(ParseCache).
+     */
+    public Session parseCache(ParseCache cache) {
+        it.parseCache(cache);
+        return this;
+    }
+
+    /**
+     * Number of procedure calls run in this session so far.
+     */
+    public long calls() {
+        return it.calls();
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.runtime.interpreter;
+
+import ch.uprisesoft.yali.ast.node.Procedure;
+import ch.uprisesoft.yali.runtime.io.InputGenerator;
+import ch.uprisesoft.yali.runtime.io.OutputObserver;
+import ch.uprisesoft.yali.runtime.procedures.builtin.IO;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Procedures shared by any number of sessions. A runtime is made once from
+ * an interpreter that has the builtins and the library procedures defined in
+ * Logo, and that interpreter is not used on its own anymore. The library
+ * procedures are compiled once for all sessions. Interpreters made on their
+ * own never share anything, sharing is only through the sessions of a
+ * runtime.
+ *
+ * Sessions are cheap, they only have their own stacks, variables, property
+ * lists and procedure definitions. Every session may run on another thread,
+ * but each one only on one thread at a time.
+ *
+ * @author rma
+ */
+public class SharedRuntime {
+
+    private final Interpreter prototype;
+    private final Map<String, Procedure> procedures;
+
+    public SharedRuntime(Interpreter prototype) {
+        this.prototype = prototype;
+        this.procedures = Collections.unmodifiableMap(prototype.env().getProcedures());
+        prototype.compileProcedures();
+    }
+
+    /**
+     * Runtime with the standard library. Sessions print to and read from
+     * their own output and input. It is built on first use and shared.
+     */
+    public static SharedRuntime standard() {
+        return WithIO.RUNTIME;
+    }
+
+    /**
+     * Runtime with the standard library without print and read, built on
+     * first use.
+     */
+    public static SharedRuntime builtins() {
+        return WithoutIO.RUNTIME;
+    }
+
+    // Each one is built when its class is first used
+    private static final class WithIO {
+
+        private static final SharedRuntime RUNTIME;
+
+        static {
+            Interpreter it = new Interpreter();
+            new IO().registerProcedures(it);
+            RUNTIME = new SharedRuntime(it.registerStdLib());
+        }
+    }
+
+    private static final class WithoutIO {
+
+        private static final SharedRuntime RUNTIME = new SharedRuntime(new Interpreter().registerStdLib());
+    }
+
+    public Session session(OutputObserver output, InputGenerator input) {
+        return new Session(prototype.session(output, input));
+    }
+
+    /**
+     * Procedures every session starts with.
+     */
+    public Map<String, Procedure> procedures() {
+        return procedures;
+    }
+}
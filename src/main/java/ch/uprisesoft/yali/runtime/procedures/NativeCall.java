@@ -0,0 +1,33 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.runtime.procedures;
+
+import ch.uprisesoft.yali.ast.node.Node;
+import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
+import ch.uprisesoft.yali.scope.Scope;
+
+/**
+ * Body of a procedure written in Java. It is given the interpreter making
+ * the call, which is the session or fork it was made in, so one native can
+ * serve any number of them.
+ *
+ * @author rma
+ */
+@FunctionalInterface
+public interface NativeCall {
+
+    Node apply(Interpreter it, Scope scope, java.util.List<Node> args);
+}
@@ -24,6 +24,7 @@ import ch.uprisesoft.yali.ast.node.word.IntegerWord;
 import ch.uprisesoft.yali.ast.node.word.Word;
 import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
 import ch.uprisesoft.yali.scope.Scope;
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
 import ch.uprisesoft.yali.runtime.procedures.ProcedureProvider;
@@ -54,16 +55,20 @@ public class Arithmetic implements ProcedureProvider {
         }
 
         if (left.type().equals(NodeType.INTEGER) && right.type().equals(NodeType.INTEGER)) {
-            return new IntegerWord(left.getInteger() + right.getInteger());
-        } else if (left.type().equals(NodeType.INTEGER) && right.type().equals(NodeType.FLOAT)) {
-            return new FloatWord(left.getInteger() + right.getFloat());
-        } else if (left.type().equals(NodeType.FLOAT) && right.type().equals(NodeType.INTEGER)) {
-            return new FloatWord(left.getFloat() + right.getInteger());
-        } else if (left.type().equals(NodeType.FLOAT) && right.type().equals(NodeType.FLOAT)) {
-            return new FloatWord(left.getFloat() + right.getFloat());
-        }
-
-        return Node.none();
+            IntegerWord l = left.toIntegerWord();
+            IntegerWord r = right.toIntegerWord();
+            if (!l.isBig() && !r.isBig()) {
+                try {
+                    return Node.integer(Math.addExact(l.longValue(), r.longValue()));
+                } catch (ArithmeticException ae) {
+                    // Overflow, go on with BigInteger
+                }
+            }
+            return Node.integer(l.bigValue().add(r.bigValue()));
+        }
+
+        // One of them is a float
+        return new FloatWord(left.doubleValue() + right.doubleValue());
     }
 
     public Node sub(Scope scope, java.util.List<Node> args) {
@@ -78,15 +83,20 @@ public class Arithmetic implements ProcedureProvider {
         }
 
         if (left.type().equals(NodeType.INTEGER) && right.type().equals(NodeType.INTEGER)) {
-            return new IntegerWord(left.getInteger() - right.getInteger());
-        } else if (left.type().equals(NodeType.INTEGER) && right.type().equals(NodeType.FLOAT)) {
-            return new FloatWord(left.getInteger() - right.getFloat());
-        } else if (left.type().equals(NodeType.FLOAT) && right.type().equals(NodeType.INTEGER)) {
-            return new FloatWord(left.getFloat() - right.getInteger());
-        } else if (left.type().equals(NodeType.FLOAT) && right.type().equals(NodeType.FLOAT)) {
-            return new FloatWord(left.getFloat() - right.getFloat());
-        }
-        return Node.none();
+            IntegerWord l = left.toIntegerWord();
+            IntegerWord r = right.toIntegerWord();
+            if (!l.isBig() && !r.isBig()) {
+                try {
+                    return Node.integer(Math.subtractExact(l.longValue(), r.longValue()));
+                } catch (ArithmeticException ae) {
+                    // Overflow, go on with BigInteger
+                }
+            }
+            return Node.integer(l.bigValue().subtract(r.bigValue()));
+        }
+
+        // One of them is a float
+        return new FloatWord(left.doubleValue() - right.doubleValue());
     }
 
     public Node mul(Scope scope, java.util.List<Node> args) {
@@ -101,15 +111,20 @@ public class Arithmetic implements ProcedureProvider {
         }
 
         if (left.type().equals(NodeType.INTEGER) && right.type().equals(NodeType.INTEGER)) {
-            return new IntegerWord(left.getInteger() * right.getInteger());
-        } else if (left.type().equals(NodeType.INTEGER) && right.type().equals(NodeType.FLOAT)) {
-            return new FloatWord(left.getInteger() * right.getFloat());
-        } else if (left.type().equals(NodeType.FLOAT) && right.type().equals(NodeType.INTEGER)) {
-            return new FloatWord(left.getFloat() * right.getInteger());
-        } else if (left.type().equals(NodeType.FLOAT) && right.type().equals(NodeType.FLOAT)) {
-            return new FloatWord(left.getFloat() * right.getFloat());
-        }
-        return Node.none();
+            IntegerWord l = left.toIntegerWord();
+            IntegerWord r = right.toIntegerWord();
+            if (!l.isBig() && !r.isBig()) {
+                try {
+                    return Node.integer(Math.multiplyExact(l.longValue(), r.longValue()));
+                } catch (ArithmeticException ae) {
+                    // Overflow, go on with BigInteger
+                }
+            }
+            return Node.integer(l.bigValue().multiply(r.bigValue()));
+        }
+
+        // One of them is a float
+        return new FloatWord(left.doubleValue() * right.doubleValue());
     }
 
     public Node div(Scope scope, java.util.List<Node> args) {
@@ -124,15 +139,17 @@ public class Arithmetic implements ProcedureProvider {
         }
 
         if (left.type().equals(NodeType.INTEGER) && right.type().equals(NodeType.INTEGER)) {
-            return new IntegerWord(left.getInteger() / right.getInteger());
-        } else if (left.type().equals(NodeType.INTEGER) && right.type().equals(NodeType.FLOAT)) {
-            return new FloatWord(left.getInteger() / right.getFloat());
-        } else if (left.type().equals(NodeType.FLOAT) && right.type().equals(NodeType.INTEGER)) {
-            return new FloatWord(left.getFloat() / right.getInteger());
-        } else if (left.type().equals(NodeType.FLOAT) && right.type().equals(NodeType.FLOAT)) {
-            return new FloatWord(left.getFloat() / right.getFloat());
-        }
-        return Node.none();
+            IntegerWord l = left.toIntegerWord();
+            IntegerWord r = right.toIntegerWord();
+            // Long.MIN_VALUE / -1 is the only quotient of longs that overflows
+            if (!l.isBig() && !r.isBig() && !(l.longValue() == Long.MIN_VALUE && r.longValue() == -1)) {
+                return Node.integer(l.longValue() / r.longValue());
+            }
+            return Node.integer(l.bigValue().divide(r.bigValue()));
+        }
+
+        // One of them is a float
+        return new FloatWord(left.doubleValue() / right.doubleValue());
     }
     
     public Node mod(Scope scope, java.util.List<Node> args) {
@@ -146,7 +163,12 @@ public class Arithmetic implements ProcedureProvider {
             throw new NodeTypeException(right, right.type(), NodeType.NUMBER);
         }
 
-        return new IntegerWord(left.getInteger() % right.getInteger());
+        IntegerWord l = left.toIntegerWord();
+        IntegerWord r = right.toIntegerWord();
+        if (!l.isBig() && !r.isBig()) {
+            return Node.integer(l.longValue() % r.longValue());
+        }
+        return Node.integer(l.bigValue().remainder(r.bigValue()));
     }
     
     public Node integer(Scope scope, java.util.List<Node> args) {
@@ -154,8 +176,8 @@ public class Arithmetic implements ProcedureProvider {
 
         if (arg.type().equals(NodeType.INTEGER)) {
             return arg;
-        } else if (arg.type().equals(NodeType.INTEGER)) {
-            return Node.integer(arg.toFloatWord().getFloat().intValue());
+        } else if (arg.type().equals(NodeType.FLOAT)) {
+            return integral(arg, arg.doubleValue());
         }
         else {
             throw new NodeTypeException(arg, arg.type(), NodeType.FLOAT, NodeType.INTEGER);
@@ -167,26 +189,39 @@ public class Arithmetic implements ProcedureProvider {
 
         if (arg.type().equals(NodeType.INTEGER)) {
             return arg;
-        } else if (arg.type().equals(NodeType.INTEGER)) {
-            return Node.integer((int)Math.round(arg.toFloatWord().getFloat()));
+        } else if (arg.type().equals(NodeType.FLOAT)) {
+            // From 2^52 on every float is a whole number
+            double value = arg.doubleValue();
+            return integral(arg, Math.abs(value) < 0x1p52 ? Math.floor(value + 0.5) : value);
         }
         else {
             throw new NodeTypeException(arg, arg.type(), NodeType.FLOAT, NodeType.INTEGER);
         }
     }
 
+    // The float without its fraction, as a BigInteger if it is beyond a long
+    private static IntegerWord integral(Word arg, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new NodeTypeException(arg, arg.type(), NodeType.INTEGER);
+        }
+        if (Math.abs(value) < 0x1p63) {
+            return Node.integer((long) value);
+        }
+        return Node.integer(new BigDecimal(value).toBigInteger());
+    }
+
     @Override
-    public Interpreter registerProcedures(Interpreter it) {
+    public Interpreter registerProcedures(Interpreter interpreter) {
         Arithmetic builtins = new Arithmetic();
 
-        it.env().define(new Procedure("add", (scope, val) -> builtins.add(scope, val), "fst", "snd"));
-        it.env().define(new Procedure("mul", (scope, val) -> builtins.mul(scope, val), "fst", "snd"));
-        it.env().define(new Procedure("sub", (scope, val) -> builtins.sub(scope, val), "fst", "snd"));
-        it.env().define(new Procedure("div", (scope, val) -> builtins.div(scope, val), "fst", "snd"));
-        it.env().define(new Procedure("mod", (scope, val) -> builtins.mod(scope, val), "fst", "snd"));
-        it.env().define(new Procedure("integer", (scope, val) -> builtins.integer(scope, val), "val"));
-        it.env().define(new Procedure("round", (scope, val) -> builtins.round(scope, val), "val"));
+        interpreter.env().define(new Procedure("add", (scope, val) -> builtins.add(scope, val), "fst", "snd"));
+        interpreter.env().define(new Procedure("mul", (scope, val) -> builtins.mul(scope, val), "fst", "snd"));
+        interpreter.env().define(new Procedure("sub", (scope, val) -> builtins.sub(scope, val), "fst", "snd"));
+        interpreter.env().define(new Procedure("div", (scope, val) -> builtins.div(scope, val), "fst", "snd"));
+        interpreter.env().define(new Procedure("mod", (scope, val) -> builtins.mod(scope, val), "fst", "snd"));
+        interpreter.env().define(new Procedure("integer", (scope, val) -> builtins.integer(scope, val), "val"));
+        interpreter.env().define(new Procedure("round", (scope, val) -> builtins.round(scope, val), "val"));
 
-        return it;
+        return interpreter;
     }
 }
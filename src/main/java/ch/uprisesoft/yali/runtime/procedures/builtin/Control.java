@@ -24,6 +24,7 @@ import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ch.uprisesoft.yali.runtime.procedures.ProcedureProvider;
+import ch.uprisesoft.yali.runtime.Diagnostics;
 
 /**
  *
@@ -32,14 +33,13 @@ import ch.uprisesoft.yali.runtime.procedures.ProcedureProvider;
 public class Control implements ProcedureProvider {
 
     private static final Logger logger = LoggerFactory.getLogger(Control.class);
-    private Interpreter it;
 
     // Only here so we don't have to strip it out as edge cases in the Reader. Does nothing.
     public Node alias(Scope scope, java.util.List<Node> args) {
         return Node.nil();
     }
     
-    public Node thing(Scope scope, java.util.List<Node> args) {
+    public Node thing(Interpreter it, Scope scope, java.util.List<Node> args) {
        
         String name = "";
         switch (args.get(0).type()) {
@@ -53,14 +53,16 @@ public class Control implements ProcedureProvider {
                 throw new NodeTypeException(args.get(0), args.get(0).type(), NodeType.SYMBOL, NodeType.QUOTE);
         }
         
-        logger.debug("(Control) resolvong variable " + name + " in scope " + scope.getScopeName());
+        if (Diagnostics.TRACE) {
+            logger.debug("(Control) resolving variable {} in scope {}", name, scope.getScopeName());
+        }
 
         Node value = it.env().resolve(name);
 
         return value;
     }
     
-    public Node local(Scope scope, java.util.List<Node> args) {
+    public Node local(Interpreter it, Scope scope, java.util.List<Node> args) {
         String name = "";
         Scope workScope = scope;
         
@@ -77,14 +79,16 @@ public class Control implements ProcedureProvider {
                 throw new NodeTypeException(args.get(0), args.get(0).type(), NodeType.SYMBOL, NodeType.QUOTE);
         }
         
-        logger.debug("(Control) defining variable " + name + " in scope " + workScope.getScopeName());
+        if (Diagnostics.TRACE) {
+            logger.debug("(Control) defining variable {} in scope {}", name, workScope.getScopeName());
+        }
 
         it.env().local(name);
 
         return Node.nil();
     }
     
-    public Node make(Scope scope, java.util.List<Node> args) {
+    public Node make(Interpreter it, Scope scope, java.util.List<Node> args) {
         Node newVar = null;
         String name = "";
         Scope workScope = scope;
@@ -100,7 +104,9 @@ public class Control implements ProcedureProvider {
                 throw new NodeTypeException(args.get(0), args.get(0).type(), NodeType.SYMBOL, NodeType.QUOTE);
         }
         
-        logger.debug("(Control) defining variable " + name + " in scope " + workScope.getScopeName());
+        if (Diagnostics.TRACE) {
+            logger.debug("(Control) defining variable {} in scope {}", name, workScope.getScopeName());
+        }
 
         newVar = args.get(1);
         it.env().make(name, newVar);
@@ -108,7 +114,7 @@ public class Control implements ProcedureProvider {
         return newVar;
     }
     
-    public Node localmake(Scope scope, java.util.List<Node> args) {
+    public Node localmake(Interpreter it, Scope scope, java.util.List<Node> args) {
         Node newVar = null;
         String name = "";
         Scope workScope = scope;
@@ -124,7 +130,9 @@ public class Control implements ProcedureProvider {
                 throw new NodeTypeException(args.get(0), args.get(0).type(), NodeType.SYMBOL, NodeType.QUOTE);
         }
         
-        logger.debug("(Control) defining variable " + name + " in scope " + workScope.getScopeName());
+        if (Diagnostics.TRACE) {
+            logger.debug("(Control) defining variable {} in scope {}", name, workScope.getScopeName());
+        }
 
         newVar = args.get(1);
         it.env().local(name);
@@ -133,8 +141,7 @@ public class Control implements ProcedureProvider {
         return newVar;
     }
 
-    public Node ifexpr(Scope scope, java.util.List<Node> args) {
-        logger.debug("(Control) start ifexpr");
+    public Node ifexpr(Interpreter it, Scope scope, java.util.List<Node> args) {
         Node result = Node.none();
         Node condition = it.eval(args.get(0));
         Node iftrue = args.get(1);
@@ -144,19 +151,21 @@ public class Control implements ProcedureProvider {
         }
 
         if (condition.toBooleanWord().getBoolean()) {
-            logger.debug("(Control) condition is true");
-            result = it.eval(String.join(" ", it.stringify(iftrue)));
+            if (Diagnostics.TRACE) {
+                logger.debug("(Control) condition is true");
+            }
+            result = it.run(iftrue);
         } else {
-            logger.debug("(Control) condition is false");
+            if (Diagnostics.TRACE) {
+                logger.debug("(Control) condition is false");
+            }
             result = Node.nil();
         }
 
-        logger.debug("(Control) end ifexpr");
         return result;
     }
 
-    public Node ifelseexpr(Scope scope, java.util.List<Node> args) {
-        logger.debug("(Control) start ifelseexpr");
+    public Node ifelseexpr(Interpreter it, Scope scope, java.util.List<Node> args) {
         Node result = Node.none();
         Node condition = it.eval(args.get(0));
         Node iftrue = args.get(1);
@@ -167,18 +176,21 @@ public class Control implements ProcedureProvider {
         }
 
         if (condition.toBooleanWord().getBoolean()) {
-            logger.debug("(Control) condition is true");
-            result = it.eval(String.join(" ", it.stringify(iftrue)));
+            if (Diagnostics.TRACE) {
+                logger.debug("(Control) condition is true");
+            }
+            result = it.run(iftrue);
         } else {
-            logger.debug("(Control) condition is false");
-            result = it.eval(String.join(" ", it.stringify(iffalse)));
+            if (Diagnostics.TRACE) {
+                logger.debug("(Control) condition is false");
+            }
+            result = it.run(iffalse);
         }
 
-        logger.debug("(Control) end ifelseexpr");
         return result;
     }
 
-    public Node repeat(Scope scope, java.util.List<Node> args) {
+    public Node repeat(Interpreter it, Scope scope, java.util.List<Node> args) {
 
         Scope workScope = scope;
 //        if (scope.getEnclosingScope().isPresent()) {
@@ -207,12 +219,12 @@ public class Control implements ProcedureProvider {
             throw new NodeTypeException(block, block.type(), NodeType.LIST);
         }
 
-        Integer idx = control.toIntegerWord().getInteger();
+        long idx = control.toIntegerWord().count();
         Node result = Node.nil();
 
-        for (int i = 0; i < idx; i++) {
+        for (long i = 0; i < idx; i++) {
             try {
-                result = it.eval(String.join(" ", it.stringify(block)));
+                result = it.run(block);
             } catch (Exception ex) {
                 System.out.println(ex.toString() + " -> repeat 2");
             }
@@ -221,7 +233,7 @@ public class Control implements ProcedureProvider {
         return result;
     }
 
-    public Node run(Scope scope, java.util.List<Node> args) {
+    public Node run(Interpreter it, Scope scope, java.util.List<Node> args) {
 
         Scope workScope = scope;
 //        if (scope.getEnclosingScope().isPresent()) {
@@ -230,14 +242,14 @@ public class Control implements ProcedureProvider {
         
         Node result = Node.none();
         try {
-            result = it.eval(String.join(" ", it.stringify(args.get(0))));
+            result = it.run(args.get(0));
         } catch (Exception ex) {
             System.out.println(ex.toString() + " -> run");
         }
         return result;
     }
 
-    public Node output(Scope scope, java.util.List<Node> args) {
+    public Node output(Interpreter it, Scope scope, java.util.List<Node> args) {
         Node res = Node.none();
         try {
             res = it.eval(args.get(0));
@@ -253,20 +265,19 @@ public class Control implements ProcedureProvider {
 
     @Override
     public Interpreter registerProcedures(Interpreter interpreter) {
-        this.it = interpreter;
-
-        it.env().define(new Procedure("alias", (scope, val) -> this.alias(scope, val), "original", "alias"));
-        it.env().define(new Procedure("thing", (scope, val) -> this.thing(scope, val), "name"));
-        it.env().define(new Procedure("make", (scope, val) -> this.make(scope, val), "name", "value").macro());
-        it.env().define(new Procedure("local", (scope, val) -> this.local(scope, val), "name").macro());
-        it.env().define(new Procedure("localmake", (scope, val) -> this.localmake(scope, val), "name", "value").macro());
-        it.env().define(new Procedure("repeat", (scope, val) -> this.repeat(scope, val), "control", "block").macro());
-        it.env().define(new Procedure("run", (scope, val) -> this.run(scope, val), "block").macro());
-        it.env().define(new Procedure("output", (scope, val) -> this.output(scope, val), "block"));
-        it.env().define(new Procedure("stop", (scope, val) -> this.output(scope, val)));
-        it.env().define(new Procedure("ifelse", (scope, val) -> this.ifelseexpr(scope, val), "condition", "iftrue", "iffalse").macro());
-        it.env().define(new Procedure("if",(scope, val) -> this.ifexpr(scope, val),  "condition", "iftrue").macro());
-
-        return it;
+
+        interpreter.env().define(new Procedure("alias", (scope, val) -> this.alias(scope, val), "original", "alias"));
+        interpreter.env().define(new Procedure("thing", (it, scope, val) -> this.thing(it, scope, val), "name"));
+        interpreter.env().define(new Procedure("make", (it, scope, val) -> this.make(it, scope, val), "name", "value").macro());
+        interpreter.env().define(new Procedure("local", (it, scope, val) -> this.local(it, scope, val), "name").macro());
+        interpreter.env().define(new Procedure("localmake", (it, scope, val) -> this.localmake(it, scope, val), "name", "value").macro());
+        interpreter.env().define(new Procedure("repeat", (it, scope, val) -> this.repeat(it, scope, val), "control", "block").macro());
+        interpreter.env().define(new Procedure("run", (it, scope, val) -> this.run(it, scope, val), "block").macro());
+        interpreter.env().define(new Procedure("output", (it, scope, val) -> this.output(it, scope, val), "block"));
+        interpreter.env().define(new Procedure("stop", (scope, val) -> this.stop(scope, val)));
+        interpreter.env().define(new Procedure("ifelse", (it, scope, val) -> this.ifelseexpr(it, scope, val), "condition", "iftrue", "iffalse").macro());
+        interpreter.env().define(new Procedure("if",(it, scope, val) -> this.ifexpr(it, scope, val),  "condition", "iftrue").macro());
+
+        return interpreter;
     }
 }
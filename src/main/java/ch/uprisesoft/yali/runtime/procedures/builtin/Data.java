@@ -15,19 +15,22 @@
  */
 package ch.uprisesoft.yali.runtime.procedures.builtin;
 
+import ch.uprisesoft.yali.ast.node.Array;
 import ch.uprisesoft.yali.ast.node.Procedure;
 import ch.uprisesoft.yali.ast.node.List;
 import ch.uprisesoft.yali.ast.node.Node;
 import ch.uprisesoft.yali.exception.NodeTypeException;
+import ch.uprisesoft.yali.exception.RangeException;
 import ch.uprisesoft.yali.ast.node.NodeType;
 import ch.uprisesoft.yali.ast.node.word.BooleanWord;
+import ch.uprisesoft.yali.ast.node.word.IntegerWord;
 import ch.uprisesoft.yali.ast.node.word.QuotedWord;
 import ch.uprisesoft.yali.ast.node.word.SymbolWord;
 import ch.uprisesoft.yali.ast.node.word.Word;
 import java.util.ArrayList;
+import java.util.Collections;
 import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
 import ch.uprisesoft.yali.scope.Scope;
-import java.util.Collections;
 import java.util.UUID;
 import org.slf4j.LoggerFactory;
 import ch.uprisesoft.yali.runtime.procedures.ProcedureProvider;
@@ -40,16 +43,11 @@ public class Data implements ProcedureProvider {
 
     private static final org.slf4j.Logger logger = LoggerFactory.getLogger(Data.class);
 
-    private Interpreter it;
 
     // Constructors
     public Node reverse(Scope scope, java.util.List<Node> args) {
         if (args.get(0).type().equals(NodeType.LIST)) {
-            List resultList = new List();
-            java.util.List<Node> forwardList = args.get(0).getChildren();
-            Collections.reverse(forwardList);
-            resultList.addChildren(forwardList);
-            return resultList;
+            return args.get(0).toList().reversed();
         } else if (args.get(0).type().equals(NodeType.QUOTE)) {
             StringBuilder resultString = new StringBuilder(args.get(0).toQuotedWord().getQuote());
             return new QuotedWord(resultString.reverse().toString());
@@ -63,10 +61,7 @@ public class Data implements ProcedureProvider {
 
     public Node fput(Scope scope, java.util.List<Node> args) {
         if (args.get(1).type().equals(NodeType.LIST)) {
-            List resultList = new List();
-            resultList.addChild(args.get(0));
-            resultList.addChildren(args.get(1).getChildren());
-            return resultList;
+            return args.get(1).toList().fput(args.get(0));
         } else if (args.get(1).type().equals(NodeType.QUOTE)) {
             StringBuilder resultString = new StringBuilder(args.get(0).toQuotedWord().getQuote()).append(args.get(1).toQuotedWord().getQuote());
             return new QuotedWord(resultString.toString());
@@ -80,10 +75,7 @@ public class Data implements ProcedureProvider {
 
     public Node lput(Scope scope, java.util.List<Node> args) {
         if (args.get(1).type().equals(NodeType.LIST)) {
-            List resultList = new List();
-            resultList.addChildren(args.get(1).getChildren());
-            resultList.addChild(args.get(0));
-            return resultList;
+            return args.get(1).toList().lput(args.get(0));
         } else if (args.get(1).type().equals(NodeType.QUOTE)) {
             StringBuilder resultString = new StringBuilder().append(args.get(1).toQuotedWord().getQuote()).append(args.get(0).toQuotedWord().getQuote());
             return new QuotedWord(resultString.toString());
@@ -95,17 +87,17 @@ public class Data implements ProcedureProvider {
         }
     }
 
-    public Node word(Scope scope, java.util.List<Node> args) {
+    public Node word(Interpreter it, Scope scope, java.util.List<Node> args) {
         String concatenated = "";
 
         for (Node arg : args) {
-            concatenated += stringifyNode(arg);
+            concatenated += stringifyNode(it, arg);
         }
 
         return new SymbolWord(concatenated);
     }
 
-    public String stringifyNode(Node node) {
+    public String stringifyNode(Interpreter it, Node node) {
         String concatenated = "";
 
         switch (node.type()) {
@@ -118,9 +110,9 @@ public class Data implements ProcedureProvider {
             case NIL:
                 break;
             case PROCCALL:
-                concatenated += stringifyNode(it.eval(node));
+                concatenated += stringifyNode(it, it.eval(node));
             case REFERENCE:
-                concatenated += stringifyNode(it.eval(node));
+                concatenated += stringifyNode(it, it.eval(node));
             case LIST:
                 throw new NodeTypeException(node, NodeType.SYMBOL, NodeType.LIST);
             case NONE:
@@ -164,6 +156,79 @@ public class Data implements ProcedureProvider {
         return new SymbolWord(UUID.randomUUID().toString().replace("-", ""));
     }
 
+    public Node array(Scope scope, java.util.List<Node> args) {
+        return new Array(size(args.get(0)), origin(args, 1));
+    }
+
+    public Node mdarray(Scope scope, java.util.List<Node> args) {
+        if (!args.get(0).type().equals(NodeType.LIST)) {
+            throw new NodeTypeException(args.get(0), args.get(0).type(), NodeType.LIST);
+        }
+
+        java.util.List<Node> sizes = args.get(0).getChildren();
+        if (sizes.isEmpty()) {
+            throw new NodeTypeException(args.get(0), NodeType.NIL, NodeType.INTEGER);
+        }
+        for (Node size : sizes) {
+            size(size);
+        }
+        return mdarray(sizes, 0, origin(args, 1));
+    }
+
+    private Array mdarray(java.util.List<Node> sizes, int dimension, int origin) {
+        Array array = new Array(size(sizes.get(dimension)), origin);
+        if (dimension < sizes.size() - 1) {
+            for (int i = 0; i < array.size(); i++) {
+                array.set(i + origin, mdarray(sizes, dimension + 1, origin));
+            }
+        }
+        return array;
+    }
+
+    public Node listtoarray(Scope scope, java.util.List<Node> args) {
+        if (!args.get(0).type().equals(NodeType.LIST)) {
+            throw new NodeTypeException(args.get(0), args.get(0).type(), NodeType.LIST);
+        }
+        return new Array(args.get(0).getChildren(), origin(args, 1));
+    }
+
+    public Node arraytolist(Scope scope, java.util.List<Node> args) {
+        return new List(args.get(0).toArray().members());
+    }
+
+    private int origin(java.util.List<Node> args, int position) {
+        return args.size() > position ? index(args.get(position)) : 1;
+    }
+
+    private static int index(Node node) {
+        Node index = Node.literal(node);
+        if (!index.type().equals(NodeType.INTEGER)) {
+            throw new NodeTypeException(node, node.type(), NodeType.INTEGER);
+        }
+        IntegerWord integer = index.toIntegerWord();
+        if (integer.isBig() || integer.longValue() != (int) integer.longValue()) {
+            throw new RangeException(node, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        }
+        return (int) integer.longValue();
+    }
+
+    private static int size(Node node) {
+        int size = index(node);
+        if (size < 0) {
+            throw new RangeException(node, 0, Integer.MAX_VALUE);
+        }
+        return size;
+    }
+
+    // Position of a 1 based index among the given number of members
+    private static int position(Node index, int members) {
+        int i = index(index);
+        if (i < 1 || i > members) {
+            throw new RangeException(index, 1, members);
+        }
+        return i - 1;
+    }
+
     // Selectors
     public Node first(Scope scope, java.util.List<Node> args) {
         Node first = args.get(0);
@@ -216,8 +281,7 @@ public class Data implements ProcedureProvider {
 
         switch (args.get(0).type()) {
             case LIST:
-                butfirst = new List();
-                butfirst.addChildren(args.get(0).getChildren().subList(1, args.get(0).getChildren().size()));
+                butfirst = args.get(0).toList().butfirst();
                 break;
             case QUOTE:
                 butfirst = new QuotedWord(args.get(0).toQuotedWord().toString().substring(
@@ -242,8 +306,7 @@ public class Data implements ProcedureProvider {
 
         switch (args.get(0).type()) {
             case LIST:
-                butlast = new List();
-                butlast.addChildren(args.get(0).getChildren().subList(0, args.get(0).getChildren().size() - 1));
+                butlast = args.get(0).toList().butlast();
                 break;
             case QUOTE:
                 butlast = new QuotedWord(args.get(0).toQuotedWord().toString().substring(
@@ -262,7 +325,7 @@ public class Data implements ProcedureProvider {
         return butlast;
     }
 
-    public Node item(Scope scope, java.util.List<Node> args) {
+    public Node item(Interpreter it, Scope scope, java.util.List<Node> args) {
 
         Node item = Node.none();
         Node index = it.eval(args.get(0));
@@ -273,17 +336,18 @@ public class Data implements ProcedureProvider {
 
         switch (args.get(1).type()) {
             case LIST:
-                item = args.get(1).getChildren().get(index.toIntegerWord().getInteger() - 1);
+                item = args.get(1).getChildren().get(position(index, args.get(1).getChildren().size()));
                 break;
             case QUOTE:
-                item = new QuotedWord(String.valueOf(
-                        args.get(1).toQuotedWord().getQuote().charAt(
-                                index.toIntegerWord().getInteger() - 1)));
+                String quote = args.get(1).toQuotedWord().getQuote();
+                item = new QuotedWord(String.valueOf(quote.charAt(position(index, quote.length()))));
                 break;
             case SYMBOL:
-                item = new SymbolWord(String.valueOf(
-                        args.get(1).toSymbolWord().getSymbol().charAt(
-                                index.toIntegerWord().getInteger() - 1)));
+                String symbol = args.get(1).toSymbolWord().getSymbol();
+                item = new SymbolWord(String.valueOf(symbol.charAt(position(index, symbol.length()))));
+                break;
+            case ARRAY:
+                item = args.get(1).toArray().get(index(index));
                 break;
             default:
                 throw new NodeTypeException(args.get(0), args.get(0).type(), NodeType.LIST);
@@ -293,7 +357,7 @@ public class Data implements ProcedureProvider {
     }
 
     // Mutators
-    public Node setitem(Scope scope, java.util.List<Node> args) {
+    public Node setitem(Interpreter it, Scope scope, java.util.List<Node> args) {
 
         Node index = it.eval(args.get(0));
         Node list = args.get(1);
@@ -303,23 +367,65 @@ public class Data implements ProcedureProvider {
             throw new NodeTypeException(index, index.type(), NodeType.INTEGER);
         }
 
+        if (list.type().equals(NodeType.ARRAY)) {
+            list.toArray().set(index(index), newVal);
+            return list;
+        }
+
         if (!list.type().equals(NodeType.LIST)) {
-            throw new NodeTypeException(list, list.type(), NodeType.LIST);
+            throw new NodeTypeException(list, list.type(), NodeType.LIST, NodeType.ARRAY);
         }
 
-        list.getChildren().set(index.toIntegerWord().getInteger() - 1, newVal);
+        list.getChildren().set(position(index, list.getChildren().size()), newVal);
 
         return list;
     }
 
+    public Node mditem(Scope scope, java.util.List<Node> args) {
+        if (!args.get(0).type().equals(NodeType.LIST)) {
+            throw new NodeTypeException(args.get(0), args.get(0).type(), NodeType.LIST);
+        }
+
+        // Without an index there is no item, like for mdsetitem
+        if (args.get(0).getChildren().isEmpty()) {
+            throw new NodeTypeException(args.get(0), NodeType.NIL, NodeType.INTEGER);
+        }
+
+        Node item = args.get(1);
+        for (Node index : args.get(0).getChildren()) {
+            item = item.toArray().get(index(index));
+        }
+        return item;
+    }
+
+    public Node mdsetitem(Scope scope, java.util.List<Node> args) {
+        if (!args.get(0).type().equals(NodeType.LIST)) {
+            throw new NodeTypeException(args.get(0), args.get(0).type(), NodeType.LIST);
+        }
+
+        // Without an index there is no item to set
+        java.util.List<Node> indexes = args.get(0).getChildren();
+        if (indexes.isEmpty()) {
+            throw new NodeTypeException(args.get(0), NodeType.NIL, NodeType.INTEGER);
+        }
+
+        Node array = args.get(1);
+        for (int i = 0; i < indexes.size() - 1; i++) {
+            array = array.toArray().get(index(indexes.get(i)));
+        }
+        array.toArray().set(index(indexes.get(indexes.size() - 1)), args.get(2));
+
+        return args.get(1);
+    }
+
     // Predicates
     public Node emptyp(Scope scope, java.util.List<Node> args) {
 
         Node list = args.get(0);
-        Node empty = new BooleanWord(Boolean.FALSE);
+        Node empty = BooleanWord.FALSE;
 
         if (list.type().equals(NodeType.LIST) && list.getChildren().isEmpty()) {
-            empty = new BooleanWord(Boolean.TRUE);
+            empty = BooleanWord.TRUE;
         }
 
         return empty;
@@ -328,10 +434,10 @@ public class Data implements ProcedureProvider {
     public Node wordp(Scope scope, java.util.List<Node> args) {
 
         Node word = args.get(0);
-        Node wordp = new BooleanWord(Boolean.FALSE);
+        Node wordp = BooleanWord.FALSE;
 
         if (word.type().equals(NodeType.QUOTE) || word.type().equals(NodeType.SYMBOL) || word.type().equals(NodeType.INTEGER) || word.type().equals(NodeType.FLOAT)) {
-            wordp = new BooleanWord(Boolean.TRUE);
+            wordp = BooleanWord.TRUE;
         }
 
         return wordp;
@@ -340,10 +446,10 @@ public class Data implements ProcedureProvider {
     public Node numberp(Scope scope, java.util.List<Node> args) {
 
         Node word = args.get(0);
-        Node wordp = new BooleanWord(Boolean.FALSE);
+        Node wordp = BooleanWord.FALSE;
 
         if (word.type().equals(NodeType.INTEGER) || word.type().equals(NodeType.FLOAT)) {
-            wordp = new BooleanWord(Boolean.TRUE);
+            wordp = BooleanWord.TRUE;
         }
 
         return wordp;
@@ -352,20 +458,24 @@ public class Data implements ProcedureProvider {
     public Node listp(Scope scope, java.util.List<Node> args) {
 
         Node list = args.get(0);
-        Node listp = new BooleanWord(Boolean.FALSE);
+        Node listp = BooleanWord.FALSE;
 
         if (list.type().equals(NodeType.LIST)) {
-            listp = new BooleanWord(Boolean.TRUE);
+            listp = BooleanWord.TRUE;
         }
 
         return listp;
     }
 
+    public Node arrayp(Scope scope, java.util.List<Node> args) {
+        return BooleanWord.valueOf(args.get(0).type().equals(NodeType.ARRAY));
+    }
+
     public Node equalp(Scope scope, java.util.List<Node> args) {
 
         Node fst = args.get(0);
         Node snd = args.get(1);
-        Node equalp = new BooleanWord(fst.equals(snd));
+        Node equalp = Node.bool(fst.equals(snd));
 
         return equalp;
     }
@@ -375,22 +485,46 @@ public class Data implements ProcedureProvider {
         Node member = args.get(0);
         Node list = args.get(1);
 
-        Node result = Word.bool(false);
+        if (!list.type().equals(NodeType.LIST)) {
+            throw new NodeTypeException(list, list.type(), NodeType.LIST);
+        }
+
+        return Word.bool(list.toList().position(member) >= 0);
+    }
+
+    public Node position(Scope scope, java.util.List<Node> args) {
+        Node member = args.get(0);
+        Node list = args.get(1);
+
+        if (!list.type().equals(NodeType.LIST)) {
+            throw new NodeTypeException(list, list.type(), NodeType.LIST);
+        }
+
+        int position = list.toList().position(member);
+        return position < 0 ? Node.nil() : Node.integer(position + 1);
+    }
+
+    /**
+     * Removes duplicates, the last of equal members is kept.
+     */
+    public Node remdup(Scope scope, java.util.List<Node> args) {
+        Node list = args.get(0);
 
         if (!list.type().equals(NodeType.LIST)) {
             throw new NodeTypeException(list, list.type(), NodeType.LIST);
         }
 
-        for (Node lm : list.getChildren()) {
-            if (lm.hashCode() == member.hashCode()) {
-                java.util.List<Node> subArgs = new ArrayList<>();
-                subArgs.add(member);
-                subArgs.add(lm);
-                result = equalp(scope, subArgs);
+        java.util.List<Node> members = list.getChildren();
+        java.util.Set<Node> seen = new java.util.HashSet<>();
+        java.util.List<Node> result = new ArrayList<>();
+        for (int i = members.size() - 1; i >= 0; i--) {
+            if (seen.add(members.get(i))) {
+                result.add(members.get(i));
             }
         }
+        Collections.reverse(result);
 
-        return result.toBooleanWord();
+        return new List(result);
     }
 
     // Queries
@@ -410,6 +544,14 @@ public class Data implements ProcedureProvider {
             return Node.integer(element.toSymbolWord().getSymbol().length());
         }
 
+        if (element.type().equals(NodeType.ARRAY)) {
+            return Node.integer(element.toArray().size());
+        }
+
+        if (element.type().equals(NodeType.TABLE)) {
+            return Node.integer(element.toTable().entries().size());
+        }
+
         return Node.integer(0);
     }
 
@@ -464,32 +606,40 @@ public class Data implements ProcedureProvider {
     }
 
     @Override
-    public Interpreter registerProcedures(Interpreter it) {
-        this.it = it;
-
-        it.env().define(new Procedure("uppercase", (scope, val) -> this.uppercase(scope, val), "element"));
-        it.env().define(new Procedure("lowercase", (scope, val) -> this.lowercase(scope, val), "element"));
-        it.env().define(new Procedure("count", (scope, val) -> this.count(scope, val), "element"));
-        it.env().define(new Procedure("equal?", (scope, val) -> this.equalp(scope, val), "fst", "snd"));
-        it.env().define(new Procedure("member?", (scope, val) -> this.memberp(scope, val), "fst", "snd"));
-        it.env().define(new Procedure("list?", (scope, val) -> this.listp(scope, val), "list"));
-        it.env().define(new Procedure("number?", (scope, val) -> this.numberp(scope, val), "number"));
-        it.env().define(new Procedure("word?", (scope, val) -> this.wordp(scope, val), "word"));
-        it.env().define(new Procedure("empty?", (scope, val) -> this.emptyp(scope, val), "list"));
-        it.env().define(new Procedure("setitem", (scope, val) -> this.setitem(scope, val), "index", "list", "newval"));
-        it.env().define(new Procedure("item", (scope, val) -> this.item(scope, val), "index", "listorword"));
-        it.env().define(new Procedure("butlast", (scope, val) -> this.butlast(scope, val), "listorword"));
-        it.env().define(new Procedure("butfirst", (scope, val) -> this.butfirst(scope, val), "listorword"));
-        it.env().define(new Procedure("last", (scope, val) -> this.last(scope, val), "listorword"));
-        it.env().define(new Procedure("first", (scope, val) -> this.first(scope, val), "listorword"));
-        it.env().define(new Procedure("reverse", (scope, val) -> this.reverse(scope, val), "list"));
-        it.env().define(new Procedure("fput", (scope, val) -> this.fput(scope, val), "fst", "snd"));
-        it.env().define(new Procedure("lput", (scope, val) -> this.lput(scope, val), "fst", "snd"));
-        it.env().define(new Procedure("word", (scope, val) -> this.word(scope, val), "fst", "snd"));
-        it.env().define(new Procedure("list", (scope, val) -> this.list(scope, val), "fst", "snd"));
-        it.env().define(new Procedure("sentence", (scope, val) -> this.sentence(scope, val), "fst", "snd"));
-        it.env().define(new Procedure("gensym", (scope, val) -> this.gensym(scope, val)));
-
-        return it;
+    public Interpreter registerProcedures(Interpreter interpreter) {
+
+        interpreter.env().define(new Procedure("uppercase", (scope, val) -> this.uppercase(scope, val), "element"));
+        interpreter.env().define(new Procedure("lowercase", (scope, val) -> this.lowercase(scope, val), "element"));
+        interpreter.env().define(new Procedure("count", (scope, val) -> this.count(scope, val), "element"));
+        interpreter.env().define(new Procedure("equal?", (scope, val) -> this.equalp(scope, val), "fst", "snd"));
+        interpreter.env().define(new Procedure("member?", (scope, val) -> this.memberp(scope, val), "fst", "snd"));
+        interpreter.env().define(new Procedure("position", (scope, val) -> this.position(scope, val), "fst", "snd"));
+        interpreter.env().define(new Procedure("remdup", (scope, val) -> this.remdup(scope, val), "list"));
+        interpreter.env().define(new Procedure("list?", (scope, val) -> this.listp(scope, val), "list"));
+        interpreter.env().define(new Procedure("array?", (scope, val) -> this.arrayp(scope, val), "array"));
+        interpreter.env().define(new Procedure("number?", (scope, val) -> this.numberp(scope, val), "number"));
+        interpreter.env().define(new Procedure("word?", (scope, val) -> this.wordp(scope, val), "word"));
+        interpreter.env().define(new Procedure("empty?", (scope, val) -> this.emptyp(scope, val), "list"));
+        interpreter.env().define(new Procedure("setitem", (it, scope, val) -> this.setitem(it, scope, val), "index", "list", "newval"));
+        interpreter.env().define(new Procedure("item", (it, scope, val) -> this.item(it, scope, val), "index", "listorword"));
+        interpreter.env().define(new Procedure("mdsetitem", (scope, val) -> this.mdsetitem(scope, val), "indexes", "array", "newval"));
+        interpreter.env().define(new Procedure("mditem", (scope, val) -> this.mditem(scope, val), "indexes", "array"));
+        interpreter.env().define(new Procedure("butlast", (scope, val) -> this.butlast(scope, val), "listorword"));
+        interpreter.env().define(new Procedure("butfirst", (scope, val) -> this.butfirst(scope, val), "listorword"));
+        interpreter.env().define(new Procedure("last", (scope, val) -> this.last(scope, val), "listorword"));
+        interpreter.env().define(new Procedure("first", (scope, val) -> this.first(scope, val), "listorword"));
+        interpreter.env().define(new Procedure("reverse", (scope, val) -> this.reverse(scope, val), "list"));
+        interpreter.env().define(new Procedure("fput", (scope, val) -> this.fput(scope, val), "fst", "snd"));
+        interpreter.env().define(new Procedure("lput", (scope, val) -> this.lput(scope, val), "fst", "snd"));
+        interpreter.env().define(new Procedure("word", (it, scope, val) -> this.word(it, scope, val), "fst", "snd"));
+        interpreter.env().define(new Procedure("list", (scope, val) -> this.list(scope, val), "fst", "snd"));
+        interpreter.env().define(new Procedure("sentence", (scope, val) -> this.sentence(scope, val), "fst", "snd"));
+        interpreter.env().define(new Procedure("gensym", (scope, val) -> this.gensym(scope, val)));
+        interpreter.env().define(new Procedure("array", (scope, val) -> this.array(scope, val), "size"));
+        interpreter.env().define(new Procedure("mdarray", (scope, val) -> this.mdarray(scope, val), "sizes"));
+        interpreter.env().define(new Procedure("listtoarray", (scope, val) -> this.listtoarray(scope, val), "list"));
+        interpreter.env().define(new Procedure("arraytolist", (scope, val) -> this.arraytolist(scope, val), "array"));
+
+        return interpreter;
     }
 }
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.runtime.procedures.builtin;
+
+import ch.uprisesoft.yali.ast.node.List;
+import ch.uprisesoft.yali.ast.node.Node;
+import ch.uprisesoft.yali.ast.node.NodeType;
+import ch.uprisesoft.yali.ast.node.Procedure;
+import ch.uprisesoft.yali.ast.node.Table;
+import ch.uprisesoft.yali.ast.node.WordTable;
+import ch.uprisesoft.yali.ast.node.word.BooleanWord;
+import ch.uprisesoft.yali.exception.NodeTypeException;
+import ch.uprisesoft.yali.exception.RangeException;
+import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
+import ch.uprisesoft.yali.runtime.procedures.ProcedureProvider;
+import ch.uprisesoft.yali.scope.Scope;
+import java.util.ArrayList;
+
+/**
+ * Property lists as in Berkeley Logo and hash tables. Both look words up in
+ * constant time.
+ *
+ * @author rma
+ */
+public class Dictionary implements ProcedureProvider {
+
+
+    public Node pprop(Interpreter it, Scope scope, java.util.List<Node> args) {
+        it.env().pprop(args.get(0), args.get(1), args.get(2));
+        return Node.none();
+    }
+
+    public Node gprop(Interpreter it, Scope scope, java.util.List<Node> args) {
+        WordTable<Node> plist = it.env().plist(args.get(0));
+        Node value = plist == null ? null : plist.get(args.get(1));
+        return value == null ? new List() : value;
+    }
+
+    public Node remprop(Interpreter it, Scope scope, java.util.List<Node> args) {
+        it.env().remprop(args.get(0), args.get(1));
+        return Node.none();
+    }
+
+    /**
+     * List of the properties of a name and their values, one after the other.
+     */
+    public Node plist(Interpreter it, Scope scope, java.util.List<Node> args) {
+        WordTable<Node> plist = it.env().plist(args.get(0));
+        if (plist == null) {
+            return new List();
+        }
+
+        java.util.List<Node> result = new ArrayList<>(plist.size() * 2);
+        for (Node property : plist.words()) {
+            result.add(property);
+            result.add(plist.get(property));
+        }
+        return new List(result);
+    }
+
+    /**
+     * New empty table, with an optional number of entries to make room for.
+     */
+    public Node table(Scope scope, java.util.List<Node> args) {
+        if (args.isEmpty()) {
+            return new Table();
+        }
+
+        Node size = Node.literal(args.get(0));
+        if (!size.type().equals(NodeType.INTEGER)) {
+            throw new NodeTypeException(args.get(0), args.get(0).type(), NodeType.INTEGER);
+        }
+        // Only room to make, larger sizes are made as the table grows
+        long expected = size.toIntegerWord().count();
+        if (expected < 0) {
+            throw new RangeException(args.get(0), 0, Integer.MAX_VALUE);
+        }
+        return new Table(new WordTable<>((int) Math.min(expected, Integer.MAX_VALUE)));
+    }
+
+    public Node tablePut(Scope scope, java.util.List<Node> args) {
+        table(args.get(0)).put(args.get(1), args.get(2));
+        return args.get(0);
+    }
+
+    public Node tableGet(Scope scope, java.util.List<Node> args) {
+        Node value = table(args.get(0)).get(args.get(1));
+        return value == null ? new List() : value;
+    }
+
+    public Node tableKeyp(Scope scope, java.util.List<Node> args) {
+        return BooleanWord.valueOf(table(args.get(0)).containsKey(args.get(1)));
+    }
+
+    public Node tableRemove(Scope scope, java.util.List<Node> args) {
+        table(args.get(0)).remove(args.get(1));
+        return args.get(0);
+    }
+
+    public Node tableKeys(Scope scope, java.util.List<Node> args) {
+        return new List(table(args.get(0)).words());
+    }
+
+    public Node tablep(Scope scope, java.util.List<Node> args) {
+        return BooleanWord.valueOf(args.get(0).type().equals(NodeType.TABLE));
+    }
+
+    private static WordTable<Node> table(Node table) {
+        return table.toTable().entries();
+    }
+
+    @Override
+    public Interpreter registerProcedures(Interpreter interpreter) {
+
+        interpreter.env().define(new Procedure("pprop", (it, scope, val) -> this.pprop(it, scope, val), "plistname", "propname", "value"));
+        interpreter.env().define(new Procedure("gprop", (it, scope, val) -> this.gprop(it, scope, val), "plistname", "propname"));
+        interpreter.env().define(new Procedure("remprop", (it, scope, val) -> this.remprop(it, scope, val), "plistname", "propname"));
+        interpreter.env().define(new Procedure("plist", (it, scope, val) -> this.plist(it, scope, val), "plistname"));
+        interpreter.env().define(new Procedure("table", (scope, val) -> this.table(scope, val)));
+        interpreter.env().define(new Procedure("table.put", (scope, val) -> this.tablePut(scope, val), "table", "key", "value"));
+        interpreter.env().define(new Procedure("table.get", (scope, val) -> this.tableGet(scope, val), "table", "key"));
+        interpreter.env().define(new Procedure("table.key?", (scope, val) -> this.tableKeyp(scope, val), "table", "key"));
+        interpreter.env().define(new Procedure("table.remove", (scope, val) -> this.tableRemove(scope, val), "table", "key"));
+        interpreter.env().define(new Procedure("table.keys", (scope, val) -> this.tableKeys(scope, val), "table"));
+        interpreter.env().define(new Procedure("table?", (scope, val) -> this.tablep(scope, val), "table"));
+
+        return interpreter;
+    }
+}
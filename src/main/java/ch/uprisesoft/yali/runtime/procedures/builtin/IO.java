@@ -31,6 +31,7 @@ import java.util.ArrayList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ch.uprisesoft.yali.runtime.procedures.ProcedureProvider;
+import ch.uprisesoft.yali.runtime.Diagnostics;
 
 /**
  *
@@ -42,9 +43,8 @@ public class IO implements ProcedureProvider, OutputSubject, InputReceiver {
 
     private java.util.List<OutputObserver> observers = new ArrayList<>();
     private InputGenerator generator;
-    private Interpreter it;
 
-    public Node print(Scope scope, java.util.List<Node> args) {
+    public Node print(Interpreter it, Scope scope, java.util.List<Node> args) {
         java.util.List<Node> concreteArgs = new ArrayList<>();
         
         for(Node arg: args) {
@@ -64,28 +64,28 @@ public class IO implements ProcedureProvider, OutputSubject, InputReceiver {
         java.util.List<String> stringifiedArgs = new ArrayList<>();
         stringifiedArgs.addAll(it.stringify(concreteArgs));
 
-        inform(String.join(" ", stringifiedArgs) + "\n");
+        inform(it, String.join(" ", stringifiedArgs) + "\n");
 
-        logger.debug(">>>>>>>>>>>>>>>>>>>><<<<<<<<<<<<<<<<<<<<");
-        logger.debug("(Communication) print called with " + String.join(" ", stringifiedArgs));
-        logger.debug(">>>>>>>>>>>>>>>>>>>><<<<<<<<<<<<<<<<<<<<");
+        if (Diagnostics.TRACE) {
+            logger.debug("(Communication) print called with {}", stringifiedArgs);
+        }
 
         return Node.nil();
     }
 
-    public Node show(Scope scope, java.util.List<Node> args) {
+    public Node show(Interpreter it, Scope scope, java.util.List<Node> args) {
         java.util.List<String> stringifiedArgs = new ArrayList<>();
         stringifiedArgs.addAll(it.stringify(args));
 
-        inform(String.join(" ", stringifiedArgs) + "\n");
+        inform(it, String.join(" ", stringifiedArgs) + "\n");
         return Node.nil();
     }
 
-    public Node type(Scope scope, java.util.List<Node> args) {
+    public Node type(Interpreter it, Scope scope, java.util.List<Node> args) {
         java.util.List<String> stringifiedArgs = new ArrayList<>();
         stringifiedArgs.addAll(it.stringify(args));
 
-        inform(String.join(" ", stringifiedArgs));
+        inform(it, String.join(" ", stringifiedArgs));
         return Node.nil();
     }
 
@@ -108,20 +108,22 @@ public class IO implements ProcedureProvider, OutputSubject, InputReceiver {
 //        return stringifiedArgs;
 //    }
 
-    public Node readword(Scope scope, java.util.List<Node> args) {
-        QuotedWord result = new QuotedWord(requestLine());
+    public Node readword(Interpreter it, Scope scope, java.util.List<Node> args) {
+        QuotedWord result = new QuotedWord(requestLine(it));
         return result;
     }
 
-    public Node readlist(Scope scope, java.util.List<Node> args) {
+    public Node readlist(Interpreter it, Scope scope, java.util.List<Node> args) {
         logger.debug("(Communication) Start readlist");
 
         StringBuffer list = new StringBuffer();
         list.append("[");
-        list.append(requestLine());
+        list.append(requestLine(it));
         list.append("]");
 
-        logger.debug("(Communication) Read " + list.toString());
+        if (Diagnostics.TRACE) {
+            logger.debug("(Communication) Read {}", list);
+        }
         List result = (List) it.read(list.toString());
 
         logger.debug("(Communication) End readlist");
@@ -129,16 +131,15 @@ public class IO implements ProcedureProvider, OutputSubject, InputReceiver {
     }
 
     @Override
-    public Interpreter registerProcedures(Interpreter it) {
-        this.it = it;
+    public Interpreter registerProcedures(Interpreter interpreter) {
         
-        it.env().define(new Procedure("readword", (scope, val) -> this.readword(scope, val)));
-        it.env().define(new Procedure("readlist", (scope, val) -> this.readlist(scope, val)));
-        it.env().define(new Procedure("show", (scope, val) -> this.show(scope, val), "output"));
-        it.env().define(new Procedure("type", (scope, val) -> this.type(scope, val), "output"));
-        it.env().define(new Procedure("print", (scope, val) -> this.print(scope, val), "output"));
+        interpreter.env().define(new Procedure("readword", (it, scope, val) -> this.readword(it, scope, val)));
+        interpreter.env().define(new Procedure("readlist", (it, scope, val) -> this.readlist(it, scope, val)));
+        interpreter.env().define(new Procedure("show", (it, scope, val) -> this.show(it, scope, val), "output"));
+        interpreter.env().define(new Procedure("type", (it, scope, val) -> this.type(it, scope, val), "output"));
+        interpreter.env().define(new Procedure("print", (it, scope, val) -> this.print(it, scope, val), "output"));
 
-        return it;
+        return interpreter;
     }
 
     @Override
@@ -153,18 +154,31 @@ public class IO implements ProcedureProvider, OutputSubject, InputReceiver {
         observers.add(observer);
     }
 
-    private void inform(String output) {
+    // Sessions of a runtime have their own output and input
+    private void inform(Interpreter it, String output) {
+        OutputObserver session = it.output();
+        if (session != null) {
+            session.inform(output);
+            return;
+        }
+
         for (OutputObserver oo : observers) {
             oo.inform(output);
         }
     }
 
-    private String request() {
-        return generator.request();
+    private String request(Interpreter it) {
+        return generator(it).request();
     }
 
-    private String requestLine() {
+    private InputGenerator generator(Interpreter it) {
+        InputGenerator session = it.input();
+        return session != null ? session : generator;
+    }
+
+    private String requestLine(Interpreter it) {
         logger.debug("(Communication) Start requestLine");
+        InputGenerator generator = generator(it);
         if (generator == null) {
             logger.debug("(Communication) Nog Generator registered");
         }
@@ -172,7 +186,9 @@ public class IO implements ProcedureProvider, OutputSubject, InputReceiver {
         if (line == null) {
             logger.debug("(Communication) No line read");
         }
-        logger.debug("(Communication) Line: " + line);
+        if (Diagnostics.TRACE) {
+            logger.debug("(Communication) Line: {}", line);
+        }
         logger.debug("(Communication) End requestLine");
         return line;
     }
@@ -26,6 +26,7 @@ import ch.uprisesoft.yali.scope.Scope;
 import java.util.ArrayList;
 import org.slf4j.LoggerFactory;
 import ch.uprisesoft.yali.runtime.procedures.ProcedureProvider;
+import ch.uprisesoft.yali.runtime.Diagnostics;
 
 /**
  *
@@ -35,20 +36,19 @@ public class Logic implements ProcedureProvider {
 
     private static final org.slf4j.Logger logger = LoggerFactory.getLogger(Logic.class);
 
-    private Interpreter it;
 
-    public Node equal(Scope scope, java.util.List<Node> args) {
+    public Node equal(Interpreter it, Scope scope, java.util.List<Node> args) {
         Word left = (Word) it.eval(args.get(0));
         Word right = (Word) it.eval(args.get(1));
 
         if (left.type().equals(NodeType.INTEGER) && right.type().equals(NodeType.INTEGER)) {
-            return Word.bool(left.getInteger().equals(right.getInteger()));
+            return Word.bool(left.toIntegerWord().compareTo(right.toIntegerWord()) == 0);
         } else if (left.type().equals(NodeType.FLOAT) && right.type().equals(NodeType.FLOAT)) {
-            return Word.bool(left.getFloat().equals(right.getFloat()));
+            return Word.bool(Double.compare(left.doubleValue(), right.doubleValue()) == 0);
         } else if (left.type().equals(NodeType.INTEGER) && right.type().equals(NodeType.FLOAT)) {
-            return Word.bool(Double.valueOf(left.getInteger().toString()).equals(right.getFloat()));
+            return Word.bool(Double.compare(left.doubleValue(), right.doubleValue()) == 0);
         } else if (left.type().equals(NodeType.FLOAT) && right.type().equals(NodeType.INTEGER)) {
-            return Word.bool(left.getFloat().equals(Double.valueOf(right.getInteger().toString())));
+            return Word.bool(Double.compare(left.doubleValue(), right.doubleValue()) == 0);
         } else if (left.type().equals(NodeType.QUOTE) && right.type().equals(NodeType.QUOTE)) {
             return Word.bool(left.getQuote().equals(right.getQuote()));
         } else if (left.type().equals(NodeType.SYMBOL) && right.type().equals(NodeType.SYMBOL)) {
@@ -60,16 +60,16 @@ public class Logic implements ProcedureProvider {
         return Word.bool(Boolean.FALSE);
     }
 
-    public Node inequal(Scope scope, java.util.List<Node> args) {
-        Node result = equal(scope, args);
+    public Node inequal(Interpreter it, Scope scope, java.util.List<Node> args) {
+        Node result = equal(it, scope, args);
         if (result.toBooleanWord().getBoolean()) {
-            return new BooleanWord(Boolean.FALSE);
+            return BooleanWord.FALSE;
         } else {
-            return new BooleanWord(Boolean.TRUE);
+            return BooleanWord.TRUE;
         }
     }
 
-    public Node greater(Scope scope, java.util.List<Node> args) {
+    public Node greater(Interpreter it, Scope scope, java.util.List<Node> args) {
         Word left = (Word) it.eval(args.get(0));
         Word right = (Word) it.eval(args.get(1));
         
@@ -83,91 +83,102 @@ public class Logic implements ProcedureProvider {
 
         Word result = Node.bool(Boolean.FALSE);
 
-        logger.debug("(Logic) Greater-Expression. Left: " + left.toString() + "/" + left.type() + ", Right: " + right.toString() + "/" + right.type());
+        if (Diagnostics.TRACE) {
+            logger.debug("(Logic) Greater-Expression. Left: {}/{}, Right: {}/{}", left, left.type(), right, right.type());
+        }
 
         if (left.type().equals(NodeType.INTEGER) && right.type().equals(NodeType.INTEGER)) {
-            result = Word.bool(left.getInteger() > right.getInteger());
+            result = Word.bool(left.toIntegerWord().compareTo(right.toIntegerWord()) > 0);
         } else if (left.type().equals(NodeType.FLOAT) && right.type().equals(NodeType.FLOAT)) {
-            logger.debug("(Logic) Evaluating Float : " + left.getFloat() + " is less than Float " + right.getFloat());
-            result = Word.bool(left.getFloat() > right.getFloat());
+            if (Diagnostics.TRACE) {
+                logger.debug("(Logic) Evaluating Float : {} compared to Float {}", left.getFloat(), right.getFloat());
+            }
+            result = Word.bool(left.doubleValue() > right.doubleValue());
         } else if (left.type().equals(NodeType.INTEGER) && right.type().equals(NodeType.FLOAT)) {
-            result = Word.bool(left.getInteger() > right.getFloat());
+            result = Word.bool(left.doubleValue() > right.doubleValue());
         } else if (left.type().equals(NodeType.FLOAT) && right.type().equals(NodeType.INTEGER)) {
-            result = Word.bool(left.getFloat() > right.getInteger());
+            result = Word.bool(left.doubleValue() > right.doubleValue());
         }
 
-        logger.debug("(Logic) Expression is greater: " + result.getBoolean());
+        if (Diagnostics.TRACE) {
+            logger.debug("(Logic) Expression is greater: {}", result.getBoolean());
+        }
         return result;
     }
 
-    public Node less(Scope scope, java.util.List<Node> args) {
+    public Node less(Interpreter it, Scope scope, java.util.List<Node> args) {
         Word left = (Word) it.eval(args.get(0));
         Word right = (Word) it.eval(args.get(1));
 
         Word result = Node.bool(Boolean.FALSE);
 
-        logger.debug("(Logic) Less-Expression. Left: " + left.toString() + "/" + left.type() + ", Right: " + right.toString() + "/" + right.type());
+        if (Diagnostics.TRACE) {
+            logger.debug("(Logic) Less-Expression. Left: {}/{}, Right: {}/{}", left, left.type(), right, right.type());
+        }
 
         if (left.type().equals(NodeType.INTEGER) && right.type().equals(NodeType.INTEGER)) {
-            result = Word.bool(left.getInteger() < right.getInteger());
+            result = Word.bool(left.toIntegerWord().compareTo(right.toIntegerWord()) < 0);
         } else if (left.type().equals(NodeType.FLOAT) && right.type().equals(NodeType.FLOAT)) {
-            logger.debug("(Logic) Evaluating Float : " + left.getFloat() + " is less than Float " + right.getFloat());
-            result = Word.bool(left.getFloat() < right.getFloat());
+            if (Diagnostics.TRACE) {
+                logger.debug("(Logic) Evaluating Float : {} compared to Float {}", left.getFloat(), right.getFloat());
+            }
+            result = Word.bool(left.doubleValue() < right.doubleValue());
         } else if (left.type().equals(NodeType.INTEGER) && right.type().equals(NodeType.FLOAT)) {
-            result = Word.bool(left.getInteger() < right.getFloat());
+            result = Word.bool(left.doubleValue() < right.doubleValue());
         } else if (left.type().equals(NodeType.FLOAT) && right.type().equals(NodeType.INTEGER)) {
-            result = Word.bool(left.getFloat() < right.getInteger());
+            result = Word.bool(left.doubleValue() < right.doubleValue());
         }
 
-        logger.debug("(Logic) Expression is less: " + result.getBoolean());
+        if (Diagnostics.TRACE) {
+            logger.debug("(Logic) Expression is less: {}", result.getBoolean());
+        }
         return result;
     }
 
-    public Node greaterorequal(Scope scope, java.util.List<Node> args) {
+    public Node greaterorequal(Interpreter it, Scope scope, java.util.List<Node> args) {
         Word left = (Word) it.eval(args.get(0));
         Word right = (Word) it.eval(args.get(1));
 
         if (left.type().equals(NodeType.INTEGER) && right.type().equals(NodeType.INTEGER)) {
-            return Word.bool(left.getInteger() >= right.getInteger());
+            return Word.bool(left.toIntegerWord().compareTo(right.toIntegerWord()) >= 0);
         } else if (left.type().equals(NodeType.FLOAT) && right.type().equals(NodeType.FLOAT)) {
-            return Word.bool(left.getFloat() >= right.getFloat());
+            return Word.bool(left.doubleValue() >= right.doubleValue());
         } else if (left.type().equals(NodeType.INTEGER) && right.type().equals(NodeType.FLOAT)) {
-            return Word.bool(left.getInteger() >= right.getFloat());
+            return Word.bool(left.doubleValue() >= right.doubleValue());
         } else if (left.type().equals(NodeType.FLOAT) && right.type().equals(NodeType.INTEGER)) {
-            return Word.bool(left.getFloat() >= right.getInteger());
+            return Word.bool(left.doubleValue() >= right.doubleValue());
         }
 
         return Word.bool(Boolean.FALSE);
     }
 
-    public Node lessorequal(Scope scope, java.util.List<Node> args) {
+    public Node lessorequal(Interpreter it, Scope scope, java.util.List<Node> args) {
         Word left = (Word) it.eval(args.get(0));
         Word right = (Word) it.eval(args.get(1));
 
         if (left.type().equals(NodeType.INTEGER) && right.type().equals(NodeType.INTEGER)) {
-            return Word.bool(left.getInteger() <= right.getInteger());
+            return Word.bool(left.toIntegerWord().compareTo(right.toIntegerWord()) <= 0);
         } else if (left.type().equals(NodeType.FLOAT) && right.type().equals(NodeType.FLOAT)) {
-            return Word.bool(left.getFloat() <= right.getFloat());
+            return Word.bool(left.doubleValue() <= right.doubleValue());
         } else if (left.type().equals(NodeType.INTEGER) && right.type().equals(NodeType.FLOAT)) {
-            return Word.bool(left.getInteger() <= right.getFloat());
+            return Word.bool(left.doubleValue() <= right.doubleValue());
         } else if (left.type().equals(NodeType.FLOAT) && right.type().equals(NodeType.INTEGER)) {
-            return Word.bool(left.getFloat() <= right.getInteger());
+            return Word.bool(left.doubleValue() <= right.doubleValue());
         }
 
         return Word.bool(Boolean.FALSE);
     }
 
     @Override
-    public Interpreter registerProcedures(Interpreter it) {
-        this.it = it;
+    public Interpreter registerProcedures(Interpreter interpreter) {
 
-        it.env().define(new Procedure("equal?", (scope, val) -> this.equal(scope, val), "fst", "snd"));
-        it.env().define(new Procedure("notequal?", (scope, val) -> this.inequal(scope, val), "fst", "snd"));
-        it.env().define(new Procedure("less?", (scope, val) -> this.less(scope, val), "fst", "snd"));
-        it.env().define(new Procedure("greater?", (scope, val) -> this.greater(scope, val), "fst", "snd"));
-        it.env().define(new Procedure("greaterequal?", (scope, val) -> this.greaterorequal(scope, val), "fst", "snd"));
-        it.env().define(new Procedure("lessequal?", (scope, val) -> this.lessorequal(scope, val), "fst", "snd"));
+        interpreter.env().define(new Procedure("equal?", (it, scope, val) -> this.equal(it, scope, val), "fst", "snd"));
+        interpreter.env().define(new Procedure("notequal?", (it, scope, val) -> this.inequal(it, scope, val), "fst", "snd"));
+        interpreter.env().define(new Procedure("less?", (it, scope, val) -> this.less(it, scope, val), "fst", "snd"));
+        interpreter.env().define(new Procedure("greater?", (it, scope, val) -> this.greater(it, scope, val), "fst", "snd"));
+        interpreter.env().define(new Procedure("greaterequal?", (it, scope, val) -> this.greaterorequal(it, scope, val), "fst", "snd"));
+        interpreter.env().define(new Procedure("lessequal?", (it, scope, val) -> this.lessorequal(it, scope, val), "fst", "snd"));
 
-        return it;
+        return interpreter;
     }
 }
@@ -24,6 +24,8 @@ import java.util.List;
  */
 public class MockTurtle {
     List<TurtlePosition> positions;
+    boolean penDown = true;
+    boolean visible = true;
 
     public MockTurtle() {
         positions = new ArrayList<>();
@@ -38,7 +40,7 @@ public class MockTurtle {
         return positions.get(positions.size() -1);
     }
     
-    public void fd(int steps) {
+    public void fd(double steps) {
         TurtlePosition oldpos = positions.get(positions.size() - 1);
         float angle = oldpos.angle;
         float oldx = oldpos.x;
@@ -48,7 +50,7 @@ public class MockTurtle {
         positions.add(new TurtlePosition(newx, newy, angle));
     }
 
-    public void bk(int steps) {
+    public void bk(double steps) {
         TurtlePosition oldpos = positions.get(positions.size() - 1);
         float angle = oldpos.angle;
         float oldx = oldpos.x;
@@ -58,18 +60,43 @@ public class MockTurtle {
         positions.add(new TurtlePosition(newx, newy, angle));
     }
 
-    public void lt(float degrees) {
+    public void lt(double degrees) {
         TurtlePosition oldpos = positions.get(positions.size() - 1);
-        positions.set(positions.size() - 1, new TurtlePosition(oldpos.x, oldpos.y, oldpos.angle - degrees));
+        positions.set(positions.size() - 1, new TurtlePosition(oldpos.x, oldpos.y, (float) (oldpos.angle - degrees)));
     }
 
-    public void rt(int degrees) {
+    public void rt(double degrees) {
         TurtlePosition oldpos = positions.get(positions.size() - 1);
-        positions.set(positions.size() - 1, new TurtlePosition(oldpos.x, oldpos.y, oldpos.angle + degrees));
+        positions.set(positions.size() - 1, new TurtlePosition(oldpos.x, oldpos.y, (float) (oldpos.angle + degrees)));
     }
     
     public void cs() {
         positions.clear();
         positions.add(new TurtlePosition(0, 0, 0));
     }
+
+    public void home() {
+        positions.add(new TurtlePosition(0, 0, 0));
+    }
+
+    public void setxy(double x, double y) {
+        TurtlePosition oldpos = positions.get(positions.size() - 1);
+        positions.add(new TurtlePosition((float) x, (float) y, oldpos.angle));
+    }
+
+    public void pu() {
+        penDown = false;
+    }
+
+    public void pd() {
+        penDown = true;
+    }
+
+    public void ht() {
+        visible = false;
+    }
+
+    public void st() {
+        visible = true;
+    }
 }
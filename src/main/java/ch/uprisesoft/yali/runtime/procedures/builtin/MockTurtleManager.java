@@ -20,7 +20,6 @@ import ch.uprisesoft.yali.ast.node.List;
 import ch.uprisesoft.yali.ast.node.Node;
 import ch.uprisesoft.yali.exception.NodeTypeException;
 import ch.uprisesoft.yali.ast.node.NodeType;
-import ch.uprisesoft.yali.ast.node.word.IntegerWord;
 
 import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
 import ch.uprisesoft.yali.scope.Scope;
@@ -40,53 +39,60 @@ public class MockTurtleManager implements ProcedureProvider {
     MockTurtle turtle = new MockTurtle();
 
     public Node fd(Scope scope, java.util.List<Node> args) {
-        Node arg = args.get(0);
-        IntegerWord resolvedArg = null;
-        if (!arg.type().equals(NodeType.INTEGER)) {
-            throw new NodeTypeException(arg, arg.type(), NodeType.INTEGER);
-        }
-        resolvedArg = args.get(0).toIntegerWord();
-        
-        turtle.fd(resolvedArg.getInteger());
+        turtle.fd(number(args.get(0)));
         return turtlepos();
     }
 
     public Node bk(Scope scope, java.util.List<Node> args) {
-        Node arg = args.get(0);
-        IntegerWord resolvedArg = null;
-        if (!arg.type().equals(NodeType.INTEGER)) {
-            throw new NodeTypeException(arg, arg.type(), NodeType.INTEGER);
-        }
-        resolvedArg = args.get(0).toIntegerWord();
-        
-        turtle.bk(resolvedArg.getInteger());
+        turtle.bk(number(args.get(0)));
         return turtlepos();
     }
 
     public Node lt(Scope scope, java.util.List<Node> args) {
-        Node arg = args.get(0);
-        IntegerWord resolvedArg = null;
-        if (!arg.type().equals(NodeType.INTEGER)) {
-            throw new NodeTypeException(arg, arg.type(), NodeType.INTEGER);
-        }
-        resolvedArg = args.get(0).toIntegerWord();
-        
-        turtle.lt(resolvedArg.getInteger());
+        turtle.lt(number(args.get(0)));
         return turtlepos();
     }
 
     public Node rt(Scope scope, java.util.List<Node> args) {
-        Node arg = args.get(0);
-        IntegerWord resolvedArg = null;
-        if (!arg.type().equals(NodeType.INTEGER)) {
-            throw new NodeTypeException(arg, arg.type(), NodeType.INTEGER);
-        }
-        resolvedArg = args.get(0).toIntegerWord();
-        
-        turtle.rt(resolvedArg.getInteger());
+        turtle.rt(number(args.get(0)));
+        return turtlepos();
+    }
+
+    public Node home(Scope scope, java.util.List<Node> args) {
+        turtle.home();
+        return turtlepos();
+    }
+
+    public Node setxy(Scope scope, java.util.List<Node> args) {
+        turtle.setxy(number(args.get(0)), number(args.get(1)));
         return turtlepos();
     }
 
+    public Node cs(Scope scope, java.util.List<Node> args) {
+        turtle.cs();
+        return Node.none();
+    }
+
+    public Node pu(Scope scope, java.util.List<Node> args) {
+        turtle.pu();
+        return Node.none();
+    }
+
+    public Node pd(Scope scope, java.util.List<Node> args) {
+        turtle.pd();
+        return Node.none();
+    }
+
+    public Node ht(Scope scope, java.util.List<Node> args) {
+        turtle.ht();
+        return Node.none();
+    }
+
+    public Node st(Scope scope, java.util.List<Node> args) {
+        turtle.st();
+        return Node.none();
+    }
+
     public Node turtlepos(Scope scope, java.util.List<Node> args) {
         return turtlepos();
     }
@@ -94,19 +100,44 @@ public class MockTurtleManager implements ProcedureProvider {
     private Node turtlepos() {
         TurtlePosition tp = turtle.getPosition();
         List pos = new List();
-        pos.addChild(new IntegerWord(Math.round(tp.x)));
-        pos.addChild(new IntegerWord(Math.round(tp.y)));
+        pos.addChild(Node.integer(Math.round(tp.x)));
+        pos.addChild(Node.integer(Math.round(tp.y)));
         return pos;
     }
 
+    private static double number(Node arg) {
+        if (arg.type().equals(NodeType.INTEGER)) {
+            return arg.toIntegerWord().longValue();
+        } else if (arg.type().equals(NodeType.FLOAT)) {
+            return arg.toFloatWord().doubleValue();
+        }
+        throw new NodeTypeException(arg, arg.type(), NodeType.INTEGER, NodeType.FLOAT);
+    }
+
     @Override
-    public Interpreter registerProcedures(Interpreter it) {
-        it.env().define(new Procedure("fd", (scope, val) -> this.fd(scope, val), "dist"));
-        it.env().define(new Procedure("bk", (scope, val) -> this.bk(scope, val), "dist"));
-        it.env().define(new Procedure("lt", (scope, val) -> this.lt(scope, val), "angle"));
-        it.env().define(new Procedure("rt", (scope, val) -> this.rt(scope, val), "angle"));
-        it.env().define(new Procedure("turtlepos", (scope, val) -> this.turtlepos(scope, val)));
-
-        return it;
+    public Interpreter registerProcedures(Interpreter interpreter) {
+        interpreter.env().define(new Procedure("fd", (scope, val) -> this.fd(scope, val), "dist"));
+        interpreter.env().define(new Procedure("bk", (scope, val) -> this.bk(scope, val), "dist"));
+        interpreter.env().define(new Procedure("lt", (scope, val) -> this.lt(scope, val), "angle"));
+        interpreter.env().define(new Procedure("rt", (scope, val) -> this.rt(scope, val), "angle"));
+        interpreter.env().define(new Procedure("forward", (scope, val) -> this.fd(scope, val), "dist"));
+        interpreter.env().define(new Procedure("back", (scope, val) -> this.bk(scope, val), "dist"));
+        interpreter.env().define(new Procedure("left", (scope, val) -> this.lt(scope, val), "angle"));
+        interpreter.env().define(new Procedure("right", (scope, val) -> this.rt(scope, val), "angle"));
+        interpreter.env().define(new Procedure("home", (scope, val) -> this.home(scope, val)));
+        interpreter.env().define(new Procedure("setxy", (scope, val) -> this.setxy(scope, val), "x", "y"));
+        interpreter.env().define(new Procedure("cs", (scope, val) -> this.cs(scope, val)));
+        interpreter.env().define(new Procedure("clearscreen", (scope, val) -> this.cs(scope, val)));
+        interpreter.env().define(new Procedure("pu", (scope, val) -> this.pu(scope, val)));
+        interpreter.env().define(new Procedure("penup", (scope, val) -> this.pu(scope, val)));
+        interpreter.env().define(new Procedure("pd", (scope, val) -> this.pd(scope, val)));
+        interpreter.env().define(new Procedure("pendown", (scope, val) -> this.pd(scope, val)));
+        interpreter.env().define(new Procedure("ht", (scope, val) -> this.ht(scope, val)));
+        interpreter.env().define(new Procedure("hideturtle", (scope, val) -> this.ht(scope, val)));
+        interpreter.env().define(new Procedure("st", (scope, val) -> this.st(scope, val)));
+        interpreter.env().define(new Procedure("showturtle", (scope, val) -> this.st(scope, val)));
+        interpreter.env().define(new Procedure("turtlepos", (scope, val) -> this.turtlepos(scope, val)));
+
+        return interpreter;
     }
 }
@@ -15,7 +15,6 @@
  */
 package ch.uprisesoft.yali.runtime.procedures.builtin;
 
-import ch.uprisesoft.yali.ast.node.Call;
 import ch.uprisesoft.yali.ast.node.Procedure;
 import ch.uprisesoft.yali.ast.node.List;
 import ch.uprisesoft.yali.ast.node.Node;
@@ -25,268 +24,289 @@ import ch.uprisesoft.yali.ast.node.word.QuotedWord;
 import ch.uprisesoft.yali.scope.Scope;
 import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ch.uprisesoft.yali.runtime.procedures.ProcedureProvider;
 
 /**
+ * Explicit slot templates. A template is compiled once into a procedure whose
+ * inputs are the slots ?, ?1, ?2... and then called for every element.
  *
  * @author uprisesoft@gmail.com
  */
 public class Template implements ProcedureProvider {
 
     private static final Logger logger = LoggerFactory.getLogger(Template.class);
-    private Interpreter it;
 
-    public Node map(Scope scope, java.util.List<Node> args) {
-        Node template = Node.none();
+    public Node map(Interpreter it, Scope scope, java.util.List<Node> args) {
+        Procedure template = template(it, args.get(0), 1);
+        java.util.List<Node> values = elements(args.get(1));
 
-        if (args.get(0).type().equals(NodeType.LIST)) {
-            template = args.get(0).toList();
-        } else {
-            throw new NodeTypeException(args.get(0), args.get(0).type(), NodeType.LIST);
+        if (args.get(1).type().equals(NodeType.LIST)) {
+            java.util.List<Node> results = new ArrayList<>();
+            for (Node val : values) {
+                results.add(Node.symbol(apply(it, template, val).toString()));
+            }
+            return new List(results);
         }
 
-        if (args.get(1).type().equals(NodeType.LIST)) {
-            Node values = args.get(1).toList();
+        StringBuilder results = new StringBuilder();
+        for (Node val : values) {
+            results.append(apply(it, template, val).toString());
+        }
+        return new QuotedWord(results.toString());
+    }
 
-            java.util.List<Node> results = new ArrayList<>();
+    public Node mapse(Interpreter it, Scope scope, java.util.List<Node> args) {
+        Procedure template = template(it, args.get(0), 1);
+
+        java.util.List<Node> results = new ArrayList<>();
+        for (Node val : elements(args.get(1))) {
+            Node result = apply(it, template, val);
+            if (result.type().equals(NodeType.LIST)) {
+                results.addAll(result.getChildren());
+            } else {
+                results.add(Node.symbol(result.toString()));
+            }
+        }
+        return new List(results);
+    }
 
-            for (int i = 0; i < values.getChildren().size(); i++) {
-                Node val = values.getChildren().get(i);
-                java.util.List<Node> realizedValues = new ArrayList<>();
-                for (Node n : template.getChildren()) {
-                    if (n.type().equals(NodeType.SYMBOL) && n.toSymbolWord().getSymbol().equals("?")) {
-                        realizedValues.add(val);
-                    } else {
-                        realizedValues.add(n);
-                    }
+    public Node filter(Interpreter it, Scope scope, java.util.List<Node> args) {
+        Procedure template = template(it, args.get(0), 1);
+        java.util.List<Node> values = elements(args.get(1));
+
+        if (args.get(1).type().equals(NodeType.LIST)) {
+            java.util.List<Node> results = new ArrayList<>();
+            for (Node val : values) {
+                if (test(it, template, args.get(0), val)) {
+                    results.add(val);
                 }
-                Call run = new Call("run");
-                run.code(it.env().getProcedures().get("run"));
-                run.addChild(new List(realizedValues));
-                results.add(Node.symbol(it.eval(run).toString()));
             }
             return new List(results);
+        }
 
-        } else if (args.get(1).type().equals(NodeType.QUOTE)) {
-            String values = args.get(1).toQuotedWord().getQuote();
+        StringBuilder results = new StringBuilder();
+        for (Node val : values) {
+            if (test(it, template, args.get(0), val)) {
+                results.append(val.toQuotedWord().getQuote());
+            }
+        }
+        return new QuotedWord(results.toString());
+    }
 
-            String results = "";
+    public Node find(Interpreter it, Scope scope, java.util.List<Node> args) {
+        Procedure template = template(it, args.get(0), 1);
 
-            for (int i = 0; i < values.length(); i++) {
-                Character val = values.charAt(i);
-                java.util.List<Node> realizedValues = new ArrayList<>();
-                for (Node n : template.getChildren()) {
-                    if (n.type().equals(NodeType.SYMBOL) && n.toSymbolWord().getSymbol().equals("?")) {
-                        realizedValues.add(Node.quote(String.valueOf(val)));
-                    } else {
-                        realizedValues.add(n);
-                    }
-                }
-                Call run = new Call("run");
-                run.code(it.env().getProcedures().get("run"));
-                run.addChild(new List(realizedValues));
-                results += it.eval(run).toString();
+        for (Node val : elements(args.get(1))) {
+            if (test(it, template, args.get(0), val)) {
+                return val;
             }
-            return new QuotedWord(results);
-
-        } else {
-            throw new NodeTypeException(args.get(1), args.get(1).type(), NodeType.LIST, NodeType.QUOTE);
         }
+
+        return Node.nil();
     }
 
-    public Node filter(Scope scope, java.util.List<Node> args) {
+    /**
+     * Combines the elements from the right, ?1 is an element and ?2 the
+     * combination of the elements after it.
+     */
+    public Node reduce(Interpreter it, Scope scope, java.util.List<Node> args) {
+        Procedure template = template(it, args.get(0), 2);
+        java.util.List<Node> values = elements(args.get(1));
 
-        Node template = Node.none();
+        if (values.isEmpty()) {
+            return Node.nil();
+        }
 
-        if (args.get(0).type().equals(NodeType.LIST)) {
-            template = args.get(0).toList();
-        } else {
-            throw new NodeTypeException(args.get(0), args.get(0).type(), NodeType.LIST);
+        Node result = values.get(values.size() - 1);
+        for (int i = values.size() - 2; i >= 0; i--) {
+            result = apply(it, template, values.get(i), result);
         }
+        return result;
+    }
 
-        if (args.get(1).type().equals(NodeType.LIST)) {
-            Node values = args.get(1).toList();
+    /**
+     * Calls the template with every combination of the elements of the given
+     * lists, the last list varying fastest. ?1 is an element of the first
+     * list, ?2 one of the second...
+     */
+    public Node crossmap(Interpreter it, Scope scope, java.util.List<Node> args) {
+        if (!args.get(1).type().equals(NodeType.LIST)) {
+            throw new NodeTypeException(args.get(1), args.get(1).type(), NodeType.LIST);
+        }
 
-            java.util.List<Node> results = new ArrayList<>();
+        java.util.List<java.util.List<Node>> lists = new ArrayList<>();
+        for (Node values : args.get(1).getChildren()) {
+            lists.add(elements(values));
+        }
+        Procedure template = template(it, args.get(0), lists.size());
 
-            for (int i = 0; i < values.getChildren().size(); i++) {
-                Node val = values.getChildren().get(i);
-                java.util.List<Node> realizedValues = new ArrayList<>();
-                for (Node n : template.getChildren()) {
-                    if (n.type().equals(NodeType.SYMBOL) && n.toSymbolWord().getSymbol().equals("?")) {
-                        realizedValues.add(val);
-                    } else {
-                        realizedValues.add(n);
-                    }
-                }
-                Call run = new Call("run");
-                run.code(it.env().getProcedures().get("run"));
-                run.addChild(new List(realizedValues));
-                Node result = it.eval(run);
+        java.util.List<Node> results = new ArrayList<>();
+        for (java.util.List<Node> values : lists) {
+            if (values.isEmpty()) {
+                return new List(results);
+            }
+        }
 
-                if (!result.type().equals(NodeType.BOOLEAN)) {
-                    throw new NodeTypeException(template, result.type(), NodeType.BOOLEAN);
-                }
+        int[] index = new int[lists.size()];
+        Node[] inputs = new Node[lists.size()];
+        int k = 0;
+        while (k >= 0) {
+            for (int i = 0; i < inputs.length; i++) {
+                inputs[i] = lists.get(i).get(index[i]);
+            }
+            results.add(Node.symbol(apply(it, template, inputs).toString()));
 
-                if (result.toBooleanWord().getBoolean()) {
-                    results.add(val);
-                }
+            k = lists.size() - 1;
+            while (k >= 0 && ++index[k] == lists.get(k).size()) {
+                index[k] = 0;
+                k--;
             }
-            return new List(results);
+        }
+        return new List(results);
+    }
 
-        } else if (args.get(1).type().equals(NodeType.QUOTE)) {
-            String values = args.get(1).toQuotedWord().getQuote();
+    public Node foreach(Interpreter it, Scope scope, java.util.List<Node> args) {
+        Procedure template = template(it, args.get(1), 1);
 
-            String results = "";
+        for (Node val : elements(args.get(0))) {
+            apply(it, template, val);
+        }
 
-            for (int i = 0; i < values.length(); i++) {
-                Character val = values.charAt(i);
-                java.util.List<Node> realizedValues = new ArrayList<>();
-                for (Node n : template.getChildren()) {
-                    if (n.type().equals(NodeType.SYMBOL) && n.toSymbolWord().getSymbol().equals("?")) {
-                        realizedValues.add(Node.symbol("\""+String.valueOf(val)));
-                    } else {
-                        realizedValues.add(n);
-                    }
-                }
-                Call run = new Call("run");
-                run.code(it.env().getProcedures().get("run"));
-                run.addChild(new List(realizedValues));
-                Node result = it.eval(run);
+        return Node.none();
+    }
 
-                if (!result.type().equals(NodeType.BOOLEAN)) {
-                    throw new NodeTypeException(template, result.type(), NodeType.BOOLEAN);
-                }
+    /**
+     * Like map, but the elements of a list are run in parallel on forks of the
+     * interpreter. The template may read variables and call procedures, but
+     * must not define procedures. Results are in the order of the values.
+     */
+    public Node pmap(Interpreter it, Scope scope, java.util.List<Node> args) {
+        if (!args.get(1).type().equals(NodeType.LIST)) {
+            return map(it, scope, args);
+        }
 
-                if (result.toBooleanWord().getBoolean()) {
-                    results += val;
-                }
-            }
-            return new QuotedWord(results);
+        Procedure template = template(it, args.get(0), 1);
+        java.util.List<Node> values = args.get(1).getChildren();
+        Node[] results = new Node[values.size()];
 
-        } else {
-            throw new NodeTypeException(args.get(1), args.get(1).type(), NodeType.LIST, NodeType.QUOTE);
-        }
+        it.parallel(values.size(), (worker, i) -> {
+            results[i] = Node.symbol(apply(worker, template, values.get(i)).toString());
+        });
+        return new List(Arrays.asList(results));
     }
 
-    public Node find(Scope scope, java.util.List<Node> args) {
-        Node template = Node.none();
-
-        if (args.get(0).type().equals(NodeType.LIST)) {
-            template = args.get(0).toList();
-        } else {
-            throw new NodeTypeException(args.get(0), args.get(0).type(), NodeType.LIST);
+    /**
+     * Like filter, but the elements of a list are tested in parallel. See pmap.
+     */
+    public Node pfilter(Interpreter it, Scope scope, java.util.List<Node> args) {
+        if (!args.get(1).type().equals(NodeType.LIST)) {
+            return filter(it, scope, args);
         }
 
-        if (args.get(1).type().equals(NodeType.LIST)) {
-            Node values = args.get(1).toList();
-
-            for (int i = 0; i < values.getChildren().size(); i++) {
-                Node val = values.getChildren().get(i);
-                java.util.List<Node> realizedValues = new ArrayList<>();
-                for (Node n : template.getChildren()) {
-                    if (n.type().equals(NodeType.SYMBOL) && n.toSymbolWord().getSymbol().equals("?")) {
-                        realizedValues.add(val);
-                    } else {
-                        realizedValues.add(n);
-                    }
-                }
-                Call run = new Call("run");
-                run.code(it.env().getProcedures().get("run"));
-                run.addChild(new List(realizedValues));
-                Node result = it.eval(run);
+        Procedure template = template(it, args.get(0), 1);
+        java.util.List<Node> values = args.get(1).getChildren();
+        boolean[] keep = new boolean[values.size()];
 
-                if (!result.type().equals(NodeType.BOOLEAN)) {
-                    throw new NodeTypeException(template, result.type(), NodeType.BOOLEAN);
-                }
+        it.parallel(values.size(), (worker, i) -> {
+            keep[i] = test(worker, template, args.get(0), values.get(i));
+        });
 
-                if (result.toBooleanWord().getBoolean()) {
-                    return val;
-                }
+        java.util.List<Node> results = new ArrayList<>();
+        for (int i = 0; i < keep.length; i++) {
+            if (keep[i]) {
+                results.add(values.get(i));
             }
+        }
+        return new List(results);
+    }
 
-        } else if (args.get(1).type().equals(NodeType.QUOTE)) {
-            String values = args.get(1).toQuotedWord().getQuote();
-
-            for (int i = 0; i < values.length(); i++) {
-                Character val = values.charAt(i);
-                java.util.List<Node> realizedValues = new ArrayList<>();
-                for (Node n : template.getChildren()) {
-                    if (n.type().equals(NodeType.SYMBOL) && n.toSymbolWord().getSymbol().equals("?")) {
-                        realizedValues.add(Node.symbol("\""+String.valueOf(val)));
-                    } else {
-                        realizedValues.add(n);
-                    }
-                }
-                Call run = new Call("run");
-                run.code(it.env().getProcedures().get("run"));
-                run.addChild(new List(realizedValues));
-                Node result = it.eval(run);
+    /**
+     * Compiles a template list into a procedure with the inputs ?, ?1 ... ?n,
+     * where ? is the same as ?1. The reader reads the slots as variables, so
+     * the values are never put back into the template and read again. The
+     * procedure is kept on the list, so a template is read and compiled once
+     * as long as neither it nor the procedures change.
+     */
+    private Procedure template(Interpreter it, Node template, int arity) {
+        if (!template.type().equals(NodeType.LIST)) {
+            throw new NodeTypeException(template, template.type(), NodeType.LIST);
+        }
 
-                if (!result.type().equals(NodeType.BOOLEAN)) {
-                    throw new NodeTypeException(template, result.type(), NodeType.BOOLEAN);
-                }
+        List list = template.toList();
+        int epoch = it.env().epoch();
+        Procedure cached = list.template(epoch, arity);
+        if (cached != null) {
+            return cached;
+        }
 
-                if (result.toBooleanWord().getBoolean()) {
-                    return Node.quote(String.valueOf(val));
-                }
-            }
+        java.util.List<String> slots = new ArrayList<>();
+        slots.add("?");
+        for (int i = 1; i <= arity; i++) {
+            slots.add("?" + i);
+        }
+
+        Procedure procedure = new Procedure("template");
+        procedure.setArgs(slots);
+        procedure.addChildren(it.parse(list));
+        // Templates defining procedures have to be read every time
+        if (it.env().epoch() == epoch) {
+            list.template(procedure, epoch, arity);
+        }
+        return procedure;
+    }
 
+    private java.util.List<Node> elements(Node values) {
+        if (values.type().equals(NodeType.LIST)) {
+            return values.getChildren();
+        } else if (values.type().equals(NodeType.QUOTE)) {
+            String quote = values.toQuotedWord().getQuote();
+            java.util.List<Node> elements = new ArrayList<>(quote.length());
+            for (int i = 0; i < quote.length(); i++) {
+                elements.add(Node.quote(String.valueOf(quote.charAt(i))));
+            }
+            return elements;
         } else {
-            throw new NodeTypeException(args.get(1), args.get(1).type(), NodeType.LIST, NodeType.QUOTE);
+            throw new NodeTypeException(values, values.type(), NodeType.LIST, NodeType.QUOTE);
         }
-        
-//        Node template = Node.none();
-//        Node values = Node.none();
-//
-//        if (args.get(0).type().equals(NodeType.LIST)) {
-//            template = args.get(0).toList();
-//        } else {
-//            throw new NodeTypeException(args.get(0), args.get(0).type(), NodeType.LIST);
-//        }
-//
-//        if (args.get(1).type().equals(NodeType.LIST)) {
-//            values = args.get(1).toList();
-//        } else {
-//            throw new NodeTypeException(args.get(1), args.get(1).type(), NodeType.LIST);
-//        }
-//
-//        for (int i = 0; i < values.getChildren().size(); i++) {
-//            Node val = values.getChildren().get(i);
-//            java.util.List<Node> realizedValues = new ArrayList<>();
-//            for (Node n : template.getChildren()) {
-//                if (n.type().equals(NodeType.SYMBOL) && n.toSymbolWord().getSymbol().equals("?")) {
-//                    realizedValues.add(val);
-//                } else {
-//                    realizedValues.add(n);
-//                }
-//            }
-//            Call run = new Call("run");
-//            run.addChild(new List(realizedValues));
-//            Node result = it.eval(run);
-//
-//            if (!result.type().equals(NodeType.BOOLEAN)) {
-//                throw new NodeTypeException(template, result.type(), NodeType.BOOLEAN);
-//            }
-//
-//            if (result.toBooleanWord().getBoolean()) {
-//                return val;
-//            }
-//        }
+    }
 
-        return Node.nil();
+    // The slots get members of lists as the words they are read as in code,
+    // as when they were put into the template
+    private Node apply(Interpreter interpreter, Procedure template, Node... values) {
+        Node[] inputs = new Node[values.length + 1];
+        for (int i = 0; i < values.length; i++) {
+            inputs[i + 1] = Node.literal(values[i]);
+        }
+        inputs[0] = inputs[1];
+        return interpreter.apply(template, inputs);
+    }
+
+    private boolean test(Interpreter interpreter, Procedure template, Node source, Node val) {
+        Node result = apply(interpreter, template, val);
+
+        if (!result.type().equals(NodeType.BOOLEAN)) {
+            throw new NodeTypeException(source, result.type(), NodeType.BOOLEAN);
+        }
+
+        return result.toBooleanWord().getBoolean();
     }
 
     @Override
     public Interpreter registerProcedures(Interpreter interpreter) {
-        this.it = interpreter;
-
-        it.env().define(new Procedure("map", (scope, val) -> this.map(scope, val), "template", "values"));
-        it.env().define(new Procedure("filter", (scope, val) -> this.filter(scope, val), "template", "values"));
-        it.env().define(new Procedure("find", (scope, val) -> this.find(scope, val), "template", "values"));
 
-        return it;
+        interpreter.env().define(new Procedure("map", (it, scope, val) -> this.map(it, scope, val), "template", "values"));
+        interpreter.env().define(new Procedure("map.se", (it, scope, val) -> this.mapse(it, scope, val), "template", "values"));
+        interpreter.env().define(new Procedure("filter", (it, scope, val) -> this.filter(it, scope, val), "template", "values"));
+        interpreter.env().define(new Procedure("find", (it, scope, val) -> this.find(it, scope, val), "template", "values"));
+        interpreter.env().define(new Procedure("reduce", (it, scope, val) -> this.reduce(it, scope, val), "template", "values"));
+        interpreter.env().define(new Procedure("crossmap", (it, scope, val) -> this.crossmap(it, scope, val), "template", "lists"));
+        interpreter.env().define(new Procedure("foreach", (it, scope, val) -> this.foreach(it, scope, val), "values", "template"));
+        interpreter.env().define(new Procedure("pmap", (it, scope, val) -> this.pmap(it, scope, val), "template", "values"));
+        interpreter.env().define(new Procedure("pfilter", (it, scope, val) -> this.pfilter(it, scope, val), "template", "values"));
+
+        return interpreter;
     }
 }
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.runtime.procedures.builtin;
+
+import ch.uprisesoft.yali.ast.node.Node;
+import ch.uprisesoft.yali.ast.node.Procedure;
+import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
+import ch.uprisesoft.yali.runtime.procedures.ProcedureProvider;
+import ch.uprisesoft.yali.scope.Scope;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Saves the workspace to a binary image and loads it again, see
+ * WorkspaceFile.
+ *
+ * @author rma
+ */
+public class Workspace implements ProcedureProvider {
+
+
+    public Node save(Interpreter it, Scope scope, java.util.List<Node> args) {
+        try {
+            it.save(file(args.get(0)));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return Node.none();
+    }
+
+    public Node load(Interpreter it, Scope scope, java.util.List<Node> args) {
+        try {
+            it.load(file(args.get(0)));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return Node.none();
+    }
+
+    private static Path file(Node name) {
+        return Paths.get(name.toString());
+    }
+
+    @Override
+    public Interpreter registerProcedures(Interpreter interpreter) {
+
+        interpreter.env().define(new Procedure("save", (it, scope, val) -> this.save(it, scope, val), "file"));
+        interpreter.env().define(new Procedure("load", (it, scope, val) -> this.load(it, scope, val), "file"));
+
+        return interpreter;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.runtime.vm;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compiled blocks by their text, for lists that are built while running and
+ * then run, so equal lists are read and compiled once even though each is a
+ * new node. A block reads differently when procedures change, so an entry
+ * is only found in the procedure epoch it was compiled in. The least
+ * recently used blocks are dropped first.
+ *
+ * Lists and arrays in a block can be changed while it runs (setitem), so
+ * each hit gets its own copies of them and equal lists never share one.
+ * A cache belongs to one interpreter and the forks it runs work on.
+ *
+ * @author rma
+ */
+public class BlockCache {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final int capacity;
+    private final Map<Key, Chunk> chunks;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public BlockCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity number of blocks kept, 0 to keep none
+     */
+    public BlockCache(int capacity) {
+        this.capacity = capacity;
+        this.chunks = new LinkedHashMap<Key, Chunk>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Chunk> eldest) {
+                return size() > BlockCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Chunk compiled from the text in the given epoch, null if there is none.
+     */
+    public Chunk get(String source, int epoch) {
+        if (capacity == 0) {
+            return null;
+        }
+
+        Chunk chunk;
+        synchronized (this) {
+            chunk = chunks.get(new Key(source, epoch));
+        }
+        if (chunk == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return chunk.copy();
+    }
+
+    /**
+     * Keeps a copy of the chunk, so the lists the caller runs it with are
+     * not the ones handed out later.
+     */
+    public void put(String source, int epoch, Chunk chunk) {
+        if (capacity == 0) {
+            return;
+        }
+
+        Chunk copy = chunk.copy();
+        synchronized (this) {
+            chunks.put(new Key(source, epoch), copy);
+        }
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public synchronized int size() {
+        return chunks.size();
+    }
+
+    public synchronized void clear() {
+        chunks.clear();
+    }
+
+    private static final class Key {
+
+        private final String source;
+        private final int epoch;
+
+        Key(String source, int epoch) {
+            this.source = source;
+            this.epoch = epoch;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * source.hashCode() + epoch;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return epoch == other.epoch && source.equals(other.source);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.runtime.vm;
+
+import ch.uprisesoft.yali.ast.node.Array;
+import ch.uprisesoft.yali.ast.node.Call;
+import ch.uprisesoft.yali.ast.node.List;
+import ch.uprisesoft.yali.ast.node.Node;
+import ch.uprisesoft.yali.ast.node.NodeType;
+
+/**
+ * Compiled form of a procedure body or a list of statements.
+ *
+ * @author rma
+ */
+public class Chunk {
+
+    private final String name;
+    private final int[] code;
+    private final Node[] constants;
+    private final String[] names;
+    private final Call[] calls;
+    private final int maxStack;
+    private final int loops;
+    private final String[] slots;
+    private final int[] params;
+
+    // Whether any constant is a list or an array, which can be changed
+    private final boolean mutable;
+
+    public Chunk(String name, int[] code, Node[] constants, String[] names, Call[] calls, int maxStack, int loops, String[] slots, int[] params) {
+        this.name = name;
+        this.code = code;
+        this.constants = constants;
+        this.names = names;
+        this.calls = calls;
+        this.maxStack = maxStack;
+        this.loops = loops;
+        this.slots = slots;
+        this.params = params;
+
+        boolean lists = false;
+        for (Node constant : constants) {
+            lists |= constant.type() == NodeType.LIST || constant.type() == NodeType.ARRAY;
+        }
+        this.mutable = lists;
+    }
+
+    /**
+     * The same code with its own copies of the lists and arrays it has as
+     * constants, nested ones included. The chunk itself if it has none.
+     */
+    Chunk copy() {
+        if (!mutable) {
+            return this;
+        }
+
+        Node[] copies = new Node[constants.length];
+        for (int i = 0; i < constants.length; i++) {
+            copies[i] = copy(constants[i]);
+        }
+        return new Chunk(name, code, copies, names, calls, maxStack, loops, slots, params);
+    }
+
+    private static Node copy(Node node) {
+        switch (node.type()) {
+            case LIST:
+                List list = new List();
+                for (Node child : node.getChildren()) {
+                    list.addChild(copy(child));
+                }
+                return list;
+            case ARRAY:
+                Array array = node.toArray();
+                Array copy = new Array(array.size(), array.origin());
+                for (int i = 0; i < array.size(); i++) {
+                    copy.set(array.origin() + i, copy(array.get(array.origin() + i)));
+                }
+                return copy;
+            default:
+                return node;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int[] code() {
+        return code;
+    }
+
+    public Node constant(int index) {
+        return constants[index];
+    }
+
+    public String name(int index) {
+        return names[index];
+    }
+
+    public Call call(int index) {
+        return calls[index];
+    }
+
+    public int maxStack() {
+        return maxStack;
+    }
+
+    public int loops() {
+        return loops;
+    }
+
+    /**
+     * Names of the variables of a procedure scope that are kept in slots.
+     */
+    public String[] slots() {
+        return slots;
+    }
+
+    /**
+     * Slot of each parameter, in order of the parameters.
+     */
+    public int[] params() {
+        return params;
+    }
+
+    public String disassemble() {
+        StringBuilder sb = new StringBuilder();
+        int pc = 0;
+        while (pc < code.length) {
+            int op = code[pc];
+            sb.append(String.format("%04d ", pc)).append(OpCode.name(op));
+            switch (op) {
+                case OpCode.CONST:
+                case OpCode.RAISE:
+                    sb.append(" ").append(constants[code[pc + 1]]);
+                    break;
+                case OpCode.LOAD:
+                    sb.append(" ").append(names[code[pc + 1]]);
+                    break;
+                case OpCode.CALL:
+                case OpCode.TAILCALL:
+                    sb.append(" ").append(calls[code[pc + 1]].name()).append(" ").append(code[pc + 2]);
+                    break;
+                case OpCode.LOAD_LOCAL:
+                case OpCode.STORE_LOCAL:
+                    sb.append(" ").append(code[pc + 1]).append(" ").append(names[code[pc + 2]]);
+                    break;
+                default:
+                    for (int i = 1; i <= OpCode.operands(op); i++) {
+                        sb.append(" ").append(code[pc + i]);
+                    }
+            }
+            sb.append("\n");
+            pc += 1 + OpCode.operands(op);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "chunk " + name + " (" + code.length + ")";
+    }
+}
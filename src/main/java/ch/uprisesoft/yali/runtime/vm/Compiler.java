@@ -0,0 +1,393 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.runtime.vm;
+
+import ch.uprisesoft.yali.ast.node.Call;
+import ch.uprisesoft.yali.ast.node.Node;
+import ch.uprisesoft.yali.ast.node.NodeType;
+import ch.uprisesoft.yali.ast.node.Procedure;
+import ch.uprisesoft.yali.runtime.Diagnostics;
+import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
+import ch.uprisesoft.yali.scope.Scope;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lowers procedure bodies and statement lists to chunks for the virtual
+ * machine.
+ *
+ * if, ifelse and repeat with literal blocks are compiled to jumps, output and
+ * stop to returns. Everything else becomes a call. A compiler instance is used
+ * for one chunk only.
+ *
+ * In procedures, parameters and variables declared with local get a slot in
+ * the procedure scope. Their references compile to slot accesses, which still
+ * fall back to the dynamic lookup as long as the local is not declared.
+ *
+ * @author rma
+ */
+public class Compiler {
+
+    private static final Logger logger = LoggerFactory.getLogger(Compiler.class);
+
+    private final Interpreter it;
+
+    private int[] code = new int[32];
+    private int pc = 0;
+    private java.util.List<Node> constants = new ArrayList<>();
+    private java.util.List<String> names = new ArrayList<>();
+    private Map<String, Integer> nameIndex = new HashMap<>();
+    private java.util.List<Call> calls = new ArrayList<>();
+    private int depth = 0;
+    private int maxDepth = 0;
+    private int loops = 0;
+    private java.util.List<String> slots = new ArrayList<>();
+    private int[] params = new int[0];
+    private boolean frame = false;
+
+    public Compiler(Interpreter it) {
+        this.it = it;
+    }
+
+    public Chunk compile(Procedure procedure) {
+        frame = true;
+        params = new int[procedure.getArity()];
+        for (int i = 0; i < params.length; i++) {
+            params[i] = slot(procedure.getArgs().get(i));
+        }
+        return compile(procedure.getName(), procedure.getChildren());
+    }
+
+    public Chunk compile(String name, java.util.List<Node> statements) {
+        statements(statements);
+        emit(OpCode.RETURN);
+        pop(1);
+
+        if (frame) {
+            tailcalls();
+        }
+
+        Chunk chunk = new Chunk(
+                name,
+                Arrays.copyOf(code, pc),
+                constants.toArray(new Node[constants.size()]),
+                names.toArray(new String[names.size()]),
+                calls.toArray(new Call[calls.size()]),
+                maxDepth,
+                loops,
+                slots.toArray(new String[slots.size()]),
+                params
+        );
+
+        if (Diagnostics.TRACE && logger.isDebugEnabled()) {
+            logger.debug("(Compiler) " + chunk + "\n" + chunk.disassemble());
+        }
+
+        return chunk;
+    }
+
+    // Leaves the value of the last statement on the stack
+    private void statements(java.util.List<Node> statements) {
+        if (statements.isEmpty()) {
+            emit(OpCode.CONST, constant(Node.none()));
+            push(1);
+            return;
+        }
+
+        for (int i = 0; i < statements.size(); i++) {
+            if (i > 0) {
+                emit(OpCode.POP);
+                pop(1);
+            }
+            statement(statements.get(i));
+        }
+    }
+
+    private void statement(Node node) {
+        // Only procedure calls are allowed as statements. The error is
+        // raised when the statement is reached, as the tree walker does.
+        if (!node.type().equals(NodeType.PROCCALL)) {
+            emit(OpCode.RAISE, constant(node));
+            push(1);
+            return;
+        }
+        expression(node);
+    }
+
+    private void expression(Node node) {
+        switch (node.type()) {
+            case PROCCALL:
+                call(node.toCall());
+                break;
+            case REFERENCE: {
+                String name = node.toReferenceWord().getReference();
+                int slot = slotOf(name);
+                if (slot >= 0) {
+                    emit(OpCode.LOAD_LOCAL, slot, name(name));
+                } else {
+                    emit(OpCode.LOAD, name(name));
+                }
+                push(1);
+                break;
+            }
+            default:
+                emit(OpCode.CONST, constant(node));
+                push(1);
+        }
+    }
+
+    private void call(Call call) {
+        Procedure procedure = it.env().getProcedures().get(call.name());
+        java.util.List<Node> args = call.getChildren();
+
+        if (procedure != null && (procedure.isNative() || procedure.isMacro())) {
+            switch (call.name()) {
+                case "if":
+                    if (args.size() == 2 && ifexpr(args.get(0), block(args.get(1)), null, false)) {
+                        return;
+                    }
+                    break;
+                case "ifelse":
+                    if (args.size() == 3 && ifexpr(args.get(0), block(args.get(1)), block(args.get(2)), true)) {
+                        return;
+                    }
+                    break;
+                case "repeat":
+                    if (args.size() == 2 && repeat(args.get(0), block(args.get(1)))) {
+                        return;
+                    }
+                    break;
+                case "output":
+                    if (args.size() == 1) {
+                        expression(args.get(0));
+                        ret();
+                        return;
+                    }
+                    break;
+                case "stop":
+                    if (args.isEmpty()) {
+                        emit(OpCode.CONST, constant(Node.nil()));
+                        push(1);
+                        ret();
+                        return;
+                    }
+                    break;
+                case "make":
+                    if (args.size() == 2 && slotOf(literal(args.get(0))) >= 0) {
+                        String name = literal(args.get(0));
+                        expression(args.get(1));
+                        emit(OpCode.STORE_LOCAL, slotOf(name), name(name));
+                        return;
+                    }
+                    break;
+                case "local":
+                case "localmake":
+                    // Declared locals get a slot, the call itself stays
+                    if (frame && !args.isEmpty() && literal(args.get(0)) != null) {
+                        slot(literal(args.get(0)));
+                    }
+                    break;
+            }
+        }
+
+        for (Node arg : args) {
+            expression(arg);
+        }
+        calls.add(call);
+        emit(OpCode.CALL, calls.size() - 1, args.size());
+        pop(args.size());
+        push(1);
+    }
+
+    private boolean ifexpr(Node condition, java.util.List<Node> iftrue, java.util.List<Node> iffalse, boolean withElse) {
+        if (iftrue == null || (withElse && iffalse == null)) {
+            return false;
+        }
+
+        expression(condition);
+        emit(OpCode.JUMP_IF_FALSE, 0);
+        pop(1);
+        int toElse = pc - 1;
+
+        statements(iftrue);
+        emit(OpCode.JUMP, 0);
+        pop(1);
+        int toEnd = pc - 1;
+
+        patch(toElse, pc);
+        if (withElse) {
+            statements(iffalse);
+        } else {
+            emit(OpCode.CONST, constant(Node.nil()));
+            push(1);
+        }
+        patch(toEnd, pc);
+
+        return true;
+    }
+
+    // The value of a repeat is the value of the last run of its block, nil
+    // if it never ran
+    private boolean repeat(Node control, java.util.List<Node> block) {
+        if (block == null) {
+            return false;
+        }
+
+        int slot = loops++;
+
+        expression(control);
+        emit(OpCode.REPEAT_INIT, slot);
+        pop(1);
+
+        emit(OpCode.CONST, constant(Node.nil()));
+        push(1);
+
+        int loop = pc;
+        emit(OpCode.REPEAT_NEXT, slot, 0);
+        int toEnd = pc - 1;
+        emit(OpCode.POP);
+        pop(1);
+
+        statements(block);
+        emit(OpCode.JUMP, loop);
+
+        patch(toEnd, pc);
+
+        return true;
+    }
+
+    // Marks calls whose value is returned right away, following jumps
+    private void tailcalls() {
+        int at = 0;
+        while (at < pc) {
+            int op = code[at];
+            int next = at + 1 + OpCode.operands(op);
+            if (op == OpCode.CALL) {
+                int target = next;
+                while (code[target] == OpCode.JUMP && code[target + 1] > target) {
+                    target = code[target + 1];
+                }
+                if (code[target] == OpCode.RETURN) {
+                    code[at] = OpCode.TAILCALL;
+                }
+            }
+            at = next;
+        }
+    }
+
+    // Returns the value on top of the stack. Code after it is unreachable,
+    // but still expects the statement to have left a value.
+    private void ret() {
+        emit(OpCode.RETURN);
+        pop(1);
+        push(1);
+    }
+
+    /**
+     * Reads a literal block. Returns null if the node is no list or does not
+     * consist of procedure calls only, in which case it is left to the
+     * procedure at runtime.
+     */
+    private java.util.List<Node> block(Node node) {
+        if (!node.type().equals(NodeType.LIST)) {
+            return null;
+        }
+
+        java.util.List<Node> statements;
+        try {
+            statements = it.parse(node.toList());
+        } catch (RuntimeException ex) {
+            logger.debug("(Compiler) block not inlined: {}", ex.getMessage());
+            return null;
+        }
+
+        for (Node statement : statements) {
+            if (!statement.type().equals(NodeType.PROCCALL)) {
+                return null;
+            }
+        }
+        return statements;
+    }
+
+    // Variable name given as quoted word, null for anything else
+    private String literal(Node node) {
+        if (node.type().equals(NodeType.QUOTE)) {
+            return node.toQuotedWord().getQuote();
+        }
+        return null;
+    }
+
+    private int slot(String name) {
+        String symbol = Scope.symbol(name);
+        int index = slots.indexOf(symbol);
+        if (index < 0) {
+            slots.add(symbol);
+            index = slots.size() - 1;
+        }
+        return index;
+    }
+
+    private int slotOf(String name) {
+        if (!frame || name == null) {
+            return -1;
+        }
+        return slots.indexOf(Scope.symbol(name));
+    }
+
+    private int constant(Node node) {
+        constants.add(node);
+        return constants.size() - 1;
+    }
+
+    private int name(String name) {
+        name = Scope.symbol(name);
+        Integer index = nameIndex.get(name);
+        if (index == null) {
+            names.add(name);
+            index = names.size() - 1;
+            nameIndex.put(name, index);
+        }
+        return index;
+    }
+
+    private void emit(int... words) {
+        if (pc + words.length > code.length) {
+            code = Arrays.copyOf(code, Math.max(code.length * 2, pc + words.length));
+        }
+        for (int word : words) {
+            code[pc++] = word;
+        }
+    }
+
+    private void patch(int at, int target) {
+        code[at] = target;
+    }
+
+    private void push(int n) {
+        depth += n;
+        if (depth > maxDepth) {
+            maxDepth = depth;
+        }
+    }
+
+    private void pop(int n) {
+        depth -= n;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.runtime.vm;
+
+import ch.uprisesoft.yali.ast.node.Node;
+import java.util.Arrays;
+
+/**
+ * Activation of a chunk on the frame stack of the virtual machine.
+ *
+ * @author rma
+ */
+class Frame {
+
+    Chunk chunk;
+    Node[] stack;
+    long[] counters;
+    int pc;
+    int sp;
+
+    // Frame of a procedure call, as opposed to top level code and blocks
+    boolean procedure;
+
+    // Scopes pushed for this frame, popped when it returns
+    int scopes;
+
+    Frame(Chunk chunk, boolean procedure) {
+        this.chunk = chunk;
+        this.stack = new Node[chunk.maxStack()];
+        this.counters = new long[chunk.loops()];
+        this.procedure = procedure;
+    }
+
+    /**
+     * Reuses the frame for a tail call.
+     */
+    void reset(Chunk chunk) {
+        this.chunk = chunk;
+        if (stack.length < chunk.maxStack()) {
+            stack = new Node[chunk.maxStack()];
+        } else {
+            Arrays.fill(stack, 0, sp, null);
+        }
+        if (counters.length < chunk.loops()) {
+            counters = new long[chunk.loops()];
+        }
+        pc = 0;
+        sp = 0;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.runtime.vm;
+
+/**
+ * Instruction set of the virtual machine. Every instruction is one int,
+ * followed by its operands (see the comment on each opcode).
+ *
+ * @author rma
+ */
+public final class OpCode {
+
+    // CONST index: push constant
+    public static final int CONST = 0;
+    // LOAD index: push value of variable
+    public static final int LOAD = 1;
+    // POP: discard top of stack
+    public static final int POP = 2;
+    // CALL index argc: call procedure with the topmost argc values
+    public static final int CALL = 3;
+    // JUMP target
+    public static final int JUMP = 4;
+    // JUMP_IF_FALSE target: pop boolean, jump if false
+    public static final int JUMP_IF_FALSE = 5;
+    // REPEAT_INIT slot: pop integer and store it in loop counter slot
+    public static final int REPEAT_INIT = 6;
+    // REPEAT_NEXT slot target: jump if counter is used up, else decrement
+    public static final int REPEAT_NEXT = 7;
+    // RETURN: return top of stack
+    public static final int RETURN = 8;
+    // RAISE index: statement is no procedure call
+    public static final int RAISE = 9;
+    // LOAD_LOCAL slot index: push slot of current scope, value of variable
+    // if the slot is not defined yet
+    public static final int LOAD_LOCAL = 10;
+    // STORE_LOCAL slot index: store top of stack in slot of current scope,
+    // make variable if the slot is not defined yet
+    public static final int STORE_LOCAL = 11;
+    // TAILCALL index argc: call in tail position, reuses the frame
+    public static final int TAILCALL = 12;
+
+    private static final String[] NAMES = {
+        "CONST", "LOAD", "POP", "CALL", "JUMP", "JUMP_IF_FALSE",
+        "REPEAT_INIT", "REPEAT_NEXT", "RETURN", "RAISE", "LOAD_LOCAL",
+        "STORE_LOCAL", "TAILCALL"
+    };
+
+    private static final int[] OPERANDS = {
+        1, 1, 0, 2, 1, 1, 1, 2, 0, 1, 2, 2, 2
+    };
+
+    private OpCode() {
+    }
+
+    public static String name(int opcode) {
+        return NAMES[opcode];
+    }
+
+    public static int operands(int opcode) {
+        return OPERANDS[opcode];
+    }
+}
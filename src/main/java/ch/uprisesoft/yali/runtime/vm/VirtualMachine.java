@@ -0,0 +1,334 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.runtime.vm;
+
+import ch.uprisesoft.yali.ast.node.Call;
+import ch.uprisesoft.yali.ast.node.Node;
+import ch.uprisesoft.yali.ast.node.NodeType;
+import ch.uprisesoft.yali.ast.node.Procedure;
+import ch.uprisesoft.yali.exception.NodeTypeException;
+import ch.uprisesoft.yali.exception.RecursionException;
+import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
+import ch.uprisesoft.yali.scope.Environment;
+import ch.uprisesoft.yali.scope.Scope;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Stack machine running compiled chunks. User defined procedures are compiled
+ * on their first call and the chunk is kept on the procedure until the
+ * procedure table changes. Native procedures get a scope of their own, macros
+ * run in the scope of the caller, as in the tree walker.
+ *
+ * Calls between user defined procedures do not recurse on the Java stack,
+ * every call gets a frame on the frame stack of the machine instead. Tail
+ * calls reuse the frame of the caller, so tail recursion runs in constant
+ * space. Other recursion is limited by the maximum depth, which raises a
+ * RecursionException.
+ *
+ * @author rma
+ */
+public class VirtualMachine {
+
+    public static final int DEFAULT_MAX_DEPTH = 100000;
+
+    private final Interpreter it;
+    private final Environment env;
+
+    private Frame[] frames = new Frame[16];
+    private int fp = 0;
+    private int depth = 0;
+    private int maxDepth = DEFAULT_MAX_DEPTH;
+    private long calls = 0;
+
+    public VirtualMachine(Interpreter it, Environment env) {
+        this.it = it;
+        this.env = env;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Number of procedure calls run so far, natives included.
+     */
+    public long getCalls() {
+        return calls;
+    }
+
+    public void addCalls(long calls) {
+        this.calls += calls;
+    }
+
+    /**
+     * Runs a chunk in the current scope. Natives running blocks (run, map...)
+     * come back here, so executions nest. Each one only runs its own frames.
+     */
+    public Node execute(Chunk chunk) {
+        int base = fp;
+        push(new Frame(chunk, false));
+        try {
+            return run(base);
+        } catch (StackOverflowError soe) {
+            // Natives running blocks still recurse on the Java stack
+            throw new RecursionException(frames[fp - 1].chunk.getName(), null);
+        } finally {
+            unwind(base);
+        }
+    }
+
+    /**
+     * Calls a user defined procedure from a native, with its inputs bound
+     * as a call from code would.
+     */
+    public Node call(Procedure procedure, Node... args) {
+        Chunk chunk = compiled(procedure);
+        Scope scope = new Scope(procedure.getName(), chunk.slots());
+        int[] params = chunk.params();
+        for (int i = 0; i < params.length && i < args.length; i++) {
+            scope.slot(params[i], args[i]);
+        }
+        calls++;
+
+        env.push(scope);
+        try {
+            return execute(chunk);
+        } finally {
+            env.pop();
+        }
+    }
+
+    private Node run(int base) {
+        Frame frame = frames[fp - 1];
+        Chunk chunk = frame.chunk;
+        int[] code = chunk.code();
+        Node[] stack = frame.stack;
+        int sp = frame.sp;
+        int pc = frame.pc;
+
+        while (true) {
+            int op = code[pc++];
+            switch (op) {
+                case OpCode.CONST:
+                    stack[sp++] = chunk.constant(code[pc++]);
+                    break;
+                case OpCode.LOAD:
+                    stack[sp++] = env.resolve(chunk.name(code[pc++]));
+                    break;
+                case OpCode.POP:
+                    stack[--sp] = null;
+                    break;
+                case OpCode.CALL:
+                case OpCode.TAILCALL: {
+                    Call call = chunk.call(code[pc++]);
+                    int argc = code[pc++];
+                    sp -= argc;
+
+                    Procedure procedure = call.target(env);
+                    calls++;
+
+                    if (procedure.isNative() || procedure.isMacro()) {
+                        Node result = invoke(procedure, stack, sp, argc);
+                        clear(stack, sp, argc);
+                        stack[sp++] = result;
+                        break;
+                    }
+
+                    Chunk callee = compiled(procedure);
+                    Scope scope = new Scope(procedure.getName(), callee.slots());
+                    int[] params = callee.params();
+                    for (int i = 0; i < params.length && i < argc; i++) {
+                        scope.slot(params[i], stack[sp + i]);
+                    }
+                    clear(stack, sp, argc);
+
+                    if (op == OpCode.TAILCALL && frame.procedure) {
+                        // The caller is done, its scope is replaced. What
+                        // of it the callee could still see by dynamic
+                        // scoping moves into the scope of the callee.
+                        scope.inherit(env.pop());
+                        env.push(scope);
+                        frame.sp = sp;
+                        frame.reset(callee);
+                    } else {
+                        if (depth >= maxDepth) {
+                            throw new RecursionException(procedure.getName(), call);
+                        }
+                        frame.pc = pc;
+                        frame.sp = sp;
+
+                        env.push(scope);
+                        frame = new Frame(callee, true);
+                        frame.scopes = 1;
+                        push(frame);
+                        depth++;
+                    }
+
+                    chunk = frame.chunk;
+                    code = chunk.code();
+                    stack = frame.stack;
+                    sp = 0;
+                    pc = 0;
+                    break;
+                }
+                case OpCode.JUMP:
+                    pc = code[pc];
+                    break;
+                case OpCode.JUMP_IF_FALSE: {
+                    Node condition = stack[--sp];
+                    stack[sp] = null;
+                    if (!condition.type().equals(NodeType.BOOLEAN)) {
+                        throw new NodeTypeException(condition, condition.type(), NodeType.BOOLEAN);
+                    }
+                    if (condition.toBooleanWord().getBoolean()) {
+                        pc++;
+                    } else {
+                        pc = code[pc];
+                    }
+                    break;
+                }
+                case OpCode.REPEAT_INIT: {
+                    Node control = stack[--sp];
+                    stack[sp] = null;
+                    if (!control.type().equals(NodeType.INTEGER)) {
+                        throw new NodeTypeException(control, control.type(), NodeType.INTEGER);
+                    }
+                    frame.counters[code[pc++]] = control.toIntegerWord().count();
+                    break;
+                }
+                case OpCode.REPEAT_NEXT: {
+                    int slot = code[pc++];
+                    if (frame.counters[slot] <= 0) {
+                        pc = code[pc];
+                    } else {
+                        frame.counters[slot]--;
+                        pc++;
+                    }
+                    break;
+                }
+                case OpCode.RETURN: {
+                    Node result = stack[sp - 1];
+                    frame.sp = sp;
+                    pop();
+
+                    if (fp == base) {
+                        return result;
+                    }
+
+                    frame = frames[fp - 1];
+                    chunk = frame.chunk;
+                    code = chunk.code();
+                    stack = frame.stack;
+                    sp = frame.sp;
+                    pc = frame.pc;
+                    stack[sp++] = result;
+                    break;
+                }
+                case OpCode.LOAD_LOCAL: {
+                    Node value = env.peek().slot(code[pc++]);
+                    String name = chunk.name(code[pc++]);
+                    stack[sp++] = value != null ? value : env.resolve(name);
+                    break;
+                }
+                case OpCode.STORE_LOCAL: {
+                    Scope scope = env.peek();
+                    int slot = code[pc++];
+                    String name = chunk.name(code[pc++]);
+                    if (scope.slot(slot) != null) {
+                        scope.slot(slot, stack[sp - 1]);
+                    } else {
+                        env.make(name, stack[sp - 1]);
+                    }
+                    break;
+                }
+                case OpCode.RAISE: {
+                    Node statement = chunk.constant(code[pc++]);
+                    throw new NodeTypeException(statement, statement.type(), NodeType.PROCCALL);
+                }
+                default:
+                    throw new IllegalStateException("Unknown opcode " + op + " in " + chunk);
+            }
+        }
+    }
+
+    private Node invoke(Procedure procedure, Node[] stack, int from, int argc) {
+        java.util.List<Node> args = new ArrayList<>(argc);
+        for (int i = from; i < from + argc; i++) {
+            args.add(stack[i]);
+        }
+
+        if (procedure.isMacro()) {
+            return procedure.getNativeCall().apply(it, env.peek(), args);
+        }
+
+        env.push(new Scope(procedure.getName()));
+        try {
+            return procedure.getNativeCall().apply(it, env.peek(), args);
+        } finally {
+            env.pop();
+        }
+    }
+
+    private static void clear(Node[] stack, int from, int argc) {
+        for (int i = from; i < from + argc; i++) {
+            stack[i] = null;
+        }
+    }
+
+    private void push(Frame frame) {
+        if (fp == frames.length) {
+            frames = Arrays.copyOf(frames, frames.length * 2);
+        }
+        frames[fp++] = frame;
+    }
+
+    private void pop() {
+        Frame frame = frames[--fp];
+        frames[fp] = null;
+        for (int i = 0; i < frame.scopes; i++) {
+            env.pop();
+        }
+        if (frame.procedure) {
+            depth--;
+        }
+    }
+
+    // Counts beyond a long repeat as long as any loop can run
+    // Drops the frames left by an exception
+    private void unwind(int base) {
+        while (fp > base) {
+            pop();
+        }
+    }
+
+    /**
+     * Body of a user defined procedure, compiled for the procedures of this
+     * machine on its first call.
+     */
+    public Chunk compiled(Procedure procedure) {
+        Chunk chunk = procedure.chunk(env.epoch());
+        if (chunk == null) {
+            chunk = new Compiler(it).compile(procedure);
+            procedure.chunk(chunk, env.epoch());
+        }
+        return chunk;
+    }
+}
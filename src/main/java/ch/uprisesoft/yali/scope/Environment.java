@@ -9,12 +9,17 @@ import ch.uprisesoft.yali.ast.node.Call;
 import ch.uprisesoft.yali.ast.node.Node;
 import ch.uprisesoft.yali.ast.node.NodeType;
 import ch.uprisesoft.yali.ast.node.Procedure;
+import ch.uprisesoft.yali.ast.node.WordTable;
 import ch.uprisesoft.yali.exception.NodeTypeException;
+import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
 import ch.uprisesoft.yali.runtime.procedures.FunctionNotFoundException;
+import ch.uprisesoft.yali.runtime.Diagnostics;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,62 +33,101 @@ public class Environment {
 
     private Map<String, Procedure> procedures = new HashMap<>();
     private List<Scope> scopeStack = new ArrayList<>();
-    private List<Call> callStack = new ArrayList<>();
 
-    private Node lastResult = Node.none();
+    // The interpreter running on this environment, given to the natives
+    // called while evaluating nodes
+    private Interpreter interpreter;
 
-    {
+    // A fork shares the procedure table and the scopes below index shared
+    // with the environment it was forked from. Both are only read, the table
+    // is copied on the first change.
+    private int shared = 0;
+    private boolean sharedProcedures = false;
+
+    // Property lists by name. Shared with forks like the procedures.
+    private WordTable<WordTable<Node>> plists = new WordTable<>();
+    private boolean sharedPlists = false;
+
+    // Changes whenever the procedure table changes. Taken from a global
+    // counter, so no two environments share an epoch and bindings cached in
+    // shared nodes (calls, blocks) are never taken for the wrong environment.
+    private static final AtomicInteger epochs = new AtomicInteger();
+    private int epoch = 0;
+
+    public Environment() {
         scopeStack.add(new Scope("global"));
     }
 
-    public void schedule(Call call) {
-
-        Procedure proc = procedures.get(call.name());
-        if (!proc.isMacro()) {
-            push(new Scope(call.name()));
-        }
+    private Environment(Environment parent, String scope) {
+        procedures = parent.procedures;
+        sharedProcedures = true;
+        plists = parent.plists;
+        sharedPlists = true;
+        epoch = parent.epoch;
+        scopeStack.addAll(parent.scopeStack);
+        shared = scopeStack.size();
+        scopeStack.add(new Scope(scope));
+    }
 
-        callStack.add(call);
+    /**
+     * Environment for running code on another thread. It sees the procedures
+     * and variables of this environment as they are now. Variables it makes
+     * and procedures it defines stay in the fork. This environment must not
+     * change while the fork is in use.
+     */
+    public Environment fork() {
+        return new Environment(this, "worker");
     }
 
-    private void unschedule() {
-        Call topCall = callStack.get(callStack.size() - 1);
-        Procedure proc = procedures.get(callStack.get(callStack.size() - 1).name());
-        
-        if (proc.isMacro()) {
-            pop();
-        }
-        
-        callStack.remove(callStack.size() - 1);
+    /**
+     * Environment of a session. Like a fork it sees the procedures and
+     * variables of this environment, which must not change anymore, and
+     * keeps its own ones to itself.
+     */
+    public Environment session() {
+        return new Environment(this, "global");
     }
 
-    public boolean tick() {
-        if (callStack.isEmpty()) {
-            return false;
+    /**
+     * Copy of the procedures, the global variables and the property lists,
+     * taken at the top level. Either one can change without the other one
+     * seeing it. The values themselves are not copied.
+     */
+    public Environment snapshot() {
+        Environment copy = new Environment();
+        copy.procedures = new HashMap<>(procedures);
+        copy.epoch = epoch;
+
+        Scope global = copy.peek();
+        for (Map.Entry<String, Node> variable : globals().entrySet()) {
+            global.store(variable.getKey(), variable.getValue());
         }
 
-        lastResult = apply(callStack.get(callStack.size() - 1));
+        copy.plists = plists;
+        copy.sharedPlists = true;
+        copy.unsharePlists();
+        return copy;
+    }
 
-        System.out.println("TICK!");
-        callStack.remove(callStack.size() - 1);
-        return true;
+    /**
+     * Binds the environment to the interpreter running on it. Every
+     * interpreter has an environment of its own.
+     */
+    public void interpreter(Interpreter interpreter) {
+        this.interpreter = interpreter;
     }
 
-    public Node result() {
-        return lastResult;
+    public Interpreter interpreter() {
+        return interpreter;
     }
 
-    public Node apply(Call call) {
+    public Node apply(Call call, List<Node> args) {
         
-        logger.debug("(FunctionDispatcher) dispatch function " + call.name() + " with scope " + peek().getScopeName());
-
-        if (!procedures.containsKey(call.name())) {
-            throw new FunctionNotFoundException(call.name());
+        if (Diagnostics.TRACE) {
+            logger.debug("(FunctionDispatcher) dispatch function {} with scope {}", call.name(), peek().getScopeName());
         }
 
-        Procedure procedure = procedures.get(call.name());
-
-        callStack.add(call);
+        Procedure procedure = call.target(this);
 
         // TODO check last function call for recursion
         Node result = Node.nil();
@@ -93,46 +137,54 @@ public class Environment {
             push(newScope);
         }
 
-        // TODO differentiate from macros
-        if (procedure.isNative() || procedure.isMacro()) {
-
-            logger.debug("(FunctionDispatcher) native function");
+        try {
+            // TODO differentiate from macros
+            if (procedure.isNative() || procedure.isMacro()) {
 
-            result = procedure.getNativeCall().apply(peek(), call.args());
+                result = procedure.getNativeCall().apply(interpreter, peek(), args);
 
-        } else {
-            logger.debug("(FunctionDispatcher) non-native function");
+            } else {
+                // Parameters are local to the called procedure
+                for (int i = 0; i < procedure.getArity() && i < args.size(); i++) {
+                    peek().define(procedure.getArgs().get(i), args.get(i));
+                }
 
-//            TreeWalkEvaluator evaluator = new TreeWalkEvaluator(this);
+                for (Node line : procedure.getChildren()) {
 
-            for (Node line : procedure.getChildren()) {
+                    // every direct child should be a function call
+                    if (!line.type().equals(NodeType.PROCCALL)) {
+                        throw new NodeTypeException(line, line.type(), NodeType.PROCCALL);
+                    }
 
-                // every direct child should be a function call
-                if (!line.type().equals(NodeType.PROCCALL)) {
-                    throw new NodeTypeException(line, line.type(), NodeType.PROCCALL);
-                }
+                    result = line.evaluate(this);
 
-                // Check if function call is output or stop. If yes, no further
-                // lines will be evaluated
-                if (line.toCall().name().equals("output") || line.toCall().name().equals("stop")) {
-                    logger.debug("(FunctionDispatcher) function " + procedure.getName() + " is cancelled.");
-                    break;
+                    // Check if function call is output or stop. If yes, no further
+                    // lines will be evaluated
+                    if (line.toCall().name().equals("output") || line.toCall().name().equals("stop")) {
+                        if (Diagnostics.TRACE) {
+                            logger.debug("(FunctionDispatcher) function {} is cancelled.", procedure.getName());
+                        }
+                        break;
+                    }
                 }
-
-//                line.accept(evaluator);
-                result = line.evaluate(this);
             }
-        }
-        
-        if (!procedure.isMacro()) {
-            pop();
+        } finally {
+            if (!procedure.isMacro()) {
+                pop();
+            }
         }
 
         return result;
     }
 
     public void define(Procedure function) {
-        procedures.put(function.getName(), function);
+        unshare();
+
+        // The reader defines a procedure twice, once for the header and
+        // once for the body. Only a new procedure changes the table.
+        if (procedures.put(function.getName(), function) != function) {
+            epoch = epochs.incrementAndGet();
+        }
 //        arities.put(function.getName(), function.getArity());
     }
 
@@ -149,13 +201,94 @@ public class Environment {
             throw new FunctionNotFoundException(original);
         }
 
+        unshare();
         procedures.put(alias, procedures.get(original));
+        epoch = epochs.incrementAndGet();
+    }
+
+    private void unshare() {
+        if (sharedProcedures) {
+            procedures = new HashMap<>(procedures);
+            sharedProcedures = false;
+        }
+    }
+
+    /**
+     * Property list of a name, null if it has none.
+     */
+    public WordTable<Node> plist(Node name) {
+        return plists.get(name);
+    }
+
+    public void pprop(Node name, Node property, Node value) {
+        unsharePlists();
+
+        WordTable<Node> plist = plists.get(name);
+        if (plist == null) {
+            plist = new WordTable<>();
+            plists.put(name, plist);
+        }
+        plist.put(property, value);
+    }
+
+    public void remprop(Node name, Node property) {
+        if (plists.get(name) == null) {
+            return;
+        }
+        unsharePlists();
+
+        WordTable<Node> plist = plists.get(name);
+        plist.remove(property);
+        if (plist.isEmpty()) {
+            plists.remove(name);
+        }
+    }
+
+    /**
+     * Names that have a property list.
+     */
+    public List<Node> plistNames() {
+        return plists.words();
+    }
+
+    /**
+     * Variables seen at the top level by lowercase name, the ones of shared
+     * scopes included.
+     */
+    public Map<String, Node> globals() {
+        Map<String, Node> globals = new LinkedHashMap<>();
+        for (int i = 0; i <= shared; i++) {
+            globals.putAll(scopeStack.get(i).variables());
+        }
+        return globals;
+    }
+
+    private void unsharePlists() {
+        if (sharedPlists) {
+            WordTable<WordTable<Node>> copy = new WordTable<>(plists.size());
+            for (Node name : plists.words()) {
+                copy.put(name, new WordTable<>(plists.get(name)));
+            }
+            plists = copy;
+            sharedPlists = false;
+        }
+    }
+
+    public int epoch() {
+        return epoch;
     }
 
     public void push(Scope scope) {
         scopeStack.add(scope);
     }
 
+    /**
+     * Number of scopes on the stack, the global one included.
+     */
+    public int depth() {
+        return scopeStack.size();
+    }
+
     public Scope peek() {
         return scopeStack.get(scopeStack.size() - 1);
     }
@@ -167,29 +300,48 @@ public class Environment {
     }
 
     public void make(String name, Node value) {
+        String key = name.toLowerCase();
 
-        for (int i = scopeStack.size() - 1; i >= 0; i--) {
-            if (scopeStack.get(i).defined(name)) {
-                logger.debug("(Scope) defining variable " + name + " in scope " + scopeStack.get(i).getScopeName());
-                scopeStack.get(i).define(name.toLowerCase(), value);
+        for (int i = scopeStack.size() - 1; i >= shared; i--) {
+            if (scopeStack.get(i).lookup(key) != null) {
+                if (Diagnostics.TRACE) {
+                    logger.debug("(Scope) defining variable {} in scope {}", name, scopeStack.get(i).getScopeName());
+                }
+                scopeStack.get(i).store(key, value);
                 return;
             }
         }
 
-        logger.debug("(Scope) defining variable " + name + " in scope " + scopeStack.get(0).getScopeName());
-        scopeStack.get(0).define(name.toLowerCase(), value);
+        // New variables and the ones of shared scopes go to the bottom scope
+        // of this environment, global or the one of the fork
+        if (Diagnostics.TRACE) {
+            logger.debug("(Scope) defining variable {} in scope {}", name, scopeStack.get(shared).getScopeName());
+        }
+        scopeStack.get(shared).store(key, value);
+    }
+
+    /**
+     * Sets a global variable, also while a procedure with a local or an
+     * input of the same name runs.
+     */
+    public void global(String name, Node value) {
+        scopeStack.get(shared).store(name.toLowerCase(), value);
     }
 
     public void local(String name) {
-        logger.debug("(Scope) Reserve local variable " + name + " in scope " + peek().getScopeName());
+        if (Diagnostics.TRACE) {
+            logger.debug("(Scope) Reserve local variable {} in scope {}", name, peek().getScopeName());
+        }
         peek().local(name.toLowerCase());
     }
 
     public Node resolve(String name) {
+        String key = name.toLowerCase();
 
         for (int i = scopeStack.size() - 1; i >= 0; i--) {
-            if (scopeStack.get(i).defined(name)) {
-                return scopeStack.get(i).resolve(name);
+            Node value = scopeStack.get(i).lookup(key);
+            if (value != null) {
+                return value;
             }
         }
 
@@ -197,9 +349,10 @@ public class Environment {
     }
 
     public Boolean resolveable(String name) {
+        String key = name.toLowerCase();
 
         for (int i = scopeStack.size() - 1; i >= 0; i--) {
-            if (scopeStack.get(i).defined(name)) {
+            if (scopeStack.get(i).lookup(key) != null) {
                 return true;
             }
         }
@@ -17,7 +17,9 @@ package ch.uprisesoft.yali.scope;
 
 import ch.uprisesoft.yali.ast.node.Node;
 import ch.uprisesoft.yali.ast.node.Call;
+import ch.uprisesoft.yali.runtime.Diagnostics;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
 import org.slf4j.Logger;
@@ -31,13 +33,27 @@ public class Scope {
 
     private static final Logger logger = LoggerFactory.getLogger(Scope.class);
 
+    private static final String[] NO_SLOTS = new String[0];
+
     private String scopeName = "";
     private Optional<Scope> enclosingScope = Optional.empty();
-    private Map<String, Node> members = new HashMap<>();
-    
+
+    // Variables known when the scope is created (procedure parameters and
+    // locals) live in slots. Names are interned lowercase symbols, a slot is
+    // null as long as its variable is not defined. Everything else goes to
+    // the members map.
+    private final String[] slotNames;
+    private final Node[] slots;
+    private Map<String, Node> members;
 
     public Scope(String scopeName) {
+        this(scopeName, NO_SLOTS);
+    }
+
+    public Scope(String scopeName, String[] slotNames) {
         this.scopeName = scopeName;
+        this.slotNames = slotNames;
+        this.slots = new Node[slotNames.length];
     }
     
 //    public Scope(Call code, String scopeName) {
@@ -57,11 +73,23 @@ public class Scope {
 //        return code;
 //    }
 
+    /**
+     * Returns the lowercase, interned form of a variable name.
+     */
+    public static String symbol(String name) {
+        return name.toLowerCase().intern();
+    }
+
     public Node resolve(String name) {
-        logger.debug("(Scope) resolving variable " + name + " in scope " + scopeName);
-        if (members.containsKey(name.toLowerCase())) {
-            logger.debug("(Scope) variable " + name + " found");
-            return members.get(name.toLowerCase());
+        if (Diagnostics.TRACE) {
+            logger.debug("(Scope) resolving variable {} in scope {}", name, scopeName);
+        }
+        Node value = lookup(name.toLowerCase());
+        if (value != null) {
+            if (Diagnostics.TRACE) {
+                logger.debug("(Scope) variable {} found", name);
+            }
+            return value;
         } 
 
         return Node.none();
@@ -71,16 +99,92 @@ public class Scope {
         Scope workScope = this;
 
 //        logger.debug("(Scope) defining variable " + name + " in scope " + workScope.scopeName);
-        workScope.members.put(name.toLowerCase(), value);
+        workScope.store(name.toLowerCase(), value);
     }
 
     public void local(String name) {
-        logger.debug("(Scope) Reserve local variable " + name + " in scope " + scopeName);
-        members.put(name.toLowerCase(), Node.none());
+        if (Diagnostics.TRACE) {
+            logger.debug("(Scope) Reserve local variable {} in scope {}", name, scopeName);
+        }
+        store(name.toLowerCase(), Node.none());
     }
 
     public boolean defined(String name) {
-        return members.containsKey(name);
+        return lookup(name.toLowerCase()) != null;
+    }
+
+    public Node slot(int index) {
+        return slots[index];
+    }
+
+    public void slot(int index, Node value) {
+        slots[index] = value;
+    }
+
+    /**
+     * Takes over the variables of the other scope this one does not define.
+     * A tail call replaces the scope of the caller with the one of the
+     * callee this way: what the callee sees is the same, but the scopes do
+     * not pile up.
+     */
+    public void inherit(Scope other) {
+        for (int i = 0; i < other.slots.length; i++) {
+            if (other.slots[i] != null && lookup(other.slotNames[i]) == null) {
+                store(other.slotNames[i], other.slots[i]);
+            }
+        }
+        if (other.members != null) {
+            for (Map.Entry<String, Node> member : other.members.entrySet()) {
+                if (lookup(member.getKey()) == null) {
+                    store(member.getKey(), member.getValue());
+                }
+            }
+        }
+    }
+
+    // Defines the variables of this scope in the other one
+    void copyTo(Scope other) {
+        for (Map.Entry<String, Node> variable : variables().entrySet()) {
+            other.store(variable.getKey(), variable.getValue());
+        }
+    }
+
+    // Variables defined in this scope by lowercase name
+    Map<String, Node> variables() {
+        Map<String, Node> variables = new LinkedHashMap<>();
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] != null) {
+                variables.put(slotNames[i], slots[i]);
+            }
+        }
+        if (members != null) {
+            variables.putAll(members);
+        }
+        return variables;
+    }
+
+    // Lookup by lowercase name, null if not defined in this scope
+    Node lookup(String name) {
+        for (int i = 0; i < slotNames.length; i++) {
+            if (slotNames[i] == name || slotNames[i].equals(name)) {
+                return slots[i];
+            }
+        }
+        return members == null ? null : members.get(name);
+    }
+
+    // Stores by lowercase name
+    void store(String name, Node value) {
+        for (int i = 0; i < slotNames.length; i++) {
+            if (slotNames[i] == name || slotNames[i].equals(name)) {
+                slots[i] = value;
+                return;
+            }
+        }
+        if (members == null) {
+            members = new HashMap<>();
+        }
+        members.put(name, value);
     }
 
 }
@@ -0,0 +1,572 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.scope;
+
+import ch.uprisesoft.yali.ast.node.Array;
+import ch.uprisesoft.yali.ast.node.Call;
+import ch.uprisesoft.yali.ast.node.List;
+import ch.uprisesoft.yali.ast.node.Node;
+import ch.uprisesoft.yali.ast.node.NodeType;
+import ch.uprisesoft.yali.ast.node.Procedure;
+import ch.uprisesoft.yali.ast.node.Table;
+import ch.uprisesoft.yali.ast.node.WordTable;
+import ch.uprisesoft.yali.ast.node.word.BooleanWord;
+import ch.uprisesoft.yali.ast.node.word.IntegerWord;
+import ch.uprisesoft.yali.ast.node.word.NilWord;
+import ch.uprisesoft.yali.ast.node.word.NoWord;
+import ch.uprisesoft.yali.ast.node.word.QuotedWord;
+import ch.uprisesoft.yali.ast.node.word.ReferenceWord;
+import ch.uprisesoft.yali.ast.node.word.SymbolWord;
+import ch.uprisesoft.yali.exception.NodeTypeException;
+import ch.uprisesoft.yali.exception.RangeException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Binary image of a workspace: the procedures written in Logo as parsed
+ * trees, aliases, global variables and property lists. Loading an image
+ * needs no lexer and no parser, so a large library is back in the time it
+ * takes to build its nodes.
+ *
+ * <p>
+ * The image starts with the magic "YALW" and a version byte, followed by a
+ * pool of all names and texts, so each of them is stored and decoded once.
+ * Numbers are variable length. Lists, arrays and tables are written once
+ * and referenced after that, so shared and cyclic ones come back as they
+ * were. Procedure bodies bind their calls again when they are first run.
+ *
+ * <p>
+ * An image is decoded completely before anything of it is defined, so an
+ * image that cannot be read leaves the environment as it was. Variables
+ * are made global, also when an image is loaded in a procedure.
+ *
+ * <p>
+ * The same format holds the result of reading a source for the ParseCache,
+ * with the top level instructions at the end and no variables.
+ *
+ * @author rma
+ */
+public class WorkspaceFile {
+
+    public static final int VERSION = 2;
+
+    private static final byte[] MAGIC = {'Y', 'A', 'L', 'W'};
+
+    private static final int NONE = 0;
+    private static final int NIL = 1;
+    private static final int TRUE = 2;
+    private static final int FALSE = 3;
+    private static final int INTEGER = 4;
+    private static final int BIG = 5;
+    private static final int FLOAT = 6;
+    private static final int SYMBOL = 7;
+    private static final int QUOTE = 8;
+    private static final int REFERENCE = 9;
+    private static final int LIST = 10;
+    private static final int ARRAY = 11;
+    private static final int TABLE = 12;
+    private static final int CALL = 13;
+    private static final int PROCEDURE = 14;
+    private static final int SEEN = 15;
+
+    private WorkspaceFile() {
+    }
+
+    /**
+     * Writes the workspace of the environment. Native procedures and macros
+     * are left out, they come with the library.
+     */
+    public static void write(Environment env, OutputStream out) throws IOException {
+        java.util.List<Procedure> procedures = new ArrayList<>();
+        Map<String, String> aliases = new LinkedHashMap<>();
+        for (Map.Entry<String, Procedure> entry : env.getProcedures().entrySet()) {
+            Procedure procedure = entry.getValue();
+            if (!saved(procedure)) {
+                continue;
+            }
+            if (entry.getKey().equals(procedure.getName())) {
+                procedures.add(procedure);
+            } else {
+                aliases.put(entry.getKey(), procedure.getName());
+            }
+        }
+
+        new Writer().write(procedures, aliases, env, new List(), out);
+    }
+
+    /**
+     * Writes the result of reading a source: the procedures it defined, the
+     * aliases it made as alias to original name and the top level
+     * instructions.
+     */
+    public static void write(Collection<Procedure> procedures, Map<String, String> aliases, Node program, OutputStream out) throws IOException {
+        new Writer().write(procedures, aliases, null, program, out);
+    }
+
+    /**
+     * Defines the procedures, variables and property lists of an image in
+     * the environment. The buffer is read from its position on, a mapped
+     * file is read in place.
+     *
+     * @return the top level instructions of the image, an empty list for a
+     * saved workspace
+     */
+    public static List read(ByteBuffer image, Environment env) throws IOException {
+        try {
+            return new Reader(image.slice().order(ByteOrder.BIG_ENDIAN)).read(env);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException | RangeException ex) {
+            throw new IOException("Workspace image is truncated or corrupt", ex);
+        }
+    }
+
+    private static boolean saved(Procedure procedure) {
+        return !procedure.isNative() && !procedure.isMacro();
+    }
+
+    private static class Writer {
+
+        private final Map<String, Integer> pool = new LinkedHashMap<>();
+        private final Map<Node, Integer> seen = new IdentityHashMap<>();
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        // Variables and property lists are only written with an environment
+        void write(Collection<Procedure> procedures, Map<String, String> aliases, Environment env, Node program, OutputStream out) throws IOException {
+            varint(procedures.size());
+            for (Procedure procedure : procedures) {
+                procedure(procedure);
+            }
+
+            varint(aliases.size());
+            for (Map.Entry<String, String> alias : aliases.entrySet()) {
+                string(alias.getKey());
+                string(alias.getValue());
+            }
+
+            Map<String, Node> globals = env == null ? Collections.emptyMap() : env.globals();
+            varint(globals.size());
+            for (Map.Entry<String, Node> global : globals.entrySet()) {
+                string(global.getKey());
+                node(global.getValue());
+            }
+
+            java.util.List<Node> names = env == null ? Collections.emptyList() : env.plistNames();
+            varint(names.size());
+            for (Node name : names) {
+                WordTable<Node> plist = env.plist(name);
+                node(name);
+                varint(plist.size());
+                for (Node property : plist.words()) {
+                    node(property);
+                    node(plist.get(property));
+                }
+            }
+
+            children(program);
+
+            ByteArrayOutputStream head = new ByteArrayOutputStream();
+            head.write(MAGIC);
+            head.write(VERSION);
+            varint(head, pool.size());
+            for (String text : pool.keySet()) {
+                byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+                varint(head, bytes.length);
+                head.write(bytes);
+            }
+
+            head.writeTo(out);
+            body.writeTo(out);
+            out.flush();
+        }
+
+        private void procedure(Procedure procedure) {
+            if (!saved(procedure)) {
+                throw new IllegalArgumentException("Procedure " + procedure.getName() + " is native and cannot be saved");
+            }
+
+            string(procedure.getName());
+            varint(procedure.getArgs().size());
+            for (String arg : procedure.getArgs()) {
+                string(arg);
+            }
+            if (procedure.getSource() == null) {
+                varint(0);
+            } else {
+                varint(index(procedure.getSource()) + 1);
+            }
+            children(procedure);
+        }
+
+        private void node(Node node) {
+            switch (node.type()) {
+                case NONE:
+                    varint(NONE);
+                    break;
+                case NIL:
+                    varint(NIL);
+                    break;
+                case BOOLEAN:
+                    varint(node.toBooleanWord().getBoolean() ? TRUE : FALSE);
+                    break;
+                case INTEGER:
+                    IntegerWord integer = node.toIntegerWord();
+                    if (integer.isBig()) {
+                        byte[] bytes = integer.bigValue().toByteArray();
+                        varint(BIG);
+                        varint(bytes.length);
+                        body.write(bytes, 0, bytes.length);
+                    } else {
+                        varint(INTEGER);
+                        varint(zigzag(integer.longValue()));
+                    }
+                    break;
+                case FLOAT:
+                    varint(FLOAT);
+                    long bits = Double.doubleToRawLongBits(node.toFloatWord().doubleValue());
+                    for (int shift = 56; shift >= 0; shift -= 8) {
+                        body.write((int) (bits >>> shift));
+                    }
+                    break;
+                case SYMBOL:
+                    varint(SYMBOL);
+                    string(node.toString());
+                    break;
+                case QUOTE:
+                    varint(QUOTE);
+                    string(node.toString());
+                    break;
+                case REFERENCE:
+                    varint(REFERENCE);
+                    string(node.toString());
+                    break;
+                case LIST:
+                    if (!first(node)) {
+                        break;
+                    }
+                    varint(LIST);
+                    children(node);
+                    break;
+                case ARRAY:
+                    if (!first(node)) {
+                        break;
+                    }
+                    Array array = node.toArray();
+                    varint(ARRAY);
+                    varint(zigzag(array.origin()));
+                    varint(array.size());
+                    for (Node member : array.members()) {
+                        node(member);
+                    }
+                    break;
+                case TABLE:
+                    if (!first(node)) {
+                        break;
+                    }
+                    WordTable<Node> entries = node.toTable().entries();
+                    varint(TABLE);
+                    varint(entries.size());
+                    for (Node key : entries.words()) {
+                        node(key);
+                        node(entries.get(key));
+                    }
+                    break;
+                case PROCCALL:
+                    Call call = node.toCall();
+                    varint(CALL);
+                    string(call.name());
+                    varint(zigzag(call.arity()));
+                    children(call);
+                    break;
+                case PROCEDURE:
+                    varint(PROCEDURE);
+                    procedure(node.toProcedureDef());
+                    break;
+                default:
+                    throw new NodeTypeException(node, node.type(), NodeType.SYMBOL, NodeType.LIST, NodeType.PROCCALL);
+            }
+        }
+
+        private void children(Node node) {
+            varint(node.getChildren().size());
+            for (Node child : node.getChildren()) {
+                node(child);
+            }
+        }
+
+        // Writes a reference instead if the node was written before
+        private boolean first(Node node) {
+            Integer id = seen.get(node);
+            if (id != null) {
+                varint(SEEN);
+                varint(id);
+                return false;
+            }
+            seen.put(node, seen.size());
+            return true;
+        }
+
+        private void string(String text) {
+            varint(index(text));
+        }
+
+        private int index(String text) {
+            Integer index = pool.get(text);
+            if (index == null) {
+                index = pool.size();
+                pool.put(text, index);
+            }
+            return index;
+        }
+
+        private void varint(long value) {
+            varint(body, value);
+        }
+
+        private static void varint(ByteArrayOutputStream out, long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+
+        private static long zigzag(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+    }
+
+    private static class Reader {
+
+        private final ByteBuffer in;
+        private final java.util.List<Node> seen = new ArrayList<>();
+        private String[] pool;
+
+        Reader(ByteBuffer in) {
+            this.in = in;
+        }
+
+        List read(Environment env) throws IOException {
+            for (byte b : MAGIC) {
+                if (in.get() != b) {
+                    throw new IOException("Not a workspace image");
+                }
+            }
+            int version = in.get() & 0xFF;
+            if (version != VERSION) {
+                throw new IOException("Workspace image version " + version + " is not supported, expected " + VERSION);
+            }
+
+            pool = new String[length()];
+            for (int i = 0; i < pool.length; i++) {
+                int length = length();
+                if (in.hasArray()) {
+                    int at = in.arrayOffset() + in.position();
+                    pool[i] = new String(in.array(), at, length, StandardCharsets.UTF_8);
+                    in.position(in.position() + length);
+                } else {
+                    byte[] bytes = new byte[length];
+                    in.get(bytes);
+                    pool[i] = new String(bytes, StandardCharsets.UTF_8);
+                }
+            }
+
+            int count = length();
+            Map<String, Procedure> procedures = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                Procedure procedure = procedure();
+                procedures.put(procedure.getName(), procedure);
+            }
+
+            // Alias to original name
+            count = length();
+            Map<String, String> aliases = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                String alias = string();
+                String original = string();
+                if (!procedures.containsKey(original) && !env.defined(original)) {
+                    throw new IOException("Alias " + alias + " of unknown procedure " + original);
+                }
+                aliases.put(alias, original);
+            }
+
+            count = length();
+            Map<String, Node> globals = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                String name = string();
+                globals.put(name, node());
+            }
+
+            // Name, property and value of each property
+            count = length();
+            java.util.List<Node[]> properties = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                Node name = node();
+                int size = length();
+                for (int j = 0; j < size; j++) {
+                    Node property = node();
+                    properties.add(new Node[]{name, property, node()});
+                }
+            }
+
+            List program = new List();
+            children(program);
+
+            for (Procedure procedure : procedures.values()) {
+                env.define(procedure);
+            }
+            for (Map.Entry<String, String> alias : aliases.entrySet()) {
+                env.alias(alias.getValue(), alias.getKey());
+            }
+            for (Map.Entry<String, Node> global : globals.entrySet()) {
+                env.global(global.getKey(), global.getValue());
+            }
+            for (Node[] property : properties) {
+                env.pprop(property[0], property[1], property[2]);
+            }
+            return program;
+        }
+
+        private Procedure procedure() {
+            Procedure procedure = new Procedure(string());
+            int arity = length();
+            java.util.List<String> args = new ArrayList<>(arity);
+            for (int i = 0; i < arity; i++) {
+                args.add(string());
+            }
+            procedure.setArgs(args);
+            int source = varint();
+            if (source > 0) {
+                procedure.setSource(pool[source - 1]);
+            }
+            children(procedure);
+            return procedure;
+        }
+
+        private Node node() {
+            int tag = varint();
+            switch (tag) {
+                case NONE:
+                    return NoWord.NONE;
+                case NIL:
+                    return NilWord.NIL;
+                case TRUE:
+                    return BooleanWord.TRUE;
+                case FALSE:
+                    return BooleanWord.FALSE;
+                case INTEGER:
+                    return IntegerWord.valueOf(unzigzag(varlong()));
+                case BIG:
+                    byte[] bytes = new byte[length()];
+                    in.get(bytes);
+                    return IntegerWord.valueOf(new BigInteger(bytes));
+                case FLOAT:
+                    return Node.flt(in.getDouble());
+                case SYMBOL:
+                    return new SymbolWord(string());
+                case QUOTE:
+                    return new QuotedWord(string());
+                case REFERENCE:
+                    return new ReferenceWord(string());
+                case LIST:
+                    List list = new List();
+                    seen.add(list);
+                    children(list);
+                    return list;
+                case ARRAY:
+                    int origin = (int) unzigzag(varlong());
+                    Array array = new Array(length(), origin);
+                    seen.add(array);
+                    for (int i = 0; i < array.size(); i++) {
+                        array.set(origin + i, node());
+                    }
+                    return array;
+                case TABLE:
+                    int size = length();
+                    WordTable<Node> entries = new WordTable<>(size);
+                    Table table = new Table(entries);
+                    seen.add(table);
+                    for (int i = 0; i < size; i++) {
+                        Node key = node();
+                        entries.put(key, node());
+                    }
+                    return table;
+                case CALL:
+                    String name = string();
+                    Call call = new Call(name, (int) unzigzag(varlong()));
+                    children(call);
+                    return call;
+                case PROCEDURE:
+                    return procedure();
+                case SEEN:
+                    return seen.get(varint());
+                default:
+                    throw new IllegalArgumentException("Unknown node tag " + tag);
+            }
+        }
+
+        private void children(Node node) {
+            int count = length();
+            for (int i = 0; i < count; i++) {
+                node.addChild(node());
+            }
+        }
+
+        private String string() {
+            return pool[varint()];
+        }
+
+        private int varint() {
+            return (int) varlong();
+        }
+
+        // Every byte, element or entry takes at least a byte of the image,
+        // so a count beyond the rest of it is corrupt and not allocated
+        private int length() {
+            long length = varlong();
+            if (length < 0 || length > in.remaining()) {
+                throw new IllegalArgumentException("Length " + length + " exceeds the " + in.remaining() + " bytes left");
+            }
+            return (int) length;
+        }
+
+        private long varlong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = in.get();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Number too long");
+        }
+
+        private static long unzigzag(long value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+    }
+}
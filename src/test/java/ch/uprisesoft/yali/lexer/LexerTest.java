@@ -16,6 +16,8 @@
 package ch.uprisesoft.yali.lexer;
 
 import ch.qos.logback.classic.Level;
+import java.nio.CharBuffer;
+import java.util.Iterator;
 import java.util.List;
 import static org.hamcrest.CoreMatchers.*;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -277,4 +279,51 @@ public class LexerTest {
         assertThat(tokens.get(0).getLexeme(), is("?abc"));
     }
 
+    @Test
+    public void testStreamInSmallChunks() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("to square :size").append("\n");
+        sb.append("repeat 4 [fd :size rt 90]").append("\n");
+        sb.append("end").append("\n");
+        sb.append("square 10").append("\n");
+        String testInput = sb.toString();
+
+        // Hands out one character per read
+        java.io.Reader in = new java.io.StringReader(testInput) {
+            @Override
+            public int read(char[] cbuf, int off, int len) throws java.io.IOException {
+                return super.read(cbuf, off, Math.min(len, 1));
+            }
+        };
+
+        List<Token> expected = new Lexer().scan(testInput);
+        Iterator<Token> tokens = new Lexer().tokens(in);
+
+        for (Token token : expected) {
+            Token streamed = tokens.next();
+            assertThat(streamed.type(), is(token.type()));
+            assertThat(streamed.getLexeme(), is(token.getLexeme()));
+            assertThat(streamed.getAbsolute(), is(token.getAbsolute()));
+        }
+        assertThat(tokens.hasNext(), is(false));
+        assertThat(expected.get(expected.size() - 6).type(), is(TokenType.END));
+        assertThat(expected.get(expected.size() - 6).getLexeme(), is("to square :size\nrepeat 4 [fd :size rt 90]\nend"));
+    }
+
+    @Test
+    public void testCharBuffer() {
+        String testInput = "print [a b] :x";
+
+        Iterator<Token> tokens = new Lexer().tokens(CharBuffer.wrap(testInput));
+
+        assertThat(tokens.next().getLexeme(), is("print"));
+        assertThat(tokens.next().type(), is(TokenType.LEFT_BRACKET));
+        assertThat(tokens.next().getLexeme(), is("a"));
+        assertThat(tokens.next().getLexeme(), is("b"));
+        assertThat(tokens.next().type(), is(TokenType.RIGHT_BRACKET));
+        assertThat(tokens.next().type(), is(TokenType.REFERENCE));
+        assertThat(tokens.next().type(), is(TokenType.EOF));
+        assertThat(tokens.hasNext(), is(false));
+    }
+
 }
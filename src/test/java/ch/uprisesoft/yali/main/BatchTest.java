@@ -0,0 +1,148 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.main;
+
+import ch.qos.logback.classic.Level;
+import ch.uprisesoft.yali.helper.ObjectMother;
+import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
+import ch.uprisesoft.yali.runtime.io.InputGenerator;
+import ch.uprisesoft.yali.runtime.io.OutputObserver;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.stream.Stream;
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * @author rma
+ */
+public class BatchTest {
+
+    @TempDir
+    Path dir;
+
+    private Interpreter it;
+    private java.util.List<String> outputs;
+    private ByteArrayOutputStream report;
+
+    public BatchTest() {
+        ch.qos.logback.classic.Logger rootLogger = (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(ch.qos.logback.classic.Logger.ROOT_LOGGER_NAME);
+        rootLogger.setLevel(Level.toLevel("off"));
+    }
+
+    @BeforeEach
+    public void setUp() {
+        outputs = new ArrayList<>();
+        OutputObserver oo = new OutputObserver() {
+            @Override
+            public void inform(String output) {
+                outputs.add(output);
+            }
+        };
+
+        InputGenerator ig = new InputGenerator() {
+            @Override
+            public String request() {
+                return "requestedinput";
+            }
+
+            @Override
+            public String requestLine() {
+                return "requestedinputline";
+            }
+        };
+
+        it = new ObjectMother(oo, ig).getInterpreter();
+        report = new ByteArrayOutputStream();
+    }
+
+    @Test
+    public void testRunFiles() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("to greet :name").append("\n");
+        sb.append("print :name").append("\n");
+        sb.append("end").append("\n");
+        Path first = write("first.logo", sb.toString());
+        Path second = write("second.logo", "repeat 2 [greet \"Grüezi]\n");
+
+        int failed = new Batch(it, new PrintStream(report)).run(Arrays.asList(first, second));
+
+        assertThat(failed, is(0));
+        assertThat(outputs.size(), is(2));
+        assertThat(outputs.get(0), is("Grüezi\n"));
+        assertThat(report.toString().contains("second.logo: 26 bytes, 8 tokens"), is(true));
+        assertThat(report.toString().contains("total: 2 files, 0 failed"), is(true));
+    }
+
+    @Test
+    public void testFailingFileDoesNotStopTheBatch() throws IOException {
+        Path first = write("first.logo", "repeat \"a [fd 10]\n");
+        Path second = write("second.logo", "print \"done\n");
+
+        int failed = new Batch(it, new PrintStream(report)).run(Arrays.asList(first, dir.resolve("missing.logo"), second));
+
+        assertThat(failed, is(2));
+        assertThat(outputs.get(outputs.size() - 1), is("done\n"));
+        assertThat(report.toString().contains("total: 3 files, 2 failed"), is(true));
+    }
+
+    @Test
+    public void testLargeFileIsDecodedInChunks() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            sb.append("make \"wörd ").append(i).append("\n");
+        }
+        Path file = write("large.logo", sb.toString());
+
+        new Batch(it, new PrintStream(report)).run(Arrays.asList(file));
+
+        assertThat(it.env().resolve("wörd").toIntegerWord().getInteger(), is(4999));
+        assertThat(it.calls(), is(5000L));
+    }
+
+    @Test
+    public void testBundledExamples() throws Exception {
+        Path examples = Paths.get(getClass().getResource("/logo/examples").toURI());
+        java.util.List<Path> files = new ArrayList<>();
+        try (Stream<Path> listed = Files.list(examples)) {
+            listed.sorted().forEach(files::add);
+        }
+        // for is missing, and :size/3 is read as a single name
+        files.remove(examples.resolve("spiral2.txt"));
+        files.remove(examples.resolve("tree2.txt"));
+
+        int failed = new Batch(it, new PrintStream(report)).run(files);
+
+        assertThat(failed, is(0));
+        assertThat(files.size(), is(14));
+    }
+
+    private Path write(String name, String source) throws IOException {
+        return Files.write(dir.resolve(name), source.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.parser;
+
+import ch.qos.logback.classic.Level;
+import ch.uprisesoft.yali.helper.ObjectMother;
+import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
+import ch.uprisesoft.yali.runtime.io.InputGenerator;
+import ch.uprisesoft.yali.runtime.io.OutputObserver;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * @author rma
+ */
+public class ParseCacheTest {
+
+    @TempDir
+    Path dir;
+
+    private java.util.List<String> outputs;
+    private OutputObserver oo;
+    private InputGenerator ig;
+
+    public ParseCacheTest() {
+        ch.qos.logback.classic.Logger rootLogger = (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(ch.qos.logback.classic.Logger.ROOT_LOGGER_NAME);
+        rootLogger.setLevel(Level.toLevel("off"));
+    }
+
+    @BeforeEach
+    public void setUp() {
+        outputs = new ArrayList<>();
+        oo = new OutputObserver() {
+            @Override
+            public void inform(String output) {
+                outputs.add(output);
+            }
+        };
+
+        ig = new InputGenerator() {
+            @Override
+            public String request() {
+                return "requestedinput";
+            }
+
+            @Override
+            public String requestLine() {
+                return "requestedinputline";
+            }
+        };
+    }
+
+    @Test
+    public void testSameSourceIsReadOnce() {
+        ParseCache cache = new ParseCache();
+        String library = library();
+
+        Interpreter first = interpreter(cache);
+        first.eval(library);
+        Interpreter second = interpreter(cache);
+        second.eval(library);
+
+        assertThat(cache.misses(), is(1L));
+        assertThat(cache.hits(), is(1L));
+        assertThat(second.env().defined("double"), is(true));
+        assertThat(second.env().defined("twice"), is(true));
+        assertThat(second.eval("quadruple 5").toIntegerWord().getInteger(), is(20));
+        assertThat(second.eval("twice 4").toIntegerWord().getInteger(), is(8));
+        assertThat(second.env().resolve("loaded").toString(), is("true"));
+        assertThat(outputs.size(), is(2));
+    }
+
+    @Test
+    public void testCacheDirectory() {
+        String library = library();
+
+        interpreter(new ParseCache(dir, 16)).eval(library);
+
+        ParseCache cache = new ParseCache(dir, 16);
+        Interpreter it = interpreter(cache);
+        it.eval(library);
+
+        assertThat(cache.misses(), is(0L));
+        assertThat(cache.hits(), is(1L));
+        assertThat(it.eval("quadruple 3").toIntegerWord().getInteger(), is(12));
+    }
+
+    @Test
+    public void testKnownProceduresArePartOfTheKey() {
+        ParseCache cache = new ParseCache();
+        String source = padded("make \"x helper 1 2");
+
+        Interpreter first = interpreter(cache);
+        first.eval("to helper :a :b\noutput :a + :b\nend\n");
+        first.eval(source);
+        Interpreter second = interpreter(cache);
+        second.eval("to helper :a :b\noutput :a - :b\nend\n");
+        second.eval(source);
+        Interpreter third = interpreter(cache);
+        third.eval("to helper :a :b :c\noutput :a * :b * :c\nend\n");
+        third.eval(padded("make \"x helper 1 2 3"));
+        third.eval("to helper :a :b\noutput :a * :b\nend\n");
+        third.eval(source);
+
+        assertThat(cache.misses(), is(2L));
+        assertThat(cache.hits(), is(2L));
+        assertThat(first.env().resolve("x").toIntegerWord().getInteger(), is(3));
+        assertThat(second.env().resolve("x").toIntegerWord().getInteger(), is(-1));
+        assertThat(third.env().resolve("x").toIntegerWord().getInteger(), is(2));
+    }
+
+    @Test
+    public void testShortSourcesAreNotCached() {
+        ParseCache cache = new ParseCache();
+        Interpreter it = interpreter(cache);
+
+        it.eval("print 1");
+        it.eval("print 1");
+
+        assertThat(cache.hits() + cache.misses(), is(0L));
+        assertThat(cache.size(), is(0));
+    }
+
+    private String library() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("to quadruple :n").append("\n");
+        sb.append("output double double :n").append("\n");
+        sb.append("end").append("\n");
+        sb.append("to double :n").append("\n");
+        sb.append("output :n * 2").append("\n");
+        sb.append("end").append("\n");
+        sb.append("alias \"double \"twice").append("\n");
+        sb.append("make \"loaded \"true").append("\n");
+        sb.append("print \"loaded").append("\n");
+        return padded(sb.toString());
+    }
+
+    // Comments make the source long enough to be cached
+    private static String padded(String source) {
+        StringBuilder sb = new StringBuilder(source);
+        while (sb.length() < ParseCache.MIN_LENGTH) {
+            sb.append("\n;; library code");
+        }
+        return sb.append("\n").toString();
+    }
+
+    private Interpreter interpreter(ParseCache cache) {
+        return new ObjectMother(oo, ig).getInterpreter().parseCache(cache);
+    }
+}
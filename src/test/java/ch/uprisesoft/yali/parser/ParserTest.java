@@ -446,4 +446,97 @@ public class ParserTest {
         assertThat(result.getChildren().get(0).toQuotedWord().getQuote(), is("\""));
 //        assertThat(result.getChildren().get(0).toList().getChildren().size(), is(8));
     }
+
+    @Test
+    public void testCallBeforeDefinition() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("print double 4").append("\n");
+        sb.append("to double :x").append("\n");
+        sb.append("output :x * 2").append("\n");
+        sb.append("end").append("\n");
+        Node result = parse(sb.toString());
+
+        assertThat(result.getChildren().size(), is(1));
+        Node print = result.getChildren().get(0);
+        assertThat(print.type(), is(NodeType.PROCCALL));
+        assertThat(print.getChildren().get(0).type(), is(NodeType.PROCCALL));
+        assertThat(print.getChildren().get(0).getChildren().size(), is(1));
+    }
+
+    @Test
+    public void testForwardReferenceInBody() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("to outer").append("\n");
+        sb.append("output (inner 1 2)").append("\n");
+        sb.append("end").append("\n");
+        sb.append("to inner :a :b").append("\n");
+        sb.append("output :a + :b").append("\n");
+        sb.append("end").append("\n");
+        Reader reader = parseAndReturnParser(sb.toString());
+
+        Procedure outer = reader.getFunctions().env().getProcedures().get("outer");
+        Node output = outer.getChildren().get(0);
+        assertThat(output.getChildren().get(0).type(), is(NodeType.PROCCALL));
+        assertThat(output.getChildren().get(0).toCall().name(), is("inner"));
+        assertThat(output.getChildren().get(0).getChildren().size(), is(2));
+    }
+
+    @Test
+    public void testRedefinitionReplacesBody() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("to f").append("\n");
+        sb.append("print 1").append("\n");
+        sb.append("end").append("\n");
+        sb.append("to f").append("\n");
+        sb.append("print 2").append("\n");
+        sb.append("end").append("\n");
+        Reader reader = parseAndReturnParser(sb.toString());
+
+        Procedure f = reader.getFunctions().env().getProcedures().get("f");
+        assertThat(f.getChildren().size(), is(1));
+        assertThat(f.getChildren().get(0).getChildren().get(0).toIntegerWord().getInteger(), is(2));
+    }
+
+    @Test
+    public void testReadStream() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            sb.append("fd ").append(i).append(" rt 90").append("\n");
+        }
+        sb.append("to step :n").append("\n");
+        sb.append("fd :n").append("\n");
+        sb.append("end").append("\n");
+        sb.append("step 5").append("\n");
+
+        Node result = p.read(new Lexer().tokens(new java.io.StringReader(sb.toString())));
+
+        assertThat(result.getChildren().size(), is(4001));
+        assertThat(result.getChildren().get(3999).toCall().name(), is("rt"));
+        assertThat(result.getChildren().get(4000).toCall().name(), is("step"));
+        assertThat(result.getChildren().get(4000).getChildren().get(0).toIntegerWord().getInteger(), is(5));
+    }
+
+    @Test
+    public void testParseTrace() {
+        ParseTrace trace = new ParseTrace();
+        p.setListener(trace);
+        parse("print list 1 [2 3]");
+
+        String text = trace.toString();
+        assertThat(text.contains("Funcall start: print"), is(true));
+        assertThat(text.contains("Funcall start: list"), is(true));
+        assertThat(text.contains("Number: 1"), is(true));
+        assertThat(text.contains("List end: [2 3]"), is(true));
+        assertThat(text.contains("Funcall end: print"), is(true));
+    }
+
+    @Test
+    public void testNoParseTraceByDefault() {
+        assertThat(p.getListener(), is(ParseListener.NONE));
+
+        p.setListener(new ParseTrace());
+        p.setListener(null);
+
+        assertThat(p.getListener(), is(ParseListener.NONE));
+    }
 }
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2021 rmaire.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.runtime.functions.builtin;
+
+import ch.qos.logback.classic.Level;
+import ch.uprisesoft.yali.ast.node.Node;
+import ch.uprisesoft.yali.ast.node.NodeType;
+import ch.uprisesoft.yali.helper.ObjectMother;
+import ch.uprisesoft.yali.lexer.Lexer;
+import ch.uprisesoft.yali.parser.Reader;
+import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
+import ch.uprisesoft.yali.runtime.io.InputGenerator;
+import ch.uprisesoft.yali.runtime.io.OutputObserver;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * @author rma
+ */
+public class ArithmeticTest {
+    
+    private Lexer l;
+    private Reader p;
+    private Interpreter i;
+    private OutputObserver o;
+    private InputGenerator ig;
+    
+    public ArithmeticTest() {
+        ch.qos.logback.classic.Logger rootLogger = (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(ch.qos.logback.classic.Logger.ROOT_LOGGER_NAME);
+        rootLogger.setLevel(Level.toLevel("off"));
+    }
+    
+    @BeforeEach
+    public void setUp() {
+        o = new OutputObserver() {
+            private final Logger logger = LoggerFactory.getLogger(ArithmeticTest.class);
+            @Override
+            public void inform(String output) {
+                logger.debug("(ArithmeticTest) " + output);
+            }
+        };
+        
+        ig = new InputGenerator() {
+            @Override
+            public String request() {
+                return "requestedinput";
+            }
+
+            @Override
+            public String requestLine() {
+                return "requestedinputline";
+            }
+        };
+        
+        ObjectMother om = new ObjectMother(o, ig);
+        
+        l = om.getLexer();
+        p = om.getParser();
+        i = om.getInterpreter();
+    }
+
+    @Test
+    public void testSmallIntegersStayLong() {
+        Node res = i.eval("21 * 2");
+
+        assertThat(res.type(), is(NodeType.INTEGER));
+        assertThat(res.toIntegerWord().isBig(), is(false));
+        assertThat(res.toIntegerWord().longValue(), is(42L));
+    }
+
+    @Test
+    public void testOverflowPromotes() {
+        Node res = i.eval("9223372036854775807 + 1");
+
+        assertThat(res.type(), is(NodeType.INTEGER));
+        assertThat(res.toIntegerWord().isBig(), is(true));
+        assertThat(res.toString(), is("9223372036854775808"));
+
+        assertThat(i.eval("3037000500 * 3037000500").toString(), is("9223372037000250000"));
+        assertThat(i.eval("-9223372036854775807 - 2").toString(), is("-9223372036854775809"));
+    }
+
+    @Test
+    public void testBigResultsShrinkBack() {
+        Node res = i.eval("(9223372036854775807 + 10) - 20");
+
+        assertThat(res.toIntegerWord().isBig(), is(false));
+        assertThat(res.toIntegerWord().longValue(), is(9223372036854775797L));
+        assertThat(i.eval("100000000000000000000 / 10000000000").toIntegerWord().longValue(), is(10000000000L));
+        assertThat(i.eval("mod 100000000000000000007 10").toIntegerWord().longValue(), is(7L));
+    }
+
+    @Test
+    public void testBigLiterals() {
+        Node res = i.eval("0 + 123456789012345678901234567890");
+
+        assertThat(res.type(), is(NodeType.INTEGER));
+        assertThat(res.toString(), is("123456789012345678901234567890"));
+        assertThat(i.eval("123456789012345678901234567890 > 9223372036854775807").toBooleanWord().getBoolean(), is(true));
+        assertThat(i.eval("123456789012345678901234567890 = 123456789012345678901234567890").toBooleanWord().getBoolean(), is(true));
+    }
+
+    @Test
+    public void testFactorial() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("to fact :n").append("\n");
+        sb.append("if :n < 2 [output 1]").append("\n");
+        sb.append("output :n * (fact :n - 1)").append("\n");
+        sb.append("end").append("\n");
+        sb.append("fact 30").append("\n");
+        Node res = i.eval(sb.toString());
+
+        assertThat(res.toString(), is("265252859812191058636308480000000"));
+    }
+
+    @Test
+    public void testIntegerAndRound() {
+        assertThat(i.eval("integer 2.6").toString(), is("2"));
+        assertThat(i.eval("integer -2.6").toString(), is("-2"));
+        assertThat(i.eval("round 2.6").toString(), is("3"));
+        assertThat(i.eval("round 2.4").toString(), is("2"));
+        assertThat(i.eval("round -2.6").toString(), is("-3"));
+        assertThat(i.eval("integer 7").toString(), is("7"));
+        assertThat(i.eval("integer 2.6").type(), is(NodeType.INTEGER));
+    }
+
+    @Test
+    public void testIntegerAndRoundPromote() {
+        Node res = i.eval("integer 100000000000000000000.5");
+
+        assertThat(res.type(), is(NodeType.INTEGER));
+        assertThat(res.toString(), is("100000000000000000000"));
+        assertThat(i.eval("round -100000000000000000000.5").toString(), is("-100000000000000000000"));
+        assertThat(i.eval("round 9223372036854775807.0").toString(), is("9223372036854775808"));
+    }
+
+    @Test
+    public void testMixedWithFloat() {
+        Node res = i.eval("100000000000000000000 * 0.5");
+
+        assertThat(res.type(), is(NodeType.FLOAT));
+        assertThat(res.toFloatWord().doubleValue(), is(5.0E19));
+    }
+
+}
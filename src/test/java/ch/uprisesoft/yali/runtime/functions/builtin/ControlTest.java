@@ -23,6 +23,7 @@ import ch.uprisesoft.yali.helper.ObjectMother;
 import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
 import ch.uprisesoft.yali.runtime.io.InputGenerator;
 import ch.uprisesoft.yali.runtime.io.OutputObserver;
+import ch.uprisesoft.yali.runtime.vm.BlockCache;
 import java.util.ArrayList;
 import static org.hamcrest.CoreMatchers.*;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -169,6 +170,28 @@ public class ControlTest {
         assertThat(res.toList().getChildren().get(1).toIntegerWord().getInteger(), is(100));
     }
 
+    @Test
+    public void testNestedRepeat() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("repeat 2 [repeat 3 [fd 10] rt 90]").append("\n");
+        sb.append("turtlepos").append("\n");
+        Node res = it.eval(sb.toString());
+
+        assertThat(res.type(), is(NodeType.LIST));
+        assertThat(res.toList().getChildren().get(0).toIntegerWord().getInteger(), is(30));
+        assertThat(res.toList().getChildren().get(1).toIntegerWord().getInteger(), is(30));
+    }
+
+    @Test
+    public void testRepeatCounter() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("make \"count 0").append("\n");
+        sb.append("repeat 100 [make \"count :count + 1]").append("\n");
+        Node res = it.eval(sb.toString());
+
+        assertThat(it.env().resolve("count").toIntegerWord().getInteger(), is(100));
+    }
+
     @Test
     public void testRepeatAndMake() {
         StringBuilder sb = new StringBuilder();
@@ -228,6 +251,43 @@ public class ControlTest {
 
     }
     
+    @Test
+    public void testRunChangedList() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("make \"block [fd 10]").append("\n");
+        sb.append("run :block").append("\n");
+        sb.append("setitem 2 :block 20").append("\n");
+        sb.append("run :block").append("\n");
+        Node res = it.eval(sb.toString());
+
+        assertThat(res.type(), is(NodeType.LIST));
+        assertThat(res.toList().getChildren().get(0).toIntegerWord().getInteger(), is(0));
+        assertThat(res.toList().getChildren().get(1).toIntegerWord().getInteger(), is(30));
+    }
+
+    @Test
+    public void testRunAfterRedefinition() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("to step").append("\n");
+        sb.append("fd 10").append("\n");
+        sb.append("end").append("\n");
+        sb.append("make \"block [step]").append("\n");
+        sb.append("run :block").append("\n");
+        it.eval(sb.toString());
+
+        sb = new StringBuilder();
+        sb.append("to step").append("\n");
+        sb.append("rt 90").append("\n");
+        sb.append("fd 5").append("\n");
+        sb.append("end").append("\n");
+        sb.append("run :block").append("\n");
+        Node res = it.eval(sb.toString());
+
+        assertThat(res.type(), is(NodeType.LIST));
+        assertThat(res.toList().getChildren().get(0).toIntegerWord().getInteger(), is(5));
+        assertThat(res.toList().getChildren().get(1).toIntegerWord().getInteger(), is(10));
+    }
+
     @Test
     public void testRunScope() {
         StringBuilder sb = new StringBuilder();
@@ -241,6 +301,76 @@ public class ControlTest {
         assertThat(it.env().resolve("testvar").toQuotedWord().getQuote(), is("yes"));
     }
 
+    @Test
+    public void testRunBuiltList() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("make \"total 0").append("\n");
+        sb.append("repeat 50 [run sentence [make \"total :total +] 2]").append("\n");
+        it.eval(sb.toString());
+
+        assertThat(it.env().resolve("total").toIntegerWord().getInteger(), is(100));
+        assertThat(it.blockCache().hits(), is(49L));
+    }
+
+    @Test
+    public void testRunBuiltListsDoNotShareLists() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("run [make \"x [1 [2] 3]]").append("\n");
+        sb.append("setitem 1 :x 99").append("\n");
+        sb.append("setitem 1 item 2 :x 98").append("\n");
+        sb.append("run [make \"x [1 [2] 3]]").append("\n");
+        sb.append("make \"y :x").append("\n");
+        sb.append("run [make \"x [1 [2] 3]]").append("\n");
+        it.eval(sb.toString());
+
+        assertThat(it.blockCache().hits(), is(2L));
+        assertThat(it.env().resolve("y").toString(), is("[1 [2] 3]"));
+        assertThat(it.env().resolve("x"), is(not(sameInstance(it.env().resolve("y")))));
+    }
+
+    @Test
+    public void testBlockCacheEviction() {
+        it.blockCache(new BlockCache(2));
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("run list \"fd 1").append("\n");
+        sb.append("run list \"fd 2").append("\n");
+        sb.append("run list \"fd 3").append("\n");
+        sb.append("run list \"fd 1").append("\n");
+        it.eval(sb.toString());
+
+        assertThat(it.blockCache().size(), is(2));
+        assertThat(it.blockCache().hits(), is(0L));
+
+        it.eval("run list \"fd 3");
+
+        assertThat(it.blockCache().hits(), is(1L));
+        assertThat(it.blockCache().misses(), is(4L));
+    }
+
+    @Test
+    public void testRunBuiltListAfterRedefinition() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("to step").append("\n");
+        sb.append("fd 10").append("\n");
+        sb.append("end").append("\n");
+        sb.append("run list \"step \"step").append("\n");
+        sb.append("run list \"step \"step").append("\n");
+        it.eval(sb.toString());
+
+        sb = new StringBuilder();
+        sb.append("to step").append("\n");
+        sb.append("rt 90").append("\n");
+        sb.append("end").append("\n");
+        sb.append("run list \"step \"step").append("\n");
+        Node res = it.eval(sb.toString());
+
+        assertThat(it.blockCache().hits(), is(1L));
+        assertThat(res.type(), is(NodeType.LIST));
+        assertThat(res.toList().getChildren().get(0).toIntegerWord().getInteger(), is(0));
+        assertThat(res.toList().getChildren().get(1).toIntegerWord().getInteger(), is(40));
+    }
+
     @Test
     public void testIfTrueGreater() {
         StringBuilder sb = new StringBuilder();
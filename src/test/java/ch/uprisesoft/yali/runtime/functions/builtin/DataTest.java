@@ -16,8 +16,11 @@
 package ch.uprisesoft.yali.runtime.functions.builtin;
 
 import ch.qos.logback.classic.Level;
+import ch.uprisesoft.yali.ast.node.Array;
 import ch.uprisesoft.yali.ast.node.Node;
 import ch.uprisesoft.yali.ast.node.NodeType;
+import ch.uprisesoft.yali.exception.NodeTypeException;
+import ch.uprisesoft.yali.exception.RangeException;
 import ch.uprisesoft.yali.helper.ObjectMother;
 import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
 import ch.uprisesoft.yali.runtime.io.InputGenerator;
@@ -25,6 +28,7 @@ import ch.uprisesoft.yali.runtime.io.OutputObserver;
 import java.util.ArrayList;
 import static org.hamcrest.CoreMatchers.*;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import static org.hamcrest.CoreMatchers.*;
@@ -174,4 +178,186 @@ public class DataTest {
         assertThat(res.getChildren().get(3).type(), is(NodeType.SYMBOL));
         assertThat(res.getChildren().get(3).toString(), is("4"));
     }
+
+    @Test
+    public void testListsShareStructure() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("make \"l [1 2 3]").append("\n");
+        sb.append("make \"front fput 0 :l").append("\n");
+        sb.append("make \"back lput 4 :l").append("\n");
+        sb.append("make \"rest butfirst :l").append("\n");
+        sb.append("setitem 1 :rest 9").append("\n");
+        it.eval(sb.toString());
+
+        assertThat(it.env().resolve("l").toString(), is("[1 2 3]"));
+        assertThat(it.env().resolve("front").toString(), is("[0 1 2 3]"));
+        assertThat(it.env().resolve("back").toString(), is("[1 2 3 4]"));
+        assertThat(it.env().resolve("rest").toString(), is("[9 3]"));
+        assertThat(it.eval("butlast :back").toString(), is("[1 2 3]"));
+        assertThat(it.eval("reverse :l").toString(), is("[3 2 1]"));
+        assertThat(it.env().resolve("l").toString(), is("[1 2 3]"));
+    }
+
+    @Test
+    public void testEquality() {
+        assertThat(it.eval("equal? 1 1.0").toBooleanWord().getBoolean(), is(true));
+        assertThat(it.eval("equal? [1 2] [1 2]").toBooleanWord().getBoolean(), is(true));
+        assertThat(it.eval("equal? [1 2] [2 1]").toBooleanWord().getBoolean(), is(false));
+        assertThat(it.eval("equal? \"a \"b").toBooleanWord().getBoolean(), is(false));
+        assertThat(it.eval("equal? true false").toBooleanWord().getBoolean(), is(false));
+
+        Node one = Node.integer(1);
+        assertThat(Node.flt(1.0).hashCode(), is(one.hashCode()));
+        assertThat(Node.symbol("1").hashCode(), is(one.hashCode()));
+        assertThat(Node.quote("1").equals(one), is(true));
+        assertThat(Node.nil().equals(Node.symbol("nil")), is(false));
+    }
+
+    @Test
+    public void testMembership() {
+        StringBuilder values = new StringBuilder("[");
+        for (int i = 0; i < 20000; i++) {
+            values.append("w").append(i).append(" [").append(i).append("] ");
+        }
+        values.append("]");
+        it.eval("make \"values " + values);
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("make \"found 0").append("\n");
+        sb.append("repeat 20000 [if member? \"w19999 :values [make \"found :found + 1]]").append("\n");
+        it.eval(sb.toString());
+
+        assertThat(it.env().resolve("found").toIntegerWord().getInteger(), is(20000));
+        assertThat(it.eval("member? \"w20000 :values").toBooleanWord().getBoolean(), is(false));
+        assertThat(it.eval("member? [7] :values").toBooleanWord().getBoolean(), is(true));
+        assertThat(it.eval("position \"w3 :values").toIntegerWord().getInteger(), is(7));
+        assertThat(it.eval("position [3] :values").toIntegerWord().getInteger(), is(8));
+
+        it.eval("setitem 1 :values \"new");
+
+        assertThat(it.eval("member? \"new :values").toBooleanWord().getBoolean(), is(true));
+        assertThat(it.eval("member? \"w0 :values").toBooleanWord().getBoolean(), is(false));
+    }
+
+    @Test
+    public void testRemdup() {
+        Node res = it.eval("remdup [a b 1 [c] a 1.0 [c] b]");
+
+        assertThat(res.toString(), is("[a 1.0 [c] b]"));
+    }
+
+    @Test
+    public void testArray() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("make \"a array 3").append("\n");
+        sb.append("setitem 2 :a 5").append("\n");
+        it.eval(sb.toString());
+
+        assertThat(it.env().resolve("a").toString(), is("{[] 5 []}"));
+        assertThat(it.eval("(item 2 :a) + 1").toIntegerWord().getInteger(), is(6));
+        assertThat(it.eval("count :a").toIntegerWord().getInteger(), is(3));
+        assertThat(it.eval("array? :a").toBooleanWord().getBoolean(), is(true));
+        assertThat(it.env().resolve("a").toArray().componentType().getSimpleName(), is("long"));
+
+        it.eval("setitem 3 :a \"x");
+
+        assertThat(it.env().resolve("a").toArray().componentType().getSimpleName(), is("Node"));
+        assertThat(it.eval("item 2 :a").toIntegerWord().getInteger(), is(5));
+        assertThat(it.eval("item 3 :a").toString(), is("x"));
+    }
+
+    @Test
+    public void testArrayOrigin() {
+        it.eval("make \"a (listtoarray [1.5 2.5] 0)");
+
+        Array a = it.env().resolve("a").toArray();
+
+        assertThat(a.componentType().getSimpleName(), is("double"));
+        assertThat(a.toString(), is("{1.5 2.5}@0"));
+        assertThat(it.eval("item 0 :a").toFloatWord().doubleValue(), is(1.5));
+        RangeException ex = assertThrows(RangeException.class, () -> it.eval("item 2 :a"));
+        assertThat(ex.getMin(), is(0L));
+        assertThat(ex.getMax(), is(1L));
+    }
+
+    @Test
+    public void testListToArray() {
+        it.eval("make \"a listtoarray [1 2 3]");
+
+        assertThat(it.env().resolve("a").toArray().componentType().getSimpleName(), is("long"));
+        assertThat(it.eval("arraytolist :a").type(), is(NodeType.LIST));
+        assertThat(it.eval("arraytolist :a").getChildren().size(), is(3));
+    }
+
+    @Test
+    public void testMdArray() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("make \"m mdarray [2 3]").append("\n");
+        sb.append("mdsetitem [2 3] :m 7").append("\n");
+        it.eval(sb.toString());
+
+        assertThat(it.env().resolve("m").toString(), is("{{[] [] []} {[] [] 7}}"));
+        assertThat(it.eval("mditem [2 3] :m").toIntegerWord().getInteger(), is(7));
+        assertThat(it.eval("(mditem [1 0] (mdarray [2 2] 0))").toString(), is("[]"));
+    }
+
+    @Test
+    public void testIndexesBeyondAnInt() {
+        assertThrows(RangeException.class, () -> it.eval("item 3000000000 [a b]"));
+        assertThrows(RangeException.class, () -> it.eval("setitem 3000000000 [a b] \"c"));
+        assertThrows(RangeException.class, () -> it.eval("(array 3 5000000000)"));
+        assertThrows(RangeException.class, () -> it.eval("array 123456789012345678901234567890"));
+    }
+
+    @Test
+    public void testBadSizesAndIndexes() {
+        assertThrows(RangeException.class, () -> it.eval("array -1"));
+        assertThrows(RangeException.class, () -> it.eval("mdarray [-1 2]"));
+        assertThrows(RangeException.class, () -> it.eval("mdarray [2 -1]"));
+        assertThrows(NodeTypeException.class, () -> it.eval("mdarray []"));
+        assertThrows(RangeException.class, () -> it.eval("item 3 [a b]"));
+        assertThrows(RangeException.class, () -> it.eval("item 0 [a b]"));
+        assertThrows(RangeException.class, () -> it.eval("item 4 \"abc"));
+        assertThrows(RangeException.class, () -> it.eval("setitem 3 [a b] \"c"));
+        assertThrows(RangeException.class, () -> it.eval("mditem [3 1] mdarray [2 2]"));
+        assertThat(it.eval("count arraytolist array 0").toIntegerWord().getInteger(), is(0));
+    }
+
+    @Test
+    public void testMdItemWithoutIndexes() {
+        NodeTypeException ex = assertThrows(NodeTypeException.class, () -> it.eval("mditem [] mdarray [2 2]"));
+        assertThat(ex.getReceived(), is(NodeType.NIL));
+    }
+
+    @Test
+    public void testMdSetItemWithoutIndexes() {
+        it.eval("make \"m mdarray [2 3]");
+
+        NodeTypeException ex = assertThrows(NodeTypeException.class, () -> it.eval("mdsetitem [] :m 7"));
+        assertThat(ex.getReceived(), is(NodeType.NIL));
+        assertThat(it.env().resolve("m").toString(), is("{{[] [] []} {[] [] []}}"));
+    }
+
+    @Test
+    public void testRecursionOverLargeList() {
+        StringBuilder values = new StringBuilder("[");
+        for (int i = 1; i <= 100000; i++) {
+            values.append(i).append(" ");
+        }
+        values.append("]");
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("to size :l :acc").append("\n");
+        sb.append("if empty? :l [output :acc]").append("\n");
+        sb.append("output size butfirst :l :acc + 1").append("\n");
+        sb.append("end").append("\n");
+        sb.append("make \"values ").append(values).append("\n");
+        it.eval(sb.toString());
+
+        Node res = it.eval("size :values 0");
+
+        assertThat(res.toIntegerWord().getInteger(), is(100000));
+        assertThat(it.eval("last :values").toString(), is("100000"));
+        assertThat(it.eval("item 50000 :values").toString(), is("50000"));
+    }
 }
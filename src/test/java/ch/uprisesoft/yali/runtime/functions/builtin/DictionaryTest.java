@@ -0,0 +1,182 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.runtime.functions.builtin;
+
+import ch.qos.logback.classic.Level;
+import ch.uprisesoft.yali.ast.node.Node;
+import ch.uprisesoft.yali.ast.node.NodeType;
+import ch.uprisesoft.yali.exception.NodeTypeException;
+import ch.uprisesoft.yali.exception.RangeException;
+import ch.uprisesoft.yali.helper.ObjectMother;
+import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
+import ch.uprisesoft.yali.runtime.io.InputGenerator;
+import ch.uprisesoft.yali.runtime.io.OutputObserver;
+import java.util.ArrayList;
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * @author rma
+ */
+public class DictionaryTest {
+
+    private Interpreter it;
+    private java.util.List<String> outputs;
+
+    public DictionaryTest() {
+        ch.qos.logback.classic.Logger rootLogger = (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(ch.qos.logback.classic.Logger.ROOT_LOGGER_NAME);
+        rootLogger.setLevel(Level.toLevel("off"));
+    }
+
+    @BeforeEach
+    public void setUp() {
+        outputs = new ArrayList<>();
+        OutputObserver oo = new OutputObserver() {
+            @Override
+            public void inform(String output) {
+                outputs.add(output);
+            }
+        };
+
+        InputGenerator ig = new InputGenerator() {
+            @Override
+            public String request() {
+                return "requestedinput";
+            }
+
+            @Override
+            public String requestLine() {
+                return "requestedinputline";
+            }
+        };
+
+        it = new ObjectMother(oo, ig).getInterpreter();
+    }
+
+    @Test
+    public void testPropertyLists() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("pprop \"fred \"height 180").append("\n");
+        sb.append("pprop \"fred \"age 30").append("\n");
+        sb.append("pprop \"Fred \"Age 31").append("\n");
+        it.eval(sb.toString());
+
+        assertThat(it.eval("gprop \"fred \"age").toIntegerWord().getInteger(), is(31));
+        assertThat(it.eval("gprop \"FRED \"height").toIntegerWord().getInteger(), is(180));
+        assertThat(it.eval("count plist \"fred").toIntegerWord().getInteger(), is(4));
+
+        it.eval("remprop \"fred \"height");
+
+        assertThat(it.eval("plist \"fred").toString(), is("[age 31]"));
+        assertThat(it.eval("empty? gprop \"fred \"height").toBooleanWord().getBoolean(), is(true));
+        assertThat(it.eval("empty? plist \"barney").toBooleanWord().getBoolean(), is(true));
+    }
+
+    @Test
+    public void testTable() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("make \"t table").append("\n");
+        sb.append("table.put :t \"Apple 3").append("\n");
+        sb.append("table.put :t 1 \"one").append("\n");
+        sb.append("table.put :t \"pear [a b]").append("\n");
+        it.eval(sb.toString());
+
+        assertThat(it.eval("table? :t").toBooleanWord().getBoolean(), is(true));
+        assertThat(it.eval("count :t").toIntegerWord().getInteger(), is(3));
+        assertThat(it.eval("table.get :t \"apple").toIntegerWord().getInteger(), is(3));
+        assertThat(it.eval("table.get :t 1.0").toString(), is("one"));
+        assertThat(it.eval("table.get :t \"pear").toString(), is("[a b]"));
+        assertThat(it.eval("table.key? :t \"plum").toBooleanWord().getBoolean(), is(false));
+
+        it.eval("table.remove :t \"apple");
+
+        assertThat(it.eval("count :t").toIntegerWord().getInteger(), is(2));
+        assertThat(it.eval("table.key? :t \"apple").toBooleanWord().getBoolean(), is(false));
+        assertThat(it.eval("count table.keys :t").toIntegerWord().getInteger(), is(2));
+    }
+
+    @Test
+    public void testTableSizes() {
+        assertThat(it.eval("count (table 0)").toIntegerWord().getInteger(), is(0));
+        assertThrows(RangeException.class, () -> it.eval("(table -1)"));
+        assertThrows(RangeException.class, () -> it.eval("(table -5000000000)"));
+
+        it.eval("make \"t (table 1000000000)");
+        it.eval("table.put :t 1 \"one");
+        assertThat(it.eval("table.get :t 1").toString(), is("one"));
+    }
+
+    @Test
+    public void testLargeWholeFloatKeys() {
+        it.eval("make \"t table");
+        it.eval("table.put :t 1152921504606846976 \"a");
+
+        assertThat(it.eval("equal? 1152921504606846976 1152921504606846976.0").toBooleanWord().getBoolean(), is(true));
+        assertThat(it.eval("table.get :t 1152921504606846976.0").toString(), is("a"));
+        assertThat(it.eval("table.key? :t 1152921504606846977").toBooleanWord().getBoolean(), is(false));
+        assertThat(it.eval("table.get :t 0.1").toString(), is("[]"));
+    }
+
+    @Test
+    public void testRemoveKeepsOtherKeys() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("make \"t (table 10)").append("\n");
+        sb.append("make \"i 0").append("\n");
+        sb.append("repeat 2000 [table.put :t :i :i * 2 make \"i :i + 1]").append("\n");
+        sb.append("make \"i 0").append("\n");
+        sb.append("repeat 1000 [table.remove :t :i make \"i :i + 2]").append("\n");
+        sb.append("make \"found 0").append("\n");
+        sb.append("make \"i 0").append("\n");
+        sb.append("repeat 2000 [if table.key? :t :i [make \"found :found + 1] make \"i :i + 1]").append("\n");
+        it.eval(sb.toString());
+
+        assertThat(it.env().resolve("found").toIntegerWord().getInteger(), is(1000));
+        assertThat(it.eval("table.get :t 1999").toIntegerWord().getInteger(), is(3998));
+        assertThat(it.eval("empty? table.get :t 1998").toBooleanWord().getBoolean(), is(true));
+    }
+
+    @Test
+    public void testMemoizedRecursion() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("make \"memo table").append("\n");
+        sb.append("to fib :n").append("\n");
+        sb.append("if :n < 2 [output :n]").append("\n");
+        sb.append("if table.key? :memo :n [output table.get :memo :n]").append("\n");
+        sb.append("localmake \"f (fib :n - 1) + (fib :n - 2)").append("\n");
+        sb.append("table.put :memo :n :f").append("\n");
+        sb.append("output :f").append("\n");
+        sb.append("end").append("\n");
+        sb.append("fib 90").append("\n");
+        Node res = it.eval(sb.toString());
+
+        assertThat(res.toString(), is("2880067194370816120"));
+        assertThat(it.eval("count :memo").toIntegerWord().getInteger(), is(89));
+    }
+
+    @Test
+    public void testListsAreNoKeys() {
+        it.eval("make \"t table");
+
+        NodeTypeException nte = assertThrows(NodeTypeException.class, () -> it.eval("table.put :t [a] 1"));
+
+        assertThat(nte.getReceived(), is(NodeType.LIST));
+    }
+}
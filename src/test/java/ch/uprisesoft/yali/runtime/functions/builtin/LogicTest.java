@@ -18,6 +18,7 @@ package ch.uprisesoft.yali.runtime.functions.builtin;
 import ch.qos.logback.classic.Level;
 import ch.uprisesoft.yali.ast.node.Node;
 import ch.uprisesoft.yali.ast.node.NodeType;
+import ch.uprisesoft.yali.ast.node.word.BooleanWord;
 import ch.uprisesoft.yali.helper.ObjectMother;
 import ch.uprisesoft.yali.lexer.Lexer;
 import ch.uprisesoft.yali.parser.Reader;
@@ -269,4 +270,35 @@ public class LogicTest {
         o.inform("End testLessorequalSameVal()");
     }
     
+    @Test
+    public void testResultsAreShared() {
+        Node res = i.eval("1 < 4");
+
+        assertThat(res, is(sameInstance((Node) BooleanWord.TRUE)));
+        assertThat(i.eval("notequal? 3 3"), is(sameInstance((Node) BooleanWord.FALSE)));
+        assertThat(i.eval("40 + 2"), is(sameInstance((Node) Node.integer(42))));
+        assertThat(i.eval("40000 + 2"), is(not(sameInstance((Node) Node.integer(40002)))));
+        assertThat(i.eval("40000 + 2").toIntegerWord().getInteger(), is(40002));
+    }
+    
+    @Test
+    public void testCompareLargeAndMixedNumbers() {
+        Node sum = i.eval("2147483647 + 1");
+
+        assertThat(sum.type(), is(NodeType.INTEGER));
+        assertThat(sum.toString(), is("2147483648"));
+        assertThat(i.eval("(2147483647 + 1) > 2147483647").toBooleanWord().getBoolean(), is(true));
+        assertThat(i.eval("1 = 1.0").toBooleanWord().getBoolean(), is(true));
+        assertThat(i.eval("2.5 < 3").toBooleanWord().getBoolean(), is(true));
+    }
+
+    @Test
+    public void testWordsReadingAsNumbers() {
+        assertThat(i.eval("equal? \"007 7").toBooleanWord().getBoolean(), is(true));
+        assertThat(i.eval("equal? \"-.5 -0.5").toBooleanWord().getBoolean(), is(true));
+        assertThat(i.eval("equal? \"1. 1").toBooleanWord().getBoolean(), is(false));
+        assertThat(i.eval("equal? \"- \"-").toBooleanWord().getBoolean(), is(true));
+        assertThat(i.eval("equal? \"1e3 1000").toBooleanWord().getBoolean(), is(false));
+    }
+    
 }
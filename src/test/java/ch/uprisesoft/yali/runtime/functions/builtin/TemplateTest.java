@@ -16,8 +16,10 @@
 package ch.uprisesoft.yali.runtime.functions.builtin;
 
 import ch.qos.logback.classic.Level;
+import ch.uprisesoft.yali.ast.node.List;
 import ch.uprisesoft.yali.ast.node.Node;
 import ch.uprisesoft.yali.ast.node.NodeType;
+import ch.uprisesoft.yali.ast.node.Procedure;
 import ch.uprisesoft.yali.lexer.Lexer;
 import ch.uprisesoft.yali.helper.ObjectMother;
 import ch.uprisesoft.yali.parser.Reader;
@@ -114,6 +116,22 @@ public class TemplateTest {
         assertThat(result.getChildren().get(3).toSymbolWord().getSymbol(), is("false"));
     }
     
+    @Test
+    public void testTemplatesAreCompiledOnce() {
+        it.eval("make \"t [? * 2]");
+        List template = it.env().resolve("t").toList();
+
+        it.eval("map :t [1 2]");
+        Procedure first = template.template(it.env().epoch(), 1);
+        assertThat(first, is(notNullValue()));
+        it.eval("filter [equal? ? 2] map :t [1 2]");
+        assertThat(template.template(it.env().epoch(), 1), is(sameInstance(first)));
+
+        it.eval("setitem 3 :t 3");
+        assertThat(template.template(it.env().epoch(), 1), is(nullValue()));
+        assertThat(it.eval("map :t [1 2]").toString(), is("[3 6]"));
+    }
+
      @Test
     public void testMapQuote() {
         Node result = it.eval("map [uppercase ?] \"abcd");
@@ -154,4 +172,106 @@ public class TemplateTest {
         
         assertThat(result.toQuotedWord().getQuote(), is("b"));
     }
+    
+    @Test
+    public void testMapSlotInParens() {
+        Node result = it.eval("map [(? * 2) + 1] [1 2 3]");
+        
+        assertThat(result.toString(), is("[3 5 7]"));
+    }
+    
+    @Test
+    public void testMapSe() {
+        Node result = it.eval("map.se [list ? ? * 10] [1 2 3]");
+        
+        assertThat(result.getChildren().size(), is(6));
+        assertThat(result.toString(), is("[1 10 2 20 3 30]"));
+    }
+    
+    @Test
+    public void testReduce() {
+        assertThat(it.eval("reduce [?1 + ?2] [1 2 3 4]").toIntegerWord().getInteger(), is(10));
+        assertThat(it.eval("reduce [?1 - ?2] [10 3 2]").toIntegerWord().getInteger(), is(9));
+        assertThat(it.eval("reduce [?1 + ?2] [5]").toSymbolWord().getSymbol(), is("5"));
+    }
+    
+    @Test
+    public void testCrossmap() {
+        Node result = it.eval("crossmap [list ?1 ?2] [[a b c] [1 2]]");
+        
+        assertThat(result.getChildren().size(), is(6));
+        assertThat(result.getChildren().get(0).toString(), is("[a 1]"));
+        assertThat(result.getChildren().get(1).toString(), is("[a 2]"));
+        assertThat(result.getChildren().get(5).toString(), is("[c 2]"));
+    }
+    
+    @Test
+    public void testForeach() {
+        it.eval("foreach [1 2 3] [print ? * 10]");
+        it.eval("foreach \"ab [print uppercase ?]");
+        
+        assertThat(outputs.size(), is(5));
+        assertThat(outputs.get(0), is("10\n"));
+        assertThat(outputs.get(2), is("30\n"));
+        assertThat(outputs.get(4), is("B\n"));
+    }
+    
+    @Test
+    public void testPmapKeepsOrder() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("to square :n").append("\n");
+        sb.append("output :n * :n + :offset").append("\n");
+        sb.append("end").append("\n");
+        sb.append("make \"offset 1").append("\n");
+        it.eval(sb.toString());
+        
+        StringBuilder values = new StringBuilder("[");
+        for (int i = 0; i < 10000; i++) {
+            values.append(i).append(" ");
+        }
+        values.append("]");
+        
+        Node parallel = it.eval("pmap [square ?] " + values);
+        Node sequential = it.eval("map [square ?] " + values);
+        
+        assertThat(parallel.getChildren().size(), is(10000));
+        assertThat(parallel.getChildren().get(9999).toSymbolWord().getSymbol(), is("99980002"));
+        assertThat(parallel.toString(), is(sequential.toString()));
+    }
+    
+    @Test
+    public void testPmapQuote() {
+        Node result = it.eval("pmap [uppercase ?] \"abcd");
+        
+        assertThat(result.toQuotedWord().getQuote(), is("ABCD"));
+    }
+    
+    @Test
+    public void testPfilter() {
+        StringBuilder values = new StringBuilder("[");
+        for (int i = 0; i < 1000; i++) {
+            values.append(i).append(" ");
+        }
+        values.append("]");
+        
+        Node result = it.eval("pfilter [equal? mod ? 3 1] " + values);
+        
+        assertThat(result.getChildren().size(), is(333));
+        assertThat(result.getChildren().get(0).toSymbolWord().getSymbol(), is("1"));
+        assertThat(result.getChildren().get(332).toSymbolWord().getSymbol(), is("997"));
+    }
+    
+    @Test
+    public void testPmapDoesNotChangeCallerVariables() {
+        StringBuilder values = new StringBuilder("[");
+        for (int i = 0; i < 1000; i++) {
+            values.append(i).append(" ");
+        }
+        values.append("]");
+        
+        it.eval("make \"last 0");
+        it.eval("pmap [make \"last ?] " + values);
+        
+        assertThat(it.env().resolve("last").toIntegerWord().getInteger(), is(0));
+    }
 }
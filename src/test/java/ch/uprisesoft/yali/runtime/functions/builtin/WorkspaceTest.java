@@ -0,0 +1,243 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.runtime.functions.builtin;
+
+import ch.qos.logback.classic.Level;
+import ch.uprisesoft.yali.ast.node.Node;
+import ch.uprisesoft.yali.helper.ObjectMother;
+import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
+import ch.uprisesoft.yali.runtime.io.InputGenerator;
+import ch.uprisesoft.yali.runtime.io.OutputObserver;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * @author rma
+ */
+public class WorkspaceTest {
+
+    @TempDir
+    Path dir;
+
+    private java.util.List<String> outputs;
+    private OutputObserver oo;
+    private InputGenerator ig;
+
+    public WorkspaceTest() {
+        ch.qos.logback.classic.Logger rootLogger = (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(ch.qos.logback.classic.Logger.ROOT_LOGGER_NAME);
+        rootLogger.setLevel(Level.toLevel("off"));
+    }
+
+    @BeforeEach
+    public void setUp() {
+        outputs = new ArrayList<>();
+        oo = new OutputObserver() {
+            @Override
+            public void inform(String output) {
+                outputs.add(output);
+            }
+        };
+
+        ig = new InputGenerator() {
+            @Override
+            public String request() {
+                return "requestedinput";
+            }
+
+            @Override
+            public String requestLine() {
+                return "requestedinputline";
+            }
+        };
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Interpreter it = interpreter();
+        StringBuilder sb = new StringBuilder();
+        sb.append("to square :n").append("\n");
+        sb.append("output :n * :n").append("\n");
+        sb.append("end").append("\n");
+        sb.append("to sumsquares :a :b").append("\n");
+        sb.append("output (square :a) + (square :b)").append("\n");
+        sb.append("end").append("\n");
+        sb.append("alias \"square \"sq").append("\n");
+        sb.append("make \"count -42").append("\n");
+        sb.append("make \"big 123456789012345678901234567890").append("\n");
+        sb.append("make \"ratio 0.25").append("\n");
+        sb.append("make \"name \"Grüezi").append("\n");
+        sb.append("make \"nested [a [b c] 1]").append("\n");
+        sb.append("make \"arr (array 3 0)").append("\n");
+        sb.append("setitem 1 :arr 7").append("\n");
+        sb.append("make \"t table").append("\n");
+        sb.append("table.put :t \"arr :arr").append("\n");
+        sb.append("table.put :t \"self :t").append("\n");
+        sb.append("pprop \"fred \"age 30").append("\n");
+        it.eval(sb.toString());
+
+        Path file = dir.resolve("work.ws");
+        it.save(file);
+
+        Interpreter loaded = interpreter();
+        loaded.load(file);
+
+        assertThat(loaded.eval("sumsquares 3 4").toIntegerWord().getInteger(), is(25));
+        assertThat(loaded.eval("sq 5").toIntegerWord().getInteger(), is(25));
+        assertThat(loaded.env().resolve("count").toIntegerWord().getInteger(), is(-42));
+        assertThat(loaded.env().resolve("big").toString(), is("123456789012345678901234567890"));
+        assertThat(loaded.env().resolve("ratio").toFloatWord().getFloat(), is(0.25));
+        assertThat(loaded.env().resolve("name").toString(), is("Grüezi"));
+        assertThat(loaded.env().resolve("nested").toString(), is("[a [b c] 1]"));
+        assertThat(loaded.eval("item 1 :arr").toIntegerWord().getInteger(), is(7));
+        assertThat(loaded.eval("gprop \"fred \"age").toIntegerWord().getInteger(), is(30));
+
+        Node table = loaded.env().resolve("t");
+        assertThat(loaded.eval("table.get :t \"self") == table, is(true));
+        assertThat(loaded.eval("table.get :t \"arr") == loaded.env().resolve("arr"), is(true));
+    }
+
+    @Test
+    public void testSharedAndCyclicLists() throws IOException {
+        Interpreter it = interpreter();
+        StringBuilder sb = new StringBuilder();
+        sb.append("make \"shared [1 2]").append("\n");
+        sb.append("make \"pair list :shared :shared").append("\n");
+        sb.append("make \"l [1 2]").append("\n");
+        sb.append("setitem 1 :l :l").append("\n");
+        it.eval(sb.toString());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        it.save(out);
+
+        Interpreter loaded = interpreter();
+        loaded.load(ByteBuffer.wrap(out.toByteArray()));
+
+        Node pair = loaded.env().resolve("pair");
+        assertThat(pair.getChildren().get(0), is(sameInstance(pair.getChildren().get(1))));
+        Node l = loaded.env().resolve("l");
+        assertThat(l.getChildren().get(0), is(sameInstance(l)));
+        assertThat(l.getChildren().get(1).toString(), is("2"));
+    }
+
+    @Test
+    public void testLoadInProcedureMakesGlobals() {
+        Interpreter it = interpreter();
+        it.env().make("file", Node.quote(dir.resolve("globals.ws").toString()));
+        it.eval("make \"x 5 save :file");
+
+        Interpreter loaded = interpreter();
+        loaded.env().make("file", Node.quote(dir.resolve("globals.ws").toString()));
+        StringBuilder sb = new StringBuilder();
+        sb.append("to f :x").append("\n");
+        sb.append("load :file").append("\n");
+        sb.append("output :x").append("\n");
+        sb.append("end").append("\n");
+        loaded.eval(sb.toString());
+
+        assertThat(loaded.eval("f 7").toIntegerWord().getInteger(), is(7));
+        assertThat(loaded.env().resolve("x").toIntegerWord().getInteger(), is(5));
+    }
+
+    @Test
+    public void testPrimitives() {
+        Interpreter it = interpreter();
+        it.env().make("file", Node.quote(dir.resolve("prims.ws").toString()));
+        StringBuilder sb = new StringBuilder();
+        sb.append("to greet :who").append("\n");
+        sb.append("print :who").append("\n");
+        sb.append("end").append("\n");
+        sb.append("make \"who \"world").append("\n");
+        sb.append("save :file").append("\n");
+        it.eval(sb.toString());
+
+        Interpreter loaded = interpreter();
+        loaded.env().make("file", Node.quote(dir.resolve("prims.ws").toString()));
+        loaded.eval("load :file");
+        loaded.eval("greet :who");
+
+        assertThat(outputs.get(outputs.size() - 1), is("world\n"));
+    }
+
+    @Test
+    public void testLibraryIsNotSaved() throws IOException {
+        Interpreter it = interpreter();
+        ByteArrayOutputStream empty = new ByteArrayOutputStream();
+        it.save(empty);
+
+        it.eval("make \"x 1");
+        ByteArrayOutputStream one = new ByteArrayOutputStream();
+        it.save(one);
+
+        assertThat(empty.size() < 16, is(true));
+        assertThat(one.size() < 24, is(true));
+    }
+
+    @Test
+    public void testBadImage() throws IOException {
+        Interpreter it = interpreter();
+        it.eval("make \"x [a b c]");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        it.save(out);
+        byte[] image = out.toByteArray();
+
+        byte[] truncated = java.util.Arrays.copyOf(image, image.length - 2);
+        assertThrows(IOException.class, () -> interpreter().load(ByteBuffer.wrap(truncated)));
+
+        byte[] version = image.clone();
+        version[4] = 99;
+        assertThrows(IOException.class, () -> interpreter().load(ByteBuffer.wrap(version)));
+
+        // Lengths beyond the image are not allocated
+        byte[] huge = java.util.Arrays.copyOf(image, 10);
+        huge[5] = huge[6] = huge[7] = huge[8] = (byte) 0xFF;
+        huge[9] = 0x07;
+        assertThrows(IOException.class, () -> interpreter().load(ByteBuffer.wrap(huge)));
+
+        byte[] negative = java.util.Arrays.copyOf(image, 15);
+        java.util.Arrays.fill(negative, 5, 14, (byte) 0xFF);
+        negative[14] = 0x01;
+        assertThrows(IOException.class, () -> interpreter().load(ByteBuffer.wrap(negative)));
+
+        // Nothing of an image that cannot be read is defined
+        Interpreter partly = interpreter();
+        partly.eval("to bar\nprint 1\nend\nmake \"y 2");
+        ByteArrayOutputStream whole = new ByteArrayOutputStream();
+        partly.save(whole);
+        byte[] cut = java.util.Arrays.copyOf(whole.toByteArray(), whole.size() - 2);
+        Interpreter target = interpreter();
+        assertThrows(IOException.class, () -> target.load(ByteBuffer.wrap(cut)));
+        assertThat(target.env().defined("bar"), is(false));
+        assertThat(target.env().resolveable("y"), is(false));
+
+        Path source = Files.write(dir.resolve("source.logo"), "print 1\n".getBytes());
+        assertThrows(IOException.class, () -> interpreter().load(source));
+    }
+
+    private Interpreter interpreter() {
+        return new ObjectMother(oo, ig).getInterpreter();
+    }
+}
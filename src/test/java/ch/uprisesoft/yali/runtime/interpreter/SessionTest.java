@@ -0,0 +1,283 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.runtime.interpreter;
+
+import ch.qos.logback.classic.Level;
+import ch.uprisesoft.yali.ast.node.Node;
+import ch.uprisesoft.yali.ast.node.Procedure;
+import ch.uprisesoft.yali.runtime.io.InputGenerator;
+import ch.uprisesoft.yali.runtime.io.OutputObserver;
+import ch.uprisesoft.yali.runtime.vm.Chunk;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * @author rma
+ */
+public class SessionTest {
+
+    public SessionTest() {
+        ch.qos.logback.classic.Logger rootLogger = (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(ch.qos.logback.classic.Logger.ROOT_LOGGER_NAME);
+        rootLogger.setLevel(Level.toLevel("off"));
+    }
+
+    @Test
+    public void testSessionsAreIsolated() {
+        SharedRuntime runtime = SharedRuntime.standard();
+        java.util.List<String> first = new ArrayList<>();
+        java.util.List<String> second = new ArrayList<>();
+        Session one = runtime.session(observer(first), generator());
+        Session two = runtime.session(observer(second), generator());
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("to greet :name").append("\n");
+        sb.append("print :name").append("\n");
+        sb.append("end").append("\n");
+        sb.append("make \"x 1").append("\n");
+        sb.append("pprop \"fred \"age 30").append("\n");
+        sb.append("greet \"one").append("\n");
+        one.eval(sb.toString());
+        two.eval("print \"two");
+
+        assertThat(first, is(Collections.singletonList("one\n")));
+        assertThat(second, is(Collections.singletonList("two\n")));
+        assertThat(two.env().resolveable("x"), is(false));
+        assertThat(two.eval("empty? gprop \"fred \"age").toBooleanWord().getBoolean(), is(true));
+        assertThat(two.env().defined("greet"), is(false));
+        assertThat(runtime.procedures().containsKey("greet"), is(false));
+    }
+
+    @Test
+    public void testSessionsDoNotShareBlocks() {
+        SharedRuntime runtime = SharedRuntime.standard();
+        Session one = runtime.session(observer(new ArrayList<>()), generator());
+        Session two = runtime.session(observer(new ArrayList<>()), generator());
+
+        one.eval("run [make \"x [1 2 3]] setitem 1 :x 99");
+        two.eval("run [make \"x [1 2 3]]");
+
+        assertThat(one.env().resolve("x").toString(), is("[99 2 3]"));
+        assertThat(two.env().resolve("x").toString(), is("[1 2 3]"));
+    }
+
+    @Test
+    public void testLibraryProceduresAreShared() {
+        Interpreter prototype = new Interpreter().loadStdLib();
+        StringBuilder sb = new StringBuilder();
+        sb.append("to double :x").append("\n");
+        sb.append("output :x * 2").append("\n");
+        sb.append("end").append("\n");
+        sb.append("to quadruple :x").append("\n");
+        sb.append("output double double :x").append("\n");
+        sb.append("end").append("\n");
+        prototype.eval(sb.toString());
+        SharedRuntime runtime = new SharedRuntime(prototype);
+
+        Session one = runtime.session(observer(new ArrayList<>()), generator());
+        Session two = runtime.session(observer(new ArrayList<>()), generator());
+
+        sb = new StringBuilder();
+        sb.append("to double :x").append("\n");
+        sb.append("output :x * 3").append("\n");
+        sb.append("end").append("\n");
+        one.eval(sb.toString());
+
+        assertThat(one.eval("quadruple 1").toIntegerWord().getInteger(), is(9));
+        assertThat(two.eval("quadruple 1").toIntegerWord().getInteger(), is(4));
+        assertThat(one.eval("quadruple 2").toIntegerWord().getInteger(), is(18));
+        assertThat(two.env().getProcedures().get("double"), is(sameInstance(runtime.procedures().get("double"))));
+    }
+
+    @Test
+    public void testSessionsKeepTheirOwnCode() {
+        Interpreter prototype = new Interpreter().loadStdLib();
+        StringBuilder sb = new StringBuilder();
+        sb.append("to double :x").append("\n");
+        sb.append("output :x * 2").append("\n");
+        sb.append("end").append("\n");
+        sb.append("to quadruple :x").append("\n");
+        sb.append("output double double :x").append("\n");
+        sb.append("end").append("\n");
+        prototype.eval(sb.toString());
+        SharedRuntime runtime = new SharedRuntime(prototype);
+
+        Session one = runtime.session(observer(new ArrayList<>()), generator());
+        Session two = runtime.session(observer(new ArrayList<>()), generator());
+        one.eval("to triple :x\noutput :x * 3\nend\n");
+        two.eval("to half :x\noutput :x / 2\nend\n");
+
+        Procedure quadruple = runtime.procedures().get("quadruple");
+        one.eval("quadruple 1");
+        two.eval("quadruple 1");
+        Chunk first = quadruple.chunk(one.env().epoch());
+        Chunk second = quadruple.chunk(two.env().epoch());
+        one.eval("quadruple 1");
+        two.eval("quadruple 1");
+
+        assertThat(first, is(notNullValue()));
+        assertThat(second, is(notNullValue()));
+        assertThat(quadruple.chunk(one.env().epoch()), is(sameInstance(first)));
+        assertThat(quadruple.chunk(two.env().epoch()), is(sameInstance(second)));
+    }
+
+    @Test
+    public void testNativesGetTheCallingSession() {
+        Interpreter prototype = new Interpreter().loadStdLib();
+        java.util.List<Interpreter> callers = new ArrayList<>();
+        prototype.env().define(new Procedure("caller", (it, scope, args) -> {
+            callers.add(it);
+            return Node.none();
+        }));
+        SharedRuntime runtime = new SharedRuntime(prototype);
+
+        Session one = runtime.session(observer(new ArrayList<>()), generator());
+        Session two = runtime.session(observer(new ArrayList<>()), generator());
+        one.eval("caller");
+        two.eval("caller");
+
+        assertThat(callers.size(), is(2));
+        assertThat(callers.get(0).env(), is(sameInstance(one.env())));
+        assertThat(callers.get(1).env(), is(sameInstance(two.env())));
+    }
+
+    @Test
+    public void testConcurrentSessions() throws Exception {
+        SharedRuntime runtime = SharedRuntime.standard();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            java.util.List<Future<java.util.List<String>>> results = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                final int k = i;
+                results.add(pool.submit(() -> {
+                    java.util.List<String> outputs = new ArrayList<>();
+                    Session session = runtime.session(observer(outputs), generator());
+
+                    StringBuilder values = new StringBuilder("[");
+                    for (int v = 1; v <= 200; v++) {
+                        values.append(v).append(" ");
+                    }
+                    values.append("]");
+
+                    StringBuilder sb = new StringBuilder();
+                    sb.append("make \"k ").append(k).append("\n");
+                    sb.append("to f :n").append("\n");
+                    sb.append("output :n * :k").append("\n");
+                    sb.append("end").append("\n");
+                    sb.append("make \"r pmap [f ?] ").append(values).append("\n");
+                    sb.append("print count :r").append("\n");
+                    sb.append("show last :r").append("\n");
+                    session.eval(sb.toString());
+                    return outputs;
+                }));
+            }
+
+            for (int i = 0; i < results.size(); i++) {
+                java.util.List<String> outputs = results.get(i).get();
+                assertThat(outputs.size(), is(2));
+                assertThat(outputs.get(0), is("200\n"));
+                assertThat(outputs.get(1), is((200 * i) + "\n"));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testStandardLibraryIsSharedBySessionsOnly() {
+        Interpreter own = new Interpreter().loadStdLib();
+        assertThat(own.env().getProcedures().get("fput"), is(not(sameInstance(SharedRuntime.builtins().procedures().get("fput")))));
+
+        Session one = SharedRuntime.standard().session(observer(new ArrayList<>()), generator());
+        Session two = SharedRuntime.standard().session(observer(new ArrayList<>()), generator());
+
+        assertThat(one.env().getProcedures().get("fput"), is(sameInstance(two.env().getProcedures().get("fput"))));
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("to fput :a :b").append("\n");
+        sb.append("output \"mine").append("\n");
+        sb.append("end").append("\n");
+        one.eval(sb.toString());
+
+        assertThat(one.eval("fput 1 [2]").toString(), is("mine"));
+        assertThat(two.eval("fput 1 [2]").toString(), is("[1 2]"));
+        assertThat(SharedRuntime.builtins().procedures().get("fput").isNative(), is(true));
+    }
+
+    @Test
+    public void testSnapshot() {
+        java.util.List<String> outputs = new ArrayList<>();
+        Interpreter it = new Interpreter().loadStdLib(observer(outputs), generator());
+        StringBuilder sb = new StringBuilder();
+        sb.append("to greet :name").append("\n");
+        sb.append("print (sentence :greeting :name)").append("\n");
+        sb.append("end").append("\n");
+        sb.append("make \"greeting \"Hello").append("\n");
+        sb.append("pprop \"fred \"age 30").append("\n");
+        it.eval(sb.toString());
+
+        SharedRuntime runtime = it.snapshot();
+        it.eval("make \"greeting \"Bye");
+
+        java.util.List<String> first = new ArrayList<>();
+        Session one = runtime.session(observer(first), generator());
+        one.eval("greet \"Fred");
+        one.eval("make \"greeting \"Hi");
+        one.eval("pprop \"fred \"age 31");
+        one.eval("greet \"Fred");
+
+        java.util.List<String> second = new ArrayList<>();
+        Session two = runtime.session(observer(second), generator());
+        two.eval("greet \"Barney");
+        it.eval("greet \"Wilma");
+
+        assertThat(first.get(0), is("Hello Fred\n"));
+        assertThat(first.get(1), is("Hi Fred\n"));
+        assertThat(second.get(0), is("Hello Barney\n"));
+        assertThat(outputs.get(0), is("Bye Wilma\n"));
+        assertThat(two.eval("gprop \"fred \"age").toIntegerWord().getInteger(), is(30));
+    }
+
+    private static OutputObserver observer(java.util.List<String> outputs) {
+        return new OutputObserver() {
+            @Override
+            public void inform(String output) {
+                outputs.add(output);
+            }
+        };
+    }
+
+    private static InputGenerator generator() {
+        return new InputGenerator() {
+            @Override
+            public String request() {
+                return "requestedinput";
+            }
+
+            @Override
+            public String requestLine() {
+                return "requestedinputline";
+            }
+        };
+    }
+}
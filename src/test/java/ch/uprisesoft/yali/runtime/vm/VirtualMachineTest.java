@@ -0,0 +1,332 @@
+/*
+ * Copyright 2021 rma.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.uprisesoft.yali.runtime.vm;
+
+import ch.qos.logback.classic.Level;
+import ch.uprisesoft.yali.ast.node.Node;
+import ch.uprisesoft.yali.ast.node.NodeType;
+import ch.uprisesoft.yali.ast.node.Procedure;
+import ch.uprisesoft.yali.exception.NodeTypeException;
+import ch.uprisesoft.yali.exception.RecursionException;
+import ch.uprisesoft.yali.helper.ObjectMother;
+import ch.uprisesoft.yali.runtime.interpreter.Interpreter;
+import ch.uprisesoft.yali.runtime.io.InputGenerator;
+import ch.uprisesoft.yali.runtime.io.OutputObserver;
+import java.util.ArrayList;
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * @author rma
+ */
+public class VirtualMachineTest {
+
+    Interpreter it;
+    private OutputObserver oo;
+    private InputGenerator ig;
+    private java.util.List<String> outputs;
+
+    public VirtualMachineTest() {
+        ch.qos.logback.classic.Logger rootLogger = (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(ch.qos.logback.classic.Logger.ROOT_LOGGER_NAME);
+        rootLogger.setLevel(Level.toLevel("off"));
+    }
+
+    @BeforeEach
+    public void setUp() {
+        outputs = new ArrayList<>();
+        oo = new OutputObserver() {
+            @Override
+            public void inform(String output) {
+                outputs.add(output);
+            }
+        };
+
+        ig = new InputGenerator() {
+
+            @Override
+            public String request() {
+                return "requestedinput";
+            }
+
+            @Override
+            public String requestLine() {
+                return "requestedinputline";
+            }
+        };
+
+        ObjectMother om = new ObjectMother(oo, ig);
+
+        it = om.getInterpreter();
+    }
+
+    @Test
+    public void testRecursion() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("to fib :n").append("\n");
+        sb.append("ifelse :n < 2 [output :n] [output (fib :n - 1) + (fib :n - 2)]").append("\n");
+        sb.append("end").append("\n");
+        sb.append("fib 15").append("\n");
+        Node res = it.eval(sb.toString());
+
+        assertThat(res.type(), is(NodeType.INTEGER));
+        assertThat(res.toIntegerWord().getInteger(), is(610));
+    }
+
+    @Test
+    public void testOutputLeavesProcedure() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("to check :n").append("\n");
+        sb.append("if :n > 10 [output \"big]").append("\n");
+        sb.append("output \"small").append("\n");
+        sb.append("print \"unreachable").append("\n");
+        sb.append("end").append("\n");
+        sb.append("print check 20").append("\n");
+        sb.append("print check 5").append("\n");
+        it.eval(sb.toString());
+
+        assertThat(outputs.size(), is(2));
+        assertThat(outputs.get(0), is("big\n"));
+        assertThat(outputs.get(1), is("small\n"));
+    }
+
+    @Test
+    public void testStop() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("to countdown :n").append("\n");
+        sb.append("if :n = 0 [stop]").append("\n");
+        sb.append("print :n").append("\n");
+        sb.append("countdown :n - 1").append("\n");
+        sb.append("end").append("\n");
+        sb.append("countdown 3").append("\n");
+        it.eval(sb.toString());
+
+        assertThat(outputs.size(), is(3));
+        assertThat(outputs.get(0), is("3\n"));
+        assertThat(outputs.get(2), is("1\n"));
+    }
+
+    @Test
+    public void testParametersAreLocal() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("make \"angle 90").append("\n");
+        sb.append("to turn :angle").append("\n");
+        sb.append("rt :angle").append("\n");
+        sb.append("end").append("\n");
+        sb.append("turn 45").append("\n");
+        sb.append("rt 30").append("\n");
+        it.eval(sb.toString());
+
+        assertThat(it.env().resolve("angle").toIntegerWord().getInteger(), is(90));
+    }
+
+    @Test
+    public void testRepeatInProcedure() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("make \"count 0").append("\n");
+        sb.append("to loop :times").append("\n");
+        sb.append("repeat :times [repeat 2 [make \"count :count + 1]]").append("\n");
+        sb.append("end").append("\n");
+        sb.append("loop 50").append("\n");
+        it.eval(sb.toString());
+
+        assertThat(it.env().resolve("count").toIntegerWord().getInteger(), is(100));
+    }
+
+    @Test
+    public void testBlocksAreInlined() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("to square :size").append("\n");
+        sb.append("if :size > 0 [repeat 4 [fd :size rt 90]]").append("\n");
+        sb.append("end").append("\n");
+        it.eval(sb.toString());
+
+        Chunk chunk = new Compiler(it).compile(it.env().getProcedures().get("square"));
+        String code = chunk.disassemble();
+
+        assertThat(code.contains("JUMP_IF_FALSE"), is(true));
+        assertThat(code.contains("REPEAT_NEXT"), is(true));
+        assertThat(code.contains("CALL if"), is(false));
+        assertThat(code.contains("CALL repeat"), is(false));
+        assertThat(code.contains("CALL fd 1"), is(true));
+    }
+
+    @Test
+    public void testDynamicScope() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("to outer :x").append("\n");
+        sb.append("output inner").append("\n");
+        sb.append("end").append("\n");
+        sb.append("to inner").append("\n");
+        sb.append("output :x + 1").append("\n");
+        sb.append("end").append("\n");
+        sb.append("outer 5").append("\n");
+        Node res = it.eval(sb.toString());
+
+        assertThat(res.toIntegerWord().getInteger(), is(6));
+        assertThat(it.env().resolveable("x"), is(false));
+    }
+
+    @Test
+    public void testLocalBeforeDeclaration() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("make \"x 1").append("\n");
+        sb.append("to f").append("\n");
+        sb.append("print :x").append("\n");
+        sb.append("local \"x").append("\n");
+        sb.append("make \"x 2").append("\n");
+        sb.append("print :x").append("\n");
+        sb.append("end").append("\n");
+        sb.append("f").append("\n");
+        sb.append("print :x").append("\n");
+        it.eval(sb.toString());
+
+        assertThat(outputs.size(), is(3));
+        assertThat(outputs.get(0), is("1\n"));
+        assertThat(outputs.get(1), is("2\n"));
+        assertThat(outputs.get(2), is("1\n"));
+    }
+
+    @Test
+    public void testLocalsUseSlots() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("to sum :n").append("\n");
+        sb.append("localmake \"total 0").append("\n");
+        sb.append("repeat :n [make \"total :total + :N]").append("\n");
+        sb.append("output :total").append("\n");
+        sb.append("end").append("\n");
+        Node res = it.eval(sb.toString() + "sum 4");
+
+        assertThat(res.toIntegerWord().getInteger(), is(16));
+
+        Chunk chunk = new Compiler(it).compile(it.env().getProcedures().get("sum"));
+        String code = chunk.disassemble();
+
+        assertThat(chunk.slots().length, is(2));
+        assertThat(code.contains("LOAD_LOCAL 0 n"), is(true));
+        assertThat(code.contains("LOAD_LOCAL 1 total"), is(true));
+        assertThat(code.contains("STORE_LOCAL 1 total"), is(true));
+        assertThat(code.contains("LOAD "), is(false));
+    }
+
+    @Test
+    public void testRedefinitionInvalidatesCallSites() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("to inner").append("\n");
+        sb.append("output 1").append("\n");
+        sb.append("end").append("\n");
+        sb.append("to outer").append("\n");
+        sb.append("output inner").append("\n");
+        sb.append("end").append("\n");
+        sb.append("outer").append("\n");
+        Node res = it.eval(sb.toString());
+
+        assertThat(res.toIntegerWord().getInteger(), is(1));
+
+        sb = new StringBuilder();
+        sb.append("to inner").append("\n");
+        sb.append("output 2").append("\n");
+        sb.append("end").append("\n");
+        it.eval(sb.toString());
+
+        res = it.eval("outer");
+
+        assertThat(res.toIntegerWord().getInteger(), is(2));
+    }
+
+    @Test
+    public void testRepeatWithoutInteger() {
+        NodeTypeException nte = assertThrows(NodeTypeException.class, () -> it.eval("repeat \"a [fd 10]"));
+
+        assertThat(nte.getReceived(), is(NodeType.QUOTE));
+        assertThat(nte.getExpected().get(0), is(NodeType.INTEGER));
+    }
+
+    @Test
+    public void testTailRecursion() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("to count :n").append("\n");
+        sb.append("if :n = 0 [output \"done]").append("\n");
+        sb.append("output count :n - 1").append("\n");
+        sb.append("end").append("\n");
+        it.eval(sb.toString());
+
+        Node res = it.recursionLimit(100).eval("count 1000000");
+
+        assertThat(res.toString(), is("done"));
+
+        String code = new Compiler(it).compile(it.env().getProcedures().get("count")).disassemble();
+        assertThat(code.contains("TAILCALL count 1"), is(true));
+    }
+
+    @Test
+    public void testTailCallsDoNotPileUpScopes() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("to ping :n").append("\n");
+        sb.append("if :n = 0 [output list scopes :seen]").append("\n");
+        sb.append("output pong :n - 1").append("\n");
+        sb.append("end").append("\n");
+        sb.append("to pong :m").append("\n");
+        sb.append("localmake \"seen :m").append("\n");
+        sb.append("output ping :m").append("\n");
+        sb.append("end").append("\n");
+        it.env().define(new Procedure("scopes", (scope, val) -> Node.integer(it.env().depth())));
+        it.eval(sb.toString());
+
+        Node res = it.recursionLimit(100).eval("ping 200001");
+
+        assertThat(res.toString(), is("[3 0]"));
+        assertThat(it.env().peek().getScopeName(), is("global"));
+    }
+
+    @Test
+    public void testRepeatCountBeyondInt() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("to loop").append("\n");
+        sb.append("make \"i 0").append("\n");
+        sb.append("repeat 10000000000 [make \"i :i + 1 if :i = 3 [output :i]]").append("\n");
+        sb.append("end").append("\n");
+        sb.append("to never").append("\n");
+        sb.append("repeat -100000000000000000000 [output 1]").append("\n");
+        sb.append("output 0").append("\n");
+        sb.append("end").append("\n");
+        it.eval(sb.toString());
+
+        assertThat(it.eval("loop").toIntegerWord().getInteger(), is(3));
+        assertThat(it.eval("never").toIntegerWord().getInteger(), is(0));
+    }
+
+    @Test
+    public void testRecursionLimit() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("to depth :n").append("\n");
+        sb.append("if :n = 0 [output 0]").append("\n");
+        sb.append("output 1 + (depth :n - 1)").append("\n");
+        sb.append("end").append("\n");
+        it.eval(sb.toString());
+        it.recursionLimit(100);
+
+        assertThat(it.eval("depth 50").toIntegerWord().getInteger(), is(50));
+
+        RecursionException re = assertThrows(RecursionException.class, () -> it.eval("depth 200"));
+        assertThat(re.getFunction(), is("depth"));
+        assertThat(it.env().peek().getScopeName(), is("global"));
+    }
+}